@@ -0,0 +1,285 @@
+package org.traccar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compare JMH JSON result with stored baseline
+ *
+ * Baseline keeps score and normalized allocation ("gc.alloc.rate.norm",
+ * bytes per operation) of each benchmark and parameter combination.
+ * Allocation does not depend on host, so build fails if more bytes are
+ * allocated per operation. Score depends on hardware and load, so score
+ * worse than baseline by more than tolerance is only reported as warning.
+ * Benchmarks missing from baseline are reported only. Baseline is written
+ * if it does not exist or if "baseline.update" property is set.
+ *
+ * Arguments: baseline file, result file, score tolerance (fraction, default 0.25)
+ */
+public class BenchmarkBaseline {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    /**
+     * Allocation difference in bytes per operation always accepted (measurement noise)
+     */
+    private static final double ALLOCATION_SLACK = 16;
+
+    public static class Entry {
+
+        private final double score;
+        private final String unit;
+        private final boolean higherBetter;
+        private final Double allocation;
+
+        public Entry(double score, String unit, boolean higherBetter, Double allocation) {
+            this.score = score;
+            this.unit = unit;
+            this.higherBetter = higherBetter;
+            this.allocation = allocation;
+        }
+
+    }
+
+    public static void main(String[] args) throws IOException {
+        File baselineFile = new File(args[0]);
+        Map<String, Entry> result = readResult(parse(read(new File(args[1]))));
+        double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : 0.25;
+
+        if (!baselineFile.exists() || Boolean.getBoolean("baseline.update")) {
+            write(baselineFile, result);
+            System.out.println("Baseline written to " + baselineFile + " (" + result.size() + " benchmarks)");
+            return;
+        }
+
+        List<String> regressions = compare(readBaseline(parse(read(baselineFile))), result, tolerance);
+        if (!regressions.isEmpty()) {
+            for (String regression : regressions) {
+                System.out.println("REGRESSION " + regression);
+            }
+            System.exit(1);
+        }
+        System.out.println("No regressions against " + baselineFile);
+    }
+
+    /**
+     * Benchmarks allocating more than baseline, with description
+     */
+    public static List<String> compare(Map<String, Entry> baseline, Map<String, Entry> result, double tolerance) {
+        List<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Entry> item : result.entrySet()) {
+            Entry current = item.getValue();
+            Entry reference = baseline.get(item.getKey());
+            if (reference == null) {
+                System.out.println("NEW " + item.getKey() + " " + format(current.score) + " " + current.unit);
+                continue;
+            }
+            double change = (current.score - reference.score) / reference.score;
+            boolean slower = current.higherBetter ? change < -tolerance : change > tolerance;
+            if (slower) {
+                System.out.println("WARNING " + item.getKey() + " score " + format(current.score) + " "
+                        + current.unit + ", baseline " + format(reference.score));
+            }
+            if (current.allocation != null && reference.allocation != null
+                    && current.allocation > reference.allocation + ALLOCATION_SLACK) {
+                regressions.add(item.getKey() + " allocation " + format(current.allocation)
+                        + " B/op, baseline " + format(reference.allocation));
+            }
+            System.out.println(item.getKey() + " " + format(current.score) + " " + current.unit
+                    + " (" + String.format(Locale.US, "%+.1f%%", change * 100) + ")");
+        }
+        return regressions;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    /**
+     * Benchmark name with parameters in alphabetical order
+     */
+    private static String key(Map<?, ?> benchmark) {
+        StringBuilder key = new StringBuilder((String) benchmark.get("benchmark"));
+        Map<?, ?> params = (Map<?, ?>) benchmark.get("params");
+        if (params != null) {
+            for (Map.Entry<?, ?> param : new TreeMap<Object, Object>(params).entrySet()) {
+                key.append(':').append(param.getKey()).append('=').append(param.getValue());
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Entries from JMH result array
+     */
+    public static Map<String, Entry> readResult(Object json) {
+        Map<String, Entry> result = new LinkedHashMap<String, Entry>();
+        for (Object item : (List<?>) json) {
+            Map<?, ?> benchmark = (Map<?, ?>) item;
+            Map<?, ?> primary = (Map<?, ?>) benchmark.get("primaryMetric");
+            Double allocation = null;
+            Map<?, ?> secondary = (Map<?, ?>) benchmark.get("secondaryMetrics");
+            if (secondary != null) {
+                for (Map.Entry<?, ?> metric : secondary.entrySet()) {
+                    if (((String) metric.getKey()).endsWith(ALLOCATION)) {
+                        allocation = (Double) ((Map<?, ?>) metric.getValue()).get("score");
+                    }
+                }
+            }
+            result.put(key(benchmark), new Entry(
+                    (Double) primary.get("score"), (String) primary.get("scoreUnit"),
+                    "thrpt".equals(benchmark.get("mode")), allocation));
+        }
+        return result;
+    }
+
+    private static Map<String, Entry> readBaseline(Object json) {
+        Map<String, Entry> result = new LinkedHashMap<String, Entry>();
+        for (Map.Entry<?, ?> item : ((Map<?, ?>) json).entrySet()) {
+            Map<?, ?> entry = (Map<?, ?>) item.getValue();
+            result.put((String) item.getKey(), new Entry(
+                    (Double) entry.get("score"), (String) entry.get("unit"),
+                    (Boolean) entry.get("higherBetter"), (Double) entry.get("allocation")));
+        }
+        return result;
+    }
+
+    private static void write(File file, Map<String, Entry> result) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("{\n");
+            int count = 0;
+            for (Map.Entry<String, Entry> item : result.entrySet()) {
+                Entry entry = item.getValue();
+                writer.write("  \"" + item.getKey() + "\": {\"score\": " + format(entry.score)
+                        + ", \"unit\": \"" + entry.unit + "\", \"higherBetter\": " + entry.higherBetter
+                        + ", \"allocation\": " + ((entry.allocation != null) ? format(entry.allocation) : "null")
+                        + "}" + ((++count < result.size()) ? "," : "") + "\n");
+            }
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder result = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            int length;
+            while ((length = reader.read(buffer)) > 0) {
+                result.append(buffer, 0, length);
+            }
+        } finally {
+            reader.close();
+        }
+        return result.toString();
+    }
+
+    /**
+     * Minimal JSON parser, objects are maps, arrays are lists, numbers are doubles
+     */
+    public static Object parse(String json) {
+        int[] position = {0};
+        return parseValue(json, position);
+    }
+
+    private static void skipWhitespace(String json, int[] position) {
+        while (position[0] < json.length() && Character.isWhitespace(json.charAt(position[0]))) {
+            position[0] += 1;
+        }
+    }
+
+    private static Object parseValue(String json, int[] position) {
+        skipWhitespace(json, position);
+        char c = json.charAt(position[0]);
+        if (c == '{') {
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            position[0] += 1;
+            skipWhitespace(json, position);
+            while (json.charAt(position[0]) != '}') {
+                String key = (String) parseValue(json, position);
+                skipWhitespace(json, position);
+                position[0] += 1;
+                result.put(key, parseValue(json, position));
+                skipWhitespace(json, position);
+                if (json.charAt(position[0]) == ',') {
+                    position[0] += 1;
+                    skipWhitespace(json, position);
+                }
+            }
+            position[0] += 1;
+            return result;
+        } else if (c == '[') {
+            List<Object> result = new ArrayList<Object>();
+            position[0] += 1;
+            skipWhitespace(json, position);
+            while (json.charAt(position[0]) != ']') {
+                result.add(parseValue(json, position));
+                skipWhitespace(json, position);
+                if (json.charAt(position[0]) == ',') {
+                    position[0] += 1;
+                    skipWhitespace(json, position);
+                }
+            }
+            position[0] += 1;
+            return result;
+        } else if (c == '"') {
+            StringBuilder result = new StringBuilder();
+            position[0] += 1;
+            while (json.charAt(position[0]) != '"') {
+                char next = json.charAt(position[0]++);
+                if (next == '\\') {
+                    next = json.charAt(position[0]++);
+                    switch (next) {
+                        case 'n': result.append('\n'); break;
+                        case 'r': result.append('\r'); break;
+                        case 't': result.append('\t'); break;
+                        case 'b': result.append('\b'); break;
+                        case 'f': result.append('\f'); break;
+                        case 'u':
+                            result.append((char) Integer.parseInt(json.substring(position[0], position[0] + 4), 16));
+                            position[0] += 4;
+                            break;
+                        default: result.append(next); break;
+                    }
+                } else {
+                    result.append(next);
+                }
+            }
+            position[0] += 1;
+            return result.toString();
+        } else if (json.startsWith("true", position[0])) {
+            position[0] += 4;
+            return Boolean.TRUE;
+        } else if (json.startsWith("false", position[0])) {
+            position[0] += 5;
+            return Boolean.FALSE;
+        } else if (json.startsWith("null", position[0])) {
+            position[0] += 4;
+            return null;
+        } else if (json.startsWith("NaN", position[0])) {
+            position[0] += 3;
+            return Double.NaN;
+        }
+        int start = position[0];
+        while (position[0] < json.length() && "+-0123456789.eE".indexOf(json.charAt(position[0])) >= 0) {
+            position[0] += 1;
+        }
+        return Double.parseDouble(json.substring(start, position[0]));
+    }
+
+}
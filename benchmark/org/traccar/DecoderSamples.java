@@ -0,0 +1,338 @@
+package org.traccar;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Sample messages taken from protocol decoder tests
+ *
+ * Test source is scanned for "decoder.decode(...)" calls and the message
+ * argument is evaluated, so benchmarks follow the tests without copies of
+ * the samples. Only expressions used by the tests are supported: string
+ * literals, int and byte array literals, wrapped, copied and factory
+ * buffers and HTTP requests, including request variables with content.
+ * Calls with other arguments are skipped.
+ * Messages are returned in test order, login messages included.
+ */
+public class DecoderSamples {
+
+    private static final String DIRECTORY = System.getProperty("benchmark.samples", "test/org/traccar/protocol");
+
+    private static final Object UNSUPPORTED = new Object();
+    private static final Object NULL = new Object();
+
+    private static final int IDENTIFIER = 0;
+    private static final int STRING = 1;
+    private static final int NUMBER = 2;
+    private static final int SYMBOL = 3;
+
+    private static class Token {
+
+        private final int type;
+        private final String text;
+
+        public Token(int type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        public boolean is(String value) {
+            return type != STRING && text.equals(value);
+        }
+
+    }
+
+    private final List<Token> tokens;
+    private final Map<String, byte[]> arrays = new HashMap<String, byte[]>();
+    private final Map<String, HttpRequest> requests = new HashMap<String, HttpRequest>();
+    private int index;
+
+    private DecoderSamples(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Messages from "<protocol>ProtocolDecoderTest", protocol is capitalized class prefix
+     */
+    public static List<Object> load(String protocol) throws IOException {
+        File file = new File(DIRECTORY, protocol + "ProtocolDecoderTest.java");
+        StringBuilder source = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            int length;
+            while ((length = reader.read(buffer)) > 0) {
+                source.append(buffer, 0, length);
+            }
+        } finally {
+            reader.close();
+        }
+        return new DecoderSamples(tokenize(source.toString())).parse();
+    }
+
+    private static List<Token> tokenize(String source) {
+        List<Token> result = new ArrayList<Token>();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i += 1;
+            } else if (source.startsWith("//", i)) {
+                int end = source.indexOf('\n', i);
+                i = (end < 0) ? source.length() : end;
+            } else if (source.startsWith("/*", i)) {
+                int end = source.indexOf("*/", i + 2);
+                i = (end < 0) ? source.length() : end + 2;
+            } else if (c == '"' || c == '\'') {
+                StringBuilder value = new StringBuilder();
+                i += 1;
+                while (source.charAt(i) != c) {
+                    char next = source.charAt(i++);
+                    if (next == '\\') {
+                        next = source.charAt(i++);
+                        switch (next) {
+                            case 'n': value.append('\n'); break;
+                            case 'r': value.append('\r'); break;
+                            case 't': value.append('\t'); break;
+                            case '0': value.append('\0'); break;
+                            case 'u':
+                                value.append((char) Integer.parseInt(source.substring(i, i + 4), 16));
+                                i += 4;
+                                break;
+                            default: value.append(next); break;
+                        }
+                    } else {
+                        value.append(next);
+                    }
+                }
+                i += 1;
+                result.add(new Token((c == '"') ? STRING : SYMBOL, value.toString()));
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) {
+                    i += 1;
+                }
+                result.add(new Token(IDENTIFIER, source.substring(start, i)));
+            } else if (Character.isDigit(c)) {
+                int start = i;
+                while (i < source.length() && Character.isLetterOrDigit(source.charAt(i))) {
+                    i += 1;
+                }
+                result.add(new Token(NUMBER, source.substring(start, i)));
+            } else {
+                result.add(new Token(SYMBOL, String.valueOf(c)));
+                i += 1;
+            }
+        }
+        return result;
+    }
+
+    private boolean at(String... values) {
+        if (index + values.length > tokens.size()) {
+            return false;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && !tokens.get(index + i).is(values[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Object> parse() {
+        List<Object> messages = new ArrayList<Object>();
+        while (index < tokens.size()) {
+            if ((at("int", "[", "]", null, "=", "{") || at("byte", "[", "]", null, "=", "{"))
+                    && tokens.get(index + 3).type == IDENTIFIER) {
+                String name = tokens.get(index + 3).text;
+                index += 6;
+                arrays.put(name, parseArray());
+            } else if (at("HttpRequest", null, "=") && tokens.get(index + 1).type == IDENTIFIER) {
+                String name = tokens.get(index + 1).text;
+                index += 3;
+                Object request = parseExpression();
+                if (request instanceof HttpRequest) {
+                    requests.put(name, (HttpRequest) request);
+                }
+            } else if (at(null, ".", "setContent", "(") && requests.containsKey(tokens.get(index).text)) {
+                HttpRequest request = requests.get(tokens.get(index).text);
+                index += 4;
+                List<Object> arguments = parseArguments();
+                if (arguments.size() == 1 && arguments.get(0) instanceof ChannelBuffer) {
+                    request.setContent((ChannelBuffer) arguments.get(0));
+                }
+            } else if (at("decoder", ".", "decode", "(")) {
+                index += 4;
+                List<Object> arguments = parseArguments();
+                Object message = arguments.get(arguments.size() - 1);
+                if (message instanceof ChannelBuffer) {
+                    // Exact capacity, so indexes can be restored
+                    ChannelBuffer buffer = (ChannelBuffer) message;
+                    byte[] data = new byte[buffer.readableBytes()];
+                    buffer.getBytes(buffer.readerIndex(), data);
+                    messages.add(ChannelBuffers.wrappedBuffer(buffer.order(), data));
+                } else if (message != UNSUPPORTED && message != NULL) {
+                    messages.add(message);
+                }
+            } else {
+                index += 1;
+            }
+        }
+        return messages;
+    }
+
+    private byte[] parseArray() {
+        List<Integer> values = new ArrayList<Integer>();
+        while (!at("}")) {
+            if (at("(", "byte", ")") || at(",")) {
+                index += at(",") ? 1 : 3;
+            } else {
+                boolean negative = at("-");
+                if (negative) {
+                    index += 1;
+                }
+                int value = Integer.decode(tokens.get(index++).text);
+                values.add(negative ? -value : value);
+            }
+        }
+        index += 1;
+        byte[] result = new byte[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) (int) values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Arguments after opening bracket, closing bracket is consumed
+     */
+    private List<Object> parseArguments() {
+        List<Object> arguments = new ArrayList<Object>();
+        while (!at(")")) {
+            arguments.add(parseExpression());
+            if (at(",")) {
+                index += 1;
+            } else if (!at(")")) {
+                // Skip the rest of unsupported expression
+                int depth = 0;
+                while (depth > 0 || !(at(",") || at(")"))) {
+                    depth += at("(") ? 1 : at(")") ? -1 : 0;
+                    index += 1;
+                }
+                arguments.set(arguments.size() - 1, UNSUPPORTED);
+                if (at(",")) {
+                    index += 1;
+                }
+            }
+        }
+        index += 1;
+        return arguments;
+    }
+
+    private Object parseExpression() {
+        Token token = tokens.get(index++);
+        if (token.type == STRING) {
+            StringBuilder value = new StringBuilder(token.text);
+            while (at("+") && tokens.get(index + 1).type == STRING) {
+                value.append(tokens.get(index + 1).text);
+                index += 2;
+            }
+            return value.toString();
+        } else if (token.type == NUMBER) {
+            return Integer.decode(token.text);
+        } else if (token.is("new")) {
+            String type = tokens.get(index++).text;
+            index += 1;
+            return construct(type, parseArguments());
+        } else if (token.type == IDENTIFIER) {
+            StringBuilder name = new StringBuilder(token.text);
+            while (at(".") && tokens.get(index + 1).type == IDENTIFIER) {
+                name.append('.').append(tokens.get(index + 1).text);
+                index += 2;
+            }
+            if (at("(")) {
+                index += 1;
+                return call(name.toString(), parseArguments());
+            }
+            return value(name.toString());
+        }
+        return UNSUPPORTED;
+    }
+
+    private Object value(String name) {
+        if (name.equals("null")) {
+            return NULL;
+        } else if (requests.containsKey(name)) {
+            return requests.get(name);
+        } else if (arrays.containsKey(name)) {
+            return arrays.get(name);
+        } else if (name.endsWith(".length") && arrays.containsKey(name.substring(0, name.length() - 7))) {
+            return arrays.get(name.substring(0, name.length() - 7)).length;
+        } else if (name.equals("ByteOrder.LITTLE_ENDIAN")) {
+            return ByteOrder.LITTLE_ENDIAN;
+        } else if (name.equals("ByteOrder.BIG_ENDIAN")) {
+            return ByteOrder.BIG_ENDIAN;
+        } else if (name.startsWith("HttpVersion.")) {
+            return HttpVersion.valueOf(name.substring(12).replaceFirst("_", "/").replace('_', '.'));
+        } else if (name.startsWith("HttpMethod.")) {
+            return HttpMethod.valueOf(name.substring(11));
+        }
+        return UNSUPPORTED;
+    }
+
+    private static Object call(String name, List<Object> arguments) {
+        if (arguments.contains(UNSUPPORTED)) {
+            return UNSUPPORTED;
+        }
+        if (name.endsWith("convertArray") && arguments.size() == 1) {
+            return arguments.get(0);
+        } else if (name.equals("Charset.defaultCharset")) {
+            return Charset.defaultCharset();
+        } else if (name.equals("ChannelBuffers.wrappedBuffer") && arguments.size() == 1) {
+            return ChannelBuffers.wrappedBuffer((byte[]) arguments.get(0));
+        } else if (name.equals("ChannelBuffers.wrappedBuffer") && arguments.size() == 2) {
+            return ChannelBuffers.wrappedBuffer((ByteOrder) arguments.get(0), (byte[]) arguments.get(1));
+        } else if (name.equals("ChannelBuffers.copiedBuffer") && arguments.size() == 2) {
+            return ChannelBuffers.copiedBuffer((String) arguments.get(0), (Charset) arguments.get(1));
+        } else if (name.endsWith(".getBuffer") && arguments.size() == 3) {
+            return ChannelBuffers.wrappedBuffer(
+                    (byte[]) arguments.get(0), (Integer) arguments.get(1), (Integer) arguments.get(2));
+        }
+        return UNSUPPORTED;
+    }
+
+    private static Object construct(String type, List<Object> arguments) {
+        if (type.equals("DefaultHttpRequest") && arguments.size() == 3 && !arguments.contains(UNSUPPORTED)) {
+            return new DefaultHttpRequest(
+                    (HttpVersion) arguments.get(0), (HttpMethod) arguments.get(1), (String) arguments.get(2));
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Restore buffer indexes consumed by previous decoding
+     */
+    public static Object reset(Object message) {
+        if (message instanceof ChannelBuffer) {
+            ChannelBuffer buffer = (ChannelBuffer) message;
+            buffer.setIndex(0, buffer.capacity());
+        }
+        return message;
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.traccar;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.frame.FrameDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Protocol frame decoders with sample messages from protocol decoder tests
+ *
+ * Samples are written to the decoder through a pipeline, so cumulation
+ * code of the frame decoder is included. Only samples that are decoded
+ * into the same frames on every write are used. Text samples are written
+ * as ASCII, tests usually strip frame delimiter, so common delimiters are
+ * appended if sample alone is incomplete. Each operation writes one sample
+ * and reads all frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class FrameDecoderBenchmark {
+
+    @Param({"Aplicom", "Atrack", "Cellocator", "Galileo", "Gt06", "H02", "Intellitrac", "Jt600", "Meiligao",
+            "Navigil", "Stl060", "Teltonika", "Totem", "Wondex", "Xexun"})
+    public String protocol;
+
+    private static final String[] DELIMITERS = {"", "\r\n", "#"};
+
+    private DecoderEmbedder<Object> embedder;
+    private ChannelBuffer[] samples;
+    private int next;
+
+    private FrameDecoder createDecoder() throws Exception {
+        Class<?> type = Class.forName("org.traccar.protocol." + protocol + "FrameDecoder");
+        try {
+            return (FrameDecoder) type.getConstructor().newInstance();
+        } catch (NoSuchMethodException error) {
+            return (FrameDecoder) type.getConstructor(int.class).newInstance(1024);
+        }
+    }
+
+    private static int countFrames(DecoderEmbedder<Object> embedder, ChannelBuffer sample) {
+        embedder.offer(DecoderSamples.reset(sample));
+        int count = 0;
+        while (embedder.poll() != null) {
+            count += 1;
+        }
+        return count;
+    }
+
+    /**
+     * Check that sample is decoded into frames without leftover
+     */
+    private boolean isComplete(ChannelBuffer sample) throws Exception {
+        try {
+            DecoderEmbedder<Object> embedder = new DecoderEmbedder<Object>(createDecoder());
+            int count = countFrames(embedder, sample);
+            return count > 0 && countFrames(embedder, sample) == count && countFrames(embedder, sample) == count;
+        } catch (RuntimeException error) {
+            return false;
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        List<ChannelBuffer> result = new ArrayList<ChannelBuffer>();
+        for (Object message : DecoderSamples.load(protocol)) {
+            if (message instanceof ChannelBuffer) {
+                ChannelBuffer sample = (ChannelBuffer) message;
+                if (isComplete(sample)) {
+                    result.add(sample);
+                }
+            } else if (message instanceof String) {
+                for (String delimiter : DELIMITERS) {
+                    ChannelBuffer sample = ChannelBuffers.wrappedBuffer(
+                            (message + delimiter).getBytes(Charset.forName("US-ASCII")));
+                    if (isComplete(sample)) {
+                        result.add(sample);
+                        break;
+                    }
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalStateException("No complete frame samples for " + protocol);
+        }
+        samples = result.toArray(new ChannelBuffer[result.size()]);
+        embedder = new DecoderEmbedder<Object>(createDecoder());
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) {
+        embedder.offer(DecoderSamples.reset(samples[next]));
+        if (++next == samples.length) {
+            next = 0;
+        }
+        Object frame;
+        while ((frame = embedder.poll()) != null) {
+            blackhole.consume(frame);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.traccar;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.helper.TestDataManager;
+
+/**
+ * Protocol decoders with sample messages from their tests
+ *
+ * Each operation decodes one message, samples are taken in test order, so
+ * score is messages per second and normalized allocation rate of the gc
+ * profiler is bytes per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ProtocolDecoderBenchmark {
+
+    @Param({"Aplicom", "Atrack", "Carscop", "Cellocator", "EasyTrack", "Enfora", "Ev603", "Galileo",
+            "Gator", "Gl100", "Gl200", "GlobalSat", "Gotop", "Gps103", "GpsGate", "Gt02", "Gt06", "H02",
+            "Intellitrac", "Jt600", "Khd", "Laipac", "M2m", "Megastek", "Meiligao", "Meitrack", "Navigil", "Navis",
+            "Noran", "OsmAnd", "Piligrim", "Pt3000", "Pt502", "Ruptela", "Sanav", "Skypatrol", "Stl060", "Suntech",
+            "T55", "Teltonika", "Tk102", "Tk103", "Tlt2h", "Topflytech", "Totem", "Tr20", "V680", "Wialon",
+            "Wondex", "Xexun2", "Xexun", "Xt7", "Ywt"})
+    public String protocol;
+
+    private BaseProtocolDecoder decoder;
+    private Object[] messages;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        decoder = (BaseProtocolDecoder) Class.forName("org.traccar.protocol." + protocol + "ProtocolDecoder")
+                .getConstructor(ServerManager.class).newInstance((ServerManager) null);
+        decoder.setDataManager(new TestDataManager());
+        messages = DecoderSamples.load(protocol).toArray();
+        if (messages.length == 0) {
+            throw new IllegalStateException("No samples for " + protocol);
+        }
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        Object message = DecoderSamples.reset(messages[next]);
+        if (++next == messages.length) {
+            next = 0;
+        }
+        return decoder.decode(null, null, null, message);
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.traccar.helper;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fix time from separate fields with UTC Calendar and with date builder
+ *
+ * Fields change on every operation, so results cannot be folded. Run with
+ * "-prof gc" to compare allocation per fix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBuilderBenchmark {
+
+    private int counter;
+
+    @Benchmark
+    public Date calendar() {
+        int value = counter++;
+        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        time.clear();
+        time.set(Calendar.YEAR, 2000 + (value & 0x0f));
+        time.set(Calendar.MONTH, (value >> 4) % 12);
+        time.set(Calendar.DAY_OF_MONTH, 1 + (value >> 8) % 28);
+        time.set(Calendar.HOUR_OF_DAY, value % 24);
+        time.set(Calendar.MINUTE, value % 60);
+        time.set(Calendar.SECOND, (value >> 2) % 60);
+        return time.getTime();
+    }
+
+    @Benchmark
+    public Date dateBuilder() {
+        int value = counter++;
+        DateBuilder time = new DateBuilder();
+        time.setYear(2000 + (value & 0x0f));
+        time.setMonth(1 + (value >> 4) % 12);
+        time.setDay(1 + (value >> 8) % 28);
+        time.setHour(value % 24);
+        time.setMinute(value % 60);
+        time.setSecond((value >> 2) % 60);
+        return time.getDate();
+    }
+
+    @Benchmark
+    public long toMillis() {
+        int value = counter++;
+        return DateBuilder.toMillis(
+                2000 + (value & 0x0f), 1 + (value >> 4) % 12, 1 + (value >> 8) % 28,
+                value % 24, value % 60, (value >> 2) % 60, 0);
+    }
+
+}
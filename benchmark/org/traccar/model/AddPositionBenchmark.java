@@ -0,0 +1,93 @@
+package org.traccar.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Synchronous insert path against in-memory H2 database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AddPositionBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+    private DataManager dataManager;
+    private Position position;
+
+    @Setup
+    public void setup() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(URL, "sa", "");
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE positions (id BIGINT AUTO_INCREMENT PRIMARY KEY, device_id BIGINT, " +
+                "time TIMESTAMP, valid BOOLEAN, latitude DOUBLE, longitude DOUBLE, altitude DOUBLE, " +
+                "speed DOUBLE, course DOUBLE, power DOUBLE, other VARCHAR(4096))");
+
+        Properties properties = new Properties();
+        properties.setProperty("database.driver", "org.h2.Driver");
+        properties.setProperty("database.url", URL);
+        properties.setProperty("database.user", "sa");
+        properties.setProperty("database.password", "");
+        properties.setProperty("database.insertPosition",
+                "INSERT INTO positions (device_id, time, valid, latitude, longitude, altitude, speed, course, power, other) " +
+                "VALUES (:device_id, :time, :valid, :latitude, :longitude, :altitude, :speed, :course, :power, :extended_info);");
+        dataManager = new DatabaseDataManager(properties);
+
+        ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navis");
+        extendedInfo.set("index", 1234L);
+        extendedInfo.set("power", 12.5);
+        extendedInfo.set("battery", 4);
+
+        position = new Position();
+        position.setDeviceId(1L);
+        position.setTime(new Date());
+        position.setValid(true);
+        position.setLatitude(60.0);
+        position.setLongitude(30.0);
+        position.setAltitude(0.0);
+        position.setSpeed(12.0);
+        position.setCourse(180.0);
+        position.setIndex(1234L);
+        position.setPower(12.5);
+        position.setExtendedInfo(extendedInfo.toString());
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws Exception {
+        connection.createStatement().execute("TRUNCATE TABLE positions");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.createStatement().execute("DROP TABLE positions");
+        connection.close();
+    }
+
+    @Benchmark
+    public Long addPosition() throws Exception {
+        return dataManager.addPosition(position);
+    }
+
+}
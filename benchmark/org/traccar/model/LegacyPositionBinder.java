@@ -0,0 +1,162 @@
+package org.traccar.model;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy of name based binding used before precompiled handles, kept as benchmark baseline
+ */
+public class LegacyPositionBinder {
+
+    private final Map<String, List<Integer>> indexMap = new HashMap<String, List<Integer>>();
+    private final String parsedQuery;
+
+    public LegacyPositionBinder(String query) {
+        parsedQuery = parse(query, indexMap);
+    }
+
+    private static String parse(String query, Map<String, List<Integer>> paramMap) {
+
+        int length = query.length();
+        StringBuilder parsedQuery = new StringBuilder(length);
+        boolean inSingleQuote = false;
+        boolean inDoubleQuote = false;
+        int index = 1;
+
+        for(int i = 0; i < length; i++) {
+
+            char c = query.charAt(i);
+
+            // String end
+            if (inSingleQuote) {
+                if (c == '\'') inSingleQuote = false;
+            } else if (inDoubleQuote) {
+                if (c == '"') inDoubleQuote = false;
+            } else {
+
+                // String begin
+                if (c == '\'') {
+                    inSingleQuote = true;
+                } else if (c == '"') {
+                    inDoubleQuote = true;
+                } else if (c == ':' && i + 1 < length &&
+                        Character.isJavaIdentifierStart(query.charAt(i + 1))) {
+
+                    // Identifier name
+                    int j = i + 2;
+                    while (j < length && Character.isJavaIdentifierPart(query.charAt(j))) j++;
+
+                    String name = query.substring(i + 1, j);
+                    c = '?';
+                    i += name.length();
+
+                    // Add to list
+                    List<Integer> indexList = paramMap.get(name);
+                    if (indexList == null) {
+                        indexList = new LinkedList<Integer>();
+                        paramMap.put(name, indexList);
+                    }
+                    indexList.add(index);
+
+                    index++;
+                }
+            }
+
+            parsedQuery.append(c);
+        }
+
+        return parsedQuery.toString();
+    }
+
+    /**
+     * Query with named parameters replaced by placeholders
+     */
+    public String getQuery() {
+        return parsedQuery;
+    }
+
+    public void bind(PreparedStatement statement, Position position) throws SQLException {
+        setLong(statement, "device_id", position.getDeviceId());
+        setTimestamp(statement, "time", position.getTime());
+        setBoolean(statement, "valid", position.getValid());
+        setDouble(statement, "altitude", position.getAltitude());
+        setDouble(statement, "latitude", position.getLatitude());
+        setDouble(statement, "longitude", position.getLongitude());
+        setDouble(statement, "speed", position.getSpeed());
+        setDouble(statement, "course", position.getCourse());
+        setString(statement, "address", position.getAddress());
+        setString(statement, "extended_info", position.getExtendedInfo());
+        setLong(statement, "index", position.getIndex());
+        setDouble(statement, "power", position.getPower());
+        setLong(statement, "position_id", position.getId());
+        setLong(statement, "id", position.getIndex());
+    }
+
+    private void setLong(PreparedStatement statement, String name, Long value) throws SQLException {
+
+        List<Integer> indexList = indexMap.get(name);
+        if (indexList != null) for (Integer index: indexList) {
+            if (value != null) {
+                statement.setLong(index, value);
+            } else {
+                statement.setNull(index, Types.INTEGER);
+            }
+        }
+    }
+
+    private void setBoolean(PreparedStatement statement, String name, Boolean value) throws SQLException {
+
+        List<Integer> indexList = indexMap.get(name);
+        if (indexList != null) for (Integer index: indexList) {
+            if (value != null) {
+                statement.setBoolean(index, value);
+            } else {
+                statement.setNull(index, Types.BOOLEAN);
+            }
+        }
+    }
+
+    private void setDouble(PreparedStatement statement, String name, Double value) throws SQLException {
+
+        List<Integer> indexList = indexMap.get(name);
+        if (indexList != null) for (Integer index: indexList) {
+            if (value != null) {
+                statement.setDouble(index, value);
+            } else {
+                statement.setNull(index, Types.DOUBLE);
+            }
+        }
+    }
+
+    private void setTimestamp(PreparedStatement statement, String name, Date value) throws SQLException {
+
+        List<Integer> indexList = indexMap.get(name);
+        if (indexList != null) for (Integer index: indexList) {
+            if (value != null) {
+                statement.setTimestamp(index, new Timestamp(value.getTime()));
+            } else {
+                statement.setNull(index, Types.TIMESTAMP);
+            }
+        }
+    }
+
+    private void setString(PreparedStatement statement, String name, String value) throws SQLException {
+
+        List<Integer> indexList = indexMap.get(name);
+        if (indexList != null) for (Integer index: indexList) {
+            if (value != null) {
+                statement.setString(index, value);
+            } else {
+                statement.setNull(index, Types.VARCHAR);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.traccar.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.helper.AdvancedConnection;
+import org.traccar.helper.NamedParameterStatement;
+
+/**
+ * Position insert parameter binding by name with legacy index lists and by precompiled handles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PositionBinderBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:binder;DB_CLOSE_DELAY=-1";
+
+    private static final String QUERY =
+            "INSERT INTO positions (device_id, time, valid, latitude, longitude, altitude, speed, course, address, power, other) " +
+            "VALUES (:device_id, :time, :valid, :latitude, :longitude, :altitude, :speed, :course, :address, :power, :extended_info);";
+
+    private Connection connection;
+    private NamedParameterStatement.Params params;
+    private PositionBinder binder;
+    private PreparedStatement legacyStatement;
+    private LegacyPositionBinder legacyBinder;
+    private Position position;
+
+    @Setup
+    public void setup() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection(URL, "sa", "");
+        connection.createStatement().execute("CREATE TABLE positions (id BIGINT AUTO_INCREMENT PRIMARY KEY, device_id BIGINT, " +
+                "time TIMESTAMP, valid BOOLEAN, latitude DOUBLE, longitude DOUBLE, altitude DOUBLE, " +
+                "speed DOUBLE, course DOUBLE, address VARCHAR(256), power DOUBLE, other VARCHAR(4096))");
+
+        NamedParameterStatement statement = new NamedParameterStatement(new AdvancedConnection(URL, "sa", ""), QUERY);
+        params = statement.prepare(Statement.RETURN_GENERATED_KEYS);
+        binder = new PositionBinder(statement);
+
+        legacyBinder = new LegacyPositionBinder(QUERY);
+        legacyStatement = connection.prepareStatement(legacyBinder.getQuery(), Statement.RETURN_GENERATED_KEYS);
+
+        position = new Position();
+        position.setDeviceId(1L);
+        position.setTime(new Date());
+        position.setValid(true);
+        position.setLatitude(60.0);
+        position.setLongitude(30.0);
+        position.setAltitude(0.0);
+        position.setSpeed(12.0);
+        position.setCourse(180.0);
+        position.setIndex(1234L);
+        position.setPower(12.5);
+        position.setExtendedInfo("<info><protocol>navis</protocol><battery>4</battery></info>");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        params.close();
+        legacyStatement.close();
+        connection.createStatement().execute("DROP TABLE positions");
+        connection.close();
+    }
+
+    @Benchmark
+    public void bindByName() throws Exception {
+        legacyBinder.bind(legacyStatement, position);
+    }
+
+    @Benchmark
+    public void bindByHandle() throws Exception {
+        binder.bind(params, position);
+    }
+
+}
@@ -17,14 +17,22 @@ package org.traccar;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
+import org.jboss.netty.handler.execution.ExecutionHandler;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
 import org.jboss.netty.handler.logging.LoggingHandler;
 import org.jboss.netty.handler.timeout.IdleStateHandler;
 import org.traccar.geocode.ReverseGeocoder;
 import org.traccar.helper.Log;
+import org.traccar.helper.NamedThreadFactory;
 import org.traccar.model.DataManager;
+import org.traccar.redis.PositionPublisher;
 
 /**
   * Base pipeline factory
@@ -32,10 +40,16 @@ import org.traccar.model.DataManager;
 public abstract class BasePipelineFactory implements ChannelPipelineFactory {
 
     private TrackerServer server;
+    private String protocol;
     private DataManager dataManager;
+    private PositionPublisher positionPublisher;
+    private PositionFilter positionFilter;
+    private boolean filterStorage;
     private Boolean loggerEnabled;
     private Integer resetDelay;
     private ReverseGeocoder reverseGeocoder;
+    private ExecutionHandler executionHandler;
+    private CaptureHandler captureHandler;
 
     /**
      * Open channel handler
@@ -55,13 +69,18 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
     }
 
     /**
-     * Logging using global logger
+     * Logging using protocol logger, message is formatted only if debug level is enabled
      */
     protected class StandardLoggingHandler extends LoggingHandler {
 
+        private final Logger logger = Log.getLogger(protocol);
+
         @Override
         public void log(ChannelEvent e) {
             if (e instanceof MessageEvent) {
+                if (!logger.isDebugEnabled()) {
+                    return;
+                }
                 MessageEvent event = (MessageEvent) e;
                 StringBuilder msg = new StringBuilder();
 
@@ -81,7 +100,7 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
                     msg.append(ChannelBuffers.hexDump((ChannelBuffer) event.getMessage()));
                 }
 
-                Log.debug(msg.toString());
+                logger.debug(msg.toString());
             } else if (e instanceof ExceptionEvent) {
                 ExceptionEvent event = (ExceptionEvent) e;
                 Log.warning(event.getCause());
@@ -92,7 +111,11 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
 
     public BasePipelineFactory(ServerManager serverManager, TrackerServer server, String protocol) {
         this.server = server;
+        this.protocol = protocol;
         dataManager = serverManager.getDataManager();
+        positionPublisher = serverManager.getPositionPublisher();
+        positionFilter = serverManager.getPositionFilter();
+        filterStorage = serverManager.isFilterStorage();
         loggerEnabled = serverManager.isLoggerEnabled();
         reverseGeocoder = serverManager.getReverseGeocoder();
 
@@ -100,6 +123,52 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
         if (resetDelayProperty != null) {
             resetDelay = Integer.valueOf(resetDelayProperty);
         }
+
+        initExecutionHandler(serverManager.getProperties(), protocol);
+
+        if (serverManager.getCaptureFile() != null
+                && Boolean.parseBoolean(serverManager.getProperties().getProperty(protocol + ".capture"))) {
+            captureHandler = new CaptureHandler(serverManager.getCaptureFile(), protocol);
+        }
+    }
+
+    private static String getProperty(Properties properties, String protocol, String key, String defaultValue) {
+        String value = properties.getProperty(protocol + "." + key);
+        return (value != null) ? value : properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * Geocoding, storage and publishing run on executor threads instead of I/O threads
+     *
+     * Events of each channel keep their order and queued events are limited
+     * by memory size, so slow storage slows reading instead of exhausting heap.
+     */
+    private void initExecutionHandler(Properties properties, String protocol) {
+        if (!Boolean.parseBoolean(getProperty(properties, protocol, "executor.enable", "false"))) {
+            return;
+        }
+        executionHandler = new ExecutionHandler(new OrderedMemoryAwareThreadPoolExecutor(
+                Integer.parseInt(getProperty(properties, protocol, "executor.threads", "16")),
+                Long.parseLong(getProperty(properties, protocol, "executor.channelMemory", "1048576")),
+                Long.parseLong(getProperty(properties, protocol, "executor.totalMemory", "67108864")),
+                60, TimeUnit.SECONDS, new NamedThreadFactory(protocol + "-executor")));
+    }
+
+    /**
+     * Wait for queued events and stop executor threads
+     */
+    public void release() {
+        if (executionHandler != null) {
+            ExecutorService executor = (ExecutorService) executionHandler.getExecutor();
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    Log.warning("Executor did not finish queued events");
+                }
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     protected DataManager getDataManager() {
@@ -111,18 +180,25 @@ public abstract class BasePipelineFactory implements ChannelPipelineFactory {
     @Override
     public ChannelPipeline getPipeline() {
         ChannelPipeline pipeline = Channels.pipeline();
+        pipeline.addLast("statistics", GlobalChannelFactory.getWorkerStatistics());
         if (resetDelay != null) {
             pipeline.addLast("idleHandler", new IdleStateHandler(GlobalTimer.getTimer(), resetDelay, 0, 0));
         }
         pipeline.addLast("openHandler", new OpenChannelHandler(server));
+        if (captureHandler != null) {
+            pipeline.addLast("capture", captureHandler);
+        }
         if (loggerEnabled) {
             pipeline.addLast("logger", new StandardLoggingHandler());
         }
         addSpecificHandlers(pipeline);
+        if (executionHandler != null) {
+            pipeline.addLast("executor", executionHandler);
+        }
         if (reverseGeocoder != null) {
             pipeline.addLast("geocoder", new ReverseGeocoderHandler(reverseGeocoder));
         }
-        pipeline.addLast("handler", new TrackerEventHandler(dataManager));
+        pipeline.addLast("handler", new TrackerEventHandler(dataManager, positionPublisher, positionFilter, filterStorage));
         return pipeline;
     }
 
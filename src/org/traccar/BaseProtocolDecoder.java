@@ -21,8 +21,11 @@ import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import static org.jboss.netty.channel.Channels.fireMessageReceived;
 import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.socket.DatagramChannel;
 import org.jboss.netty.handler.codec.oneone.OneToOneDecoder;
+import org.traccar.helper.Log;
 import org.traccar.model.DataManager;
+import org.traccar.model.Device;
 
 /**
  * Base class for protocol decoders
@@ -32,6 +35,16 @@ public abstract class BaseProtocolDecoder extends OneToOneDecoder {
     private ServerManager serverManager;
     private DataManager dataManager;
 
+    /**
+     * Last identified device
+     */
+    private long deviceId;
+
+    /**
+     * Frames from unknown devices since last identified one
+     */
+    private int unknownCount;
+
     public final void setDataManager(DataManager dataManager) {
         this.dataManager = dataManager;
     }
@@ -57,6 +70,55 @@ public abstract class BaseProtocolDecoder extends OneToOneDecoder {
             dataManager = serverManager.getDataManager();
         }
     }
+
+    private UnknownDeviceCache getUnknownDeviceCache() {
+        return (serverManager != null) ? serverManager.getUnknownDeviceCache() : null;
+    }
+
+    /**
+     * Id of the device found by last successful identification
+     */
+    protected long getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Find device by unique identifiers, tried in given order
+     *
+     * @return false if device is not registered
+     */
+    protected boolean identify(String... uniqueIds) {
+        for (String uniqueId : uniqueIds) {
+            try {
+                Device device = dataManager.getDeviceByImei(uniqueId);
+                if (device != null) {
+                    deviceId = device.getId();
+                    unknownCount = 0;
+                    return true;
+                }
+            } catch (Exception error) {
+                Log.warning(error);
+            }
+        }
+
+        unknownCount++;
+
+        // Shared cache is only used for unknown devices
+        UnknownDeviceCache unknownDevices = getUnknownDeviceCache();
+        int suppressed = (unknownDevices != null) ? unknownDevices.report(uniqueIds[0]) : 0;
+        if (suppressed >= 0) {
+            StringBuilder message = new StringBuilder("Unknown device - ").append(uniqueIds[0]);
+            for (int i = 1; i < uniqueIds.length; i++) {
+                message.append(" (").append(uniqueIds[i]).append(")");
+            }
+            if (suppressed > 0) {
+                message.append(" [").append(suppressed).append(" similar warnings suppressed]");
+            }
+            Log.warning(message.toString());
+        }
+
+        return false;
+    }
     
     @Override
     public void handleUpstream(
@@ -69,6 +131,18 @@ public abstract class BaseProtocolDecoder extends OneToOneDecoder {
         MessageEvent e = (MessageEvent) evt;
         Object originalMessage = e.getMessage();
         Object decodedMessage = decode(ctx, e.getChannel(), e.getRemoteAddress(), originalMessage);
+
+        // Stop spending resources on unregistered trackers
+        UnknownDeviceCache unknownDevices = getUnknownDeviceCache();
+        if (unknownDevices != null && unknownDevices.getCloseLimit() > 0
+                && unknownCount >= unknownDevices.getCloseLimit()
+                && !(e.getChannel() instanceof DatagramChannel)) {
+            Log.warning("Closing connection after " + unknownCount + " frames from unknown device");
+            unknownCount = 0;
+            e.getChannel().close();
+            return;
+        }
+
         if (originalMessage == decodedMessage) {
             ctx.sendUpstream(evt);
         } else if (decodedMessage != null) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+import org.traccar.helper.CaptureFile;
+
+/**
+ * Raw inbound traffic capture
+ *
+ * Received buffers are copied to capture file as is, before any frame
+ * decoding, so captured traffic can be replayed through the pipeline.
+ */
+@ChannelHandler.Sharable
+public class CaptureHandler implements ChannelUpstreamHandler {
+
+    private final CaptureFile captureFile;
+    private final byte[] protocol;
+
+    public CaptureHandler(CaptureFile captureFile, String protocol) {
+        this.captureFile = captureFile;
+        this.protocol = CaptureFile.encodeProtocol(protocol);
+    }
+
+    @Override
+    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        if (e instanceof MessageEvent) {
+            MessageEvent event = (MessageEvent) e;
+            if (event.getMessage() instanceof ChannelBuffer) {
+                SocketAddress localAddress = e.getChannel().getLocalAddress();
+                captureFile.write(
+                        System.currentTimeMillis(),
+                        e.getChannel().getId(),
+                        (localAddress instanceof InetSocketAddress) ? ((InetSocketAddress) localAddress).getPort() : 0,
+                        protocol,
+                        event.getRemoteAddress(),
+                        (ChannelBuffer) event.getMessage());
+            }
+        }
+        ctx.sendUpstream(e);
+    }
+
+}
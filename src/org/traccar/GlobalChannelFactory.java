@@ -15,40 +15,118 @@
  */
 package org.traccar;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.socket.DatagramChannelFactory;
 import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioDatagramWorkerPool;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioWorkerPool;
+import org.jboss.netty.util.ThreadNameDeterminer;
+import org.jboss.netty.util.ThreadRenamingRunnable;
+import org.traccar.helper.NamedThreadFactory;
 
+/**
+ * Shared NIO channel factories
+ *
+ * All protocols share one boss pool and one worker pool for each transport
+ * by default. Protocol with its own worker count gets dedicated workers,
+ * so heavy traffic of one protocol does not delay others.
+ */
 public class GlobalChannelFactory {
 
-    private static ChannelFactory channelFactory = null;
-    private static DatagramChannelFactory datagramChannelFactory = null;
+    private static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static Properties properties = new Properties();
+    private static ExecutorService bossExecutor = null;
+
+    private static final Map<String, ChannelFactory> channelFactories = new HashMap<String, ChannelFactory>();
+    private static final Map<String, DatagramChannelFactory> datagramChannelFactories = new HashMap<String, DatagramChannelFactory>();
+
+    private static final WorkerStatistics workerStatistics = new WorkerStatistics();
 
-    public static void release() {
-        if (channelFactory != null) {
-            channelFactory.releaseExternalResources();
+    /**
+     * Load pool configuration, called before factories are created
+     */
+    public static synchronized void init(Properties newProperties) {
+        properties = newProperties;
+        // Keep names given by thread factories
+        ThreadRenamingRunnable.setThreadNameDeterminer(ThreadNameDeterminer.CURRENT);
+    }
+
+    public static WorkerStatistics getWorkerStatistics() {
+        return workerStatistics;
+    }
+
+    public static synchronized void release() {
+        for (ChannelFactory factory : channelFactories.values()) {
+            factory.releaseExternalResources();
+        }
+        for (DatagramChannelFactory factory : datagramChannelFactories.values()) {
+            factory.releaseExternalResources();
         }
-        if (datagramChannelFactory != null) {
-            datagramChannelFactory.releaseExternalResources();
+        channelFactories.clear();
+        datagramChannelFactories.clear();
+        if (bossExecutor != null) {
+            bossExecutor.shutdownNow();
+            bossExecutor = null;
         }
-        channelFactory = null;
-        datagramChannelFactory = null;
+    }
+
+    /**
+     * Name of worker group used by protocol
+     */
+    private static String getGroup(String protocol) {
+        if (protocol != null && properties.getProperty(protocol + ".workerThreads") != null) {
+            return protocol;
+        }
+        return "nio";
+    }
+
+    private static int getWorkerCount(String group) {
+        String key = group.equals("nio") ? "server.workerThreads" : group + ".workerThreads";
+        return Integer.parseInt(properties.getProperty(key, String.valueOf(DEFAULT_WORKERS)));
     }
 
     public static ChannelFactory getFactory() {
-        if (channelFactory == null) {
-            channelFactory = new NioServerSocketChannelFactory();
+        return getFactory(null);
+    }
+
+    public static synchronized ChannelFactory getFactory(String protocol) {
+        String group = getGroup(protocol);
+        ChannelFactory factory = channelFactories.get(group);
+        if (factory == null) {
+            if (bossExecutor == null) {
+                bossExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("nio-boss"));
+            }
+            factory = new NioServerSocketChannelFactory(
+                    bossExecutor, Integer.parseInt(properties.getProperty("server.bossThreads", "1")),
+                    new NioWorkerPool(
+                            Executors.newCachedThreadPool(new NamedThreadFactory(group + "-worker")),
+                            getWorkerCount(group)));
+            channelFactories.put(group, factory);
         }
-        return channelFactory;
+        return factory;
     }
-    
+
     public static DatagramChannelFactory getDatagramFactory() {
-        if (datagramChannelFactory == null) {
-            datagramChannelFactory = new NioDatagramChannelFactory();
+        return getDatagramFactory(null);
+    }
+
+    public static synchronized DatagramChannelFactory getDatagramFactory(String protocol) {
+        String group = getGroup(protocol);
+        DatagramChannelFactory factory = datagramChannelFactories.get(group);
+        if (factory == null) {
+            factory = new NioDatagramChannelFactory(new NioDatagramWorkerPool(
+                    Executors.newCachedThreadPool(new NamedThreadFactory(group + "-datagram")),
+                    getWorkerCount(group)));
+            datagramChannelFactories.put(group, factory);
         }
-        return datagramChannelFactory;
+        return factory;
     }
 
 }
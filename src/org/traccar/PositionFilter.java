@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.model.Position;
+
+/**
+ * Movement-based position suppression
+ *
+ * Fix is suppressed if device moved less than distance threshold and
+ * turned less than course threshold since the last accepted fix, unless
+ * heartbeat interval has passed. Fixes without coordinates or older than
+ * the last accepted one are always accepted.
+ *
+ * Last accepted fix of each device is kept in open addressing tables with
+ * primitive columns, split into segments with separate locks.
+ */
+public class PositionFilter {
+
+    private static final int SEGMENTS = 16;
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private final double distance;
+    private final double course;
+    private final long heartbeat;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong suppressedCount = new AtomicLong();
+
+    /**
+     * Device id to last accepted fix table
+     */
+    private static class Segment {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys;
+        private double[] latitudes;
+        private double[] longitudes;
+        private double[] courses;
+        private long[] times;
+        private int size;
+
+        private Segment() {
+            allocate(64);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            latitudes = new double[capacity];
+            longitudes = new double[capacity];
+            courses = new double[capacity];
+            times = new long[capacity];
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int index = (int) (mix(key) & mask);
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void put(int index, long key, double latitude, double longitude, double course, long time) {
+            if (keys[index] == EMPTY) {
+                keys[index] = key;
+                size += 1;
+            }
+            latitudes[index] = latitude;
+            longitudes[index] = longitude;
+            courses[index] = course;
+            times[index] = time;
+            if (size * 2 > keys.length) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            double[] oldLatitudes = latitudes;
+            double[] oldLongitudes = longitudes;
+            double[] oldCourses = courses;
+            long[] oldTimes = times;
+
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int index = find(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    latitudes[index] = oldLatitudes[i];
+                    longitudes[index] = oldLongitudes[i];
+                    courses[index] = oldCourses[i];
+                    times[index] = oldTimes[i];
+                }
+            }
+        }
+
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * @param distance minimum movement in meters
+     * @param course minimum course change in degrees (0 to disable)
+     * @param heartbeat maximum interval between accepted fixes in milliseconds
+     */
+    public PositionFilter(double distance, double course, long heartbeat) {
+        this.distance = distance;
+        this.course = course;
+        this.heartbeat = heartbeat;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Equirectangular approximation, precise enough for threshold distances
+     */
+    private static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLon = Math.toRadians(lon2 - lon1);
+        if (dLon > Math.PI) {
+            dLon -= 2 * Math.PI;
+        } else if (dLon < -Math.PI) {
+            dLon += 2 * Math.PI;
+        }
+        double x = dLon * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return EARTH_RADIUS * Math.sqrt(x * x + y * y);
+    }
+
+    private static double courseChange(double course1, double course2) {
+        double change = Math.abs(course1 - course2) % 360;
+        return (change > 180) ? 360 - change : change;
+    }
+
+    /**
+     * Check whether position should be processed, accepted position becomes new reference
+     */
+    public boolean accept(Position position) {
+        if (position.getLatitude() == null || position.getLongitude() == null) {
+            acceptedCount.incrementAndGet();
+            return true;
+        }
+
+        long deviceId = position.getDeviceId();
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        double positionCourse = (position.getCourse() != null) ? position.getCourse() : Double.NaN;
+        long time = (position.getTime() != null) ? position.getTime().getTime() : System.currentTimeMillis();
+
+        Segment segment = segments[(int) (mix(deviceId) >>> 60)];
+        synchronized (segment) {
+            int index = segment.find(deviceId);
+            if (segment.keys[index] != Segment.EMPTY) {
+                long lastTime = segment.times[index];
+                if (time < lastTime) {
+                    acceptedCount.incrementAndGet();
+                    return true;
+                }
+                double lastCourse = segment.courses[index];
+                if (time - lastTime < heartbeat
+                        && distance(segment.latitudes[index], segment.longitudes[index], latitude, longitude) < distance
+                        && (course <= 0 || Double.isNaN(positionCourse) || Double.isNaN(lastCourse)
+                                || courseChange(lastCourse, positionCourse) < course)) {
+                    suppressedCount.incrementAndGet();
+                    return false;
+                }
+            }
+            segment.put(index, deviceId, latitude, longitude, positionCourse, time);
+        }
+        acceptedCount.incrementAndGet();
+        return true;
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+
+}
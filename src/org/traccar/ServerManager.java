@@ -15,13 +15,17 @@
  */
 package org.traccar;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
 import org.jboss.netty.bootstrap.ServerBootstrap;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -35,13 +39,25 @@ import org.jboss.netty.handler.codec.http.HttpRequestDecoder;
 import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import org.jboss.netty.handler.codec.string.StringDecoder;
 import org.jboss.netty.handler.codec.string.StringEncoder;
+import org.jboss.netty.util.Timeout;
+import org.jboss.netty.util.TimerTask;
 import org.traccar.geocode.GoogleReverseGeocoder;
 import org.traccar.geocode.NominatimReverseGeocoder;
 import org.traccar.geocode.ReverseGeocoder;
+import org.traccar.helper.CaptureFile;
 import org.traccar.helper.Log;
 import org.traccar.http.WebServer;
 import org.traccar.model.DataManager;
 import org.traccar.model.DatabaseDataManager;
+import org.traccar.model.PositionSpool;
+import org.traccar.redis.BinaryPositionEncoder;
+import org.traccar.redis.CompanyChannelCache;
+import org.traccar.redis.CompanyRateLimiter;
+import org.traccar.redis.JsonPositionEncoder;
+import org.traccar.redis.PositionEncoder;
+import org.traccar.redis.PositionPublisher;
+import org.traccar.redis.RedisPublisher;
+import org.traccar.redis.RedisShards;
 import org.traccar.protocol.*;
 
 /**
@@ -67,6 +83,51 @@ public class ServerManager {
         return dataManager;
     }
 
+    private CompanyChannelCache companyChannelCache;
+
+    public CompanyChannelCache getCompanyChannelCache() {
+        return companyChannelCache;
+    }
+
+    private RedisShards redisShards;
+
+    public RedisShards getRedisShards() {
+        return redisShards;
+    }
+
+    private PositionPublisher positionPublisher;
+
+    public PositionPublisher getPositionPublisher() {
+        return positionPublisher;
+    }
+
+    private PositionFilter positionFilter;
+
+    public PositionFilter getPositionFilter() {
+        return positionFilter;
+    }
+
+    private boolean filterStorage;
+
+    /**
+     * Suppressed positions are not stored in database either
+     */
+    public boolean isFilterStorage() {
+        return filterStorage;
+    }
+
+    private CaptureFile captureFile;
+
+    public CaptureFile getCaptureFile() {
+        return captureFile;
+    }
+
+    private UnknownDeviceCache unknownDeviceCache;
+
+    public UnknownDeviceCache getUnknownDeviceCache() {
+        return unknownDeviceCache;
+    }
+
     private ReverseGeocoder reverseGeocoder;
 
     public ReverseGeocoder getReverseGeocoder() {
@@ -85,24 +146,50 @@ public class ServerManager {
         return  properties;
     }
 
+    public List<TrackerServer> getServers() {
+        return serverList;
+    }
+
     public void init(String[] arguments) throws Exception {
 
         // Load properties
-        properties = new Properties();
+        Properties properties = new Properties();
         if (arguments.length > 0) {
             properties.loadFromXML(new FileInputStream(arguments[0]));
         }
 
+        init(properties, null);
+    }
+
+    /**
+     * Init with loaded properties, database data manager is created if none is given
+     */
+    public void init(Properties properties, DataManager dataManager) throws Exception {
+        this.properties = properties;
+
         // Init logger
         loggerEnabled = Boolean.valueOf(properties.getProperty("logger.enable"));
         if (loggerEnabled) {
             Log.setupLogger(properties);
         }
 
-        dataManager = new DatabaseDataManager(properties);
+        this.dataManager = (dataManager != null) ? dataManager : new DatabaseDataManager(properties);
+
+        if (Boolean.parseBoolean(properties.getProperty("redis.enable", "true"))) {
+            initCompanyChannelCache(properties);
+            initRedisPublisher(properties);
+        }
+
+        initPositionFilter(properties);
+
+        initUnknownDeviceCache(properties);
 
         initGeocoder(properties);
 
+        initCaptureFile(properties);
+
+        GlobalChannelFactory.init(properties);
+
         initXexunServer("xexun");
         initGps103Server("gps103");
         initTk103Server("tk103");
@@ -178,6 +265,24 @@ public class ServerManager {
         for (Object server: serverList) {
             ((TrackerServer) server).start();
         }
+
+        String statisticsInterval = properties.getProperty("server.statisticsInterval");
+        if (statisticsInterval != null && Long.parseLong(statisticsInterval) > 0) {
+            scheduleWorkerStatistics(Long.parseLong(statisticsInterval));
+        }
+    }
+
+    /**
+     * Log I/O worker statistics periodically
+     */
+    private void scheduleWorkerStatistics(final long interval) {
+        GlobalTimer.getTimer().newTimeout(new TimerTask() {
+            @Override
+            public void run(Timeout timeout) {
+                Log.info(GlobalChannelFactory.getWorkerStatistics().format());
+                timeout.getTimer().newTimeout(this, interval, TimeUnit.SECONDS);
+            }
+        }, interval, TimeUnit.SECONDS);
     }
 
     public void stop() {
@@ -189,15 +294,134 @@ public class ServerManager {
         GlobalChannelFactory.release();
         GlobalTimer.release();
 
+        // Flush queued positions
+        if (dataManager instanceof DatabaseDataManager) {
+            ((DatabaseDataManager) dataManager).stop();
+        }
+
+        // Publish queued positions
+        if (positionPublisher != null) {
+            positionPublisher.stop();
+        }
+        if (redisShards != null) {
+            redisShards.close();
+        }
+
         if (webServer != null) {
             webServer.stop();
         }
+
+        if (captureFile != null) {
+            captureFile.close();
+        }
     }
 
     public void destroy() {
         serverList.clear();
     }
 
+    private void initCompanyChannelCache(Properties properties) {
+        String timeout = properties.getProperty("redis.channelCache.timeout");
+        companyChannelCache = new CompanyChannelCache(dataManager,
+                (timeout != null) ? Long.valueOf(timeout) * 1000 : 300 * 1000);
+        try {
+            companyChannelCache.preload();
+        } catch (Exception error) {
+            Log.warning("Company channels preload failed", error);
+        }
+    }
+
+    private void initRedisPublisher(Properties properties) {
+        String nodes = properties.getProperty("redis.nodes");
+        if (nodes == null) {
+            nodes = properties.getProperty("redis.host", "localhost") + ":" + properties.getProperty("redis.port", "6379");
+        }
+
+        String password = properties.getProperty("redis.password");
+        Map<String, RedisPublisher> publishers = new LinkedHashMap<String, RedisPublisher>();
+        for (String node : nodes.split(",")) {
+            node = node.trim();
+            int separator = node.lastIndexOf(':');
+            RedisPublisher publisher = new RedisPublisher(
+                    (separator >= 0) ? node.substring(0, separator) : node,
+                    (separator >= 0) ? Integer.valueOf(node.substring(separator + 1)) : 6379,
+                    Integer.valueOf(properties.getProperty("redis.poolSize", "8")),
+                    Integer.valueOf(properties.getProperty("redis.timeout", "2000")),
+                    (password != null && !password.isEmpty()) ? password : null,
+                    Long.valueOf(properties.getProperty("redis.retryInterval", "5")) * 1000,
+                    Boolean.parseBoolean(properties.getProperty("redis.latest.enable")),
+                    Integer.valueOf(properties.getProperty("redis.history.size", "0")));
+            if (Boolean.parseBoolean(properties.getProperty("redis.geo.enable"))) {
+                publisher.enableGeoIndex(
+                        Long.valueOf(properties.getProperty("redis.geo.timeout", "300")) * 1000,
+                        Long.valueOf(properties.getProperty("redis.geo.cleanupInterval", "60")) * 1000);
+            }
+            publishers.put(node, publisher);
+        }
+        redisShards = new RedisShards(publishers, Integer.valueOf(properties.getProperty("redis.virtualNodes", "160")));
+
+        PositionEncoder encoder;
+        if ("binary".equalsIgnoreCase(properties.getProperty("redis.format"))) {
+            encoder = BinaryPositionEncoder.create(properties.getProperty("redis.fields"));
+        } else {
+            encoder = JsonPositionEncoder.create(properties.getProperty("redis.fields"));
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty("redis.queue.enable"))) {
+            PositionPublisher.Overflow overflow = PositionPublisher.Overflow.parse(properties.getProperty("redis.queue.overflow"));
+            PositionSpool spool = null;
+            if (overflow == PositionPublisher.Overflow.SPILL) {
+                String path = properties.getProperty("redis.queue.spool.file", "publish.spool");
+                try {
+                    spool = new PositionSpool(new File(path),
+                            Integer.parseInt(properties.getProperty("redis.queue.spool.size", "64")) * 1024 * 1024);
+                } catch (IOException error) {
+                    Log.warning("Failed to open publish spool " + path, error);
+                }
+            }
+
+            positionPublisher = new PositionPublisher(redisShards, companyChannelCache, encoder,
+                    Integer.parseInt(properties.getProperty("redis.queue.size", "10000")), overflow, spool,
+                    Integer.parseInt(properties.getProperty("redis.queue.batchSize", "100")),
+                    Long.parseLong(properties.getProperty("redis.queue.flushInterval", "5")),
+                    Long.parseLong(properties.getProperty("redis.queue.statisticsInterval", "60")) * 1000);
+        } else {
+            positionPublisher = new PositionPublisher(redisShards, companyChannelCache, encoder);
+        }
+
+        String companyRate = properties.getProperty("redis.companyRate");
+        if (companyRate != null) {
+            positionPublisher.setRateLimiter(new CompanyRateLimiter(Double.parseDouble(companyRate)));
+        }
+        positionPublisher.start();
+    }
+
+    private void initPositionFilter(Properties properties) {
+        if (Boolean.parseBoolean(properties.getProperty("filter.enable"))) {
+            positionFilter = new PositionFilter(
+                    Double.parseDouble(properties.getProperty("filter.distance", "20")),
+                    Double.parseDouble(properties.getProperty("filter.course", "30")),
+                    Long.parseLong(properties.getProperty("filter.heartbeat", "300")) * 1000);
+            filterStorage = Boolean.parseBoolean(properties.getProperty("filter.database"));
+        }
+    }
+
+    private void initCaptureFile(Properties properties) throws IOException {
+        if (Boolean.parseBoolean(properties.getProperty("capture.enable"))) {
+            captureFile = new CaptureFile(
+                    new File(properties.getProperty("capture.directory", "capture")),
+                    Integer.parseInt(properties.getProperty("capture.fileSize", "64")) * 1024 * 1024,
+                    Integer.parseInt(properties.getProperty("capture.files", "16")));
+        }
+    }
+
+    private void initUnknownDeviceCache(Properties properties) {
+        unknownDeviceCache = new UnknownDeviceCache(
+                Integer.valueOf(properties.getProperty("unknownDevice.cacheSize", "10000")),
+                Long.valueOf(properties.getProperty("unknownDevice.logInterval", "60")) * 1000,
+                Integer.valueOf(properties.getProperty("unknownDevice.closeLimit", "0")));
+    }
+
     private void initGeocoder(Properties properties) throws IOException {
         if (Boolean.parseBoolean(properties.getProperty("geocoder.enable"))) {
             String type = properties.getProperty("geocoder.type");
@@ -15,7 +15,7 @@
  */
 package org.traccar;
 
-import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +27,7 @@ import org.traccar.model.Company;
 import org.traccar.model.DataManager;
 import org.traccar.model.Position;
 import org.traccar.model.RealTimePosition;
-import redis.clients.jedis.Jedis;
+import org.traccar.redis.PositionPublisher;
 
 /**
  * Tracker message handler
@@ -39,12 +39,19 @@ public class TrackerEventHandler extends IdleStateAwareChannelHandler {
      * Data manager
      */
     private DataManager dataManager;
-    private Jedis jedis;
+    private PositionPublisher positionPublisher;
+    private PositionFilter positionFilter;
+    private boolean filterStorage;
     private Company company;
 
-    TrackerEventHandler(DataManager newDataManager) {
+    TrackerEventHandler(
+            DataManager newDataManager, PositionPublisher newPositionPublisher,
+            PositionFilter newPositionFilter, boolean newFilterStorage) {
         super();
         dataManager = newDataManager;
+        positionPublisher = newPositionPublisher;
+        positionFilter = newPositionFilter;
+        filterStorage = newFilterStorage;
     }
 
     
@@ -54,58 +61,83 @@ public class TrackerEventHandler extends IdleStateAwareChannelHandler {
         if (position == null) {
             Log.info("processSinglePosition null message");
         } else {
-            
-            StringBuilder s = new StringBuilder();
-            s.append("device: ").append(position.getDeviceId()).append(", ");
-            s.append("time: ").append(position.getTime()).append(", ");
-            s.append("lat: ").append(position.getLatitude()).append(", ");
-            s.append("lon: ").append(position.getLongitude());
-            Log.info(s.toString());
+            Log.info("device: {}, time: {}, lat: {}, lon: {}",
+                    position.getDeviceId(), position.getTime(), position.getLatitude(), position.getLongitude());
         }
         
         
 
         // Write position to database
         try {
-            if(jedis == null)
-            {
-                jedis = new Jedis("localhost");
+            if (position != null && positionFilter != null && !positionFilter.accept(position)) {
+                if (filterStorage) {
+                    return;
+                }
+            } else {
+                publishPosition(position);
             }
-           
-            char quot = '"';
-            Timestamp ts = new Timestamp(position.getTime().getTime());
-             String company_name = dataManager.getCompanyNameByDevice(position.getDeviceId());
-            company_name = company_name.replace(" ", "-").toLowerCase();     
-             StringBuilder s = new StringBuilder();
-            s.append("{").append(quot).append("device").append(quot).append(":").append(quot).append(position.getDeviceId()).append(quot).append(", ");
-            s.append(quot).append("time").append(quot).append(":").append(quot).append(ts.getTime()).append(quot).append(", ");
-            s.append(quot).append("lat").append(quot).append(":").append(quot).append(position.getLatitude()).append(quot).append(", ");
-            s.append(quot).append("lon").append(quot).append(":").append(quot).append(position.getLongitude()).append(quot).append(", ");
-            s.append(quot).append("company").append(quot).append(":").append(quot).append(company_name).append(quot).append("}");
-            Log.info(s.toString());
-            jedis.publish("tracking_"+company_name, s.toString());
-            
+
             Long id = dataManager.addPosition(position);
             if (id != null) {
-                dataManager.updateLatestPosition(position.getDeviceId(), id);
-                
-            
-            
-                
+                dataManager.updateLatestPosition(position, id);
+            }
+        } catch (Exception error) {
+            Log.warning(error);
+        }
+    }
+
+    /**
+     * Store archive or multi-record message in one database round trip
+     */
+    private void processPositions(List<Position> positions) {
+        try {
+            List<Position> accepted = positions;
+            if (positionFilter != null) {
+                accepted = new ArrayList<Position>(positions.size());
+                for (Position position : positions) {
+                    if (positionFilter.accept(position)) {
+                        accepted.add(position);
+                    }
+                }
+            }
+            for (Position position : accepted) {
+                publishPosition(position);
+            }
+
+            if (filterStorage) {
+                positions = accepted;
+                if (positions.isEmpty()) {
+                    return;
+                }
+            }
+
+            List<Long> ids = dataManager.addPositions(positions);
+            if (ids != null) {
+                for (int i = 0; i < positions.size(); i++) {
+                    dataManager.updateLatestPosition(positions.get(i), ids.get(i));
+                }
             }
         } catch (Exception error) {
             Log.warning(error);
         }
     }
 
+    private void publishPosition(Position position) {
+        if (positionPublisher != null) {
+            positionPublisher.publish(position);
+        }
+    }
+
     @Override
     public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
         if (e.getMessage() instanceof Position) {
             processSinglePosition((Position) e.getMessage());
         } else if (e.getMessage() instanceof List) {
             List<Position> positions = (List<Position>) e.getMessage();
-            for (Position position : positions) {
-                processSinglePosition(position);
+            if (positions.size() == 1) {
+                processSinglePosition(positions.get(0));
+            } else if (!positions.isEmpty()) {
+                processPositions(positions);
             }
         }
     }
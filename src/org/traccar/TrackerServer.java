@@ -36,6 +36,7 @@ public abstract class TrackerServer {
     private final ServerManager serverManager;
     private final Bootstrap bootstrap;
     private final String protocol;
+    private final BasePipelineFactory pipelineFactory;
 
     public String getProtocol() {
         return protocol;
@@ -48,25 +49,34 @@ public abstract class TrackerServer {
 
         // Set appropriate channel factory
         if (bootstrap instanceof ServerBootstrap) {
-            bootstrap.setFactory(GlobalChannelFactory.getFactory());
+            bootstrap.setFactory(GlobalChannelFactory.getFactory(protocol));
         } else if (bootstrap instanceof ConnectionlessBootstrap) {
-            bootstrap.setFactory(GlobalChannelFactory.getDatagramFactory());
+            bootstrap.setFactory(GlobalChannelFactory.getDatagramFactory(protocol));
         }
 
         address = serverManager.getProperties().getProperty(protocol + ".address");
         String portProperty = serverManager.getProperties().getProperty(protocol + ".port");
         port = (portProperty != null) ? Integer.valueOf(portProperty) : 5000;
 
-        bootstrap.setPipelineFactory(new BasePipelineFactory(serverManager, this, protocol) {
+        pipelineFactory = new BasePipelineFactory(serverManager, this, protocol) {
             @Override
             protected void addSpecificHandlers(ChannelPipeline pipeline) {
                 TrackerServer.this.addSpecificHandlers(pipeline);
             }
-        });
+        };
+        bootstrap.setPipelineFactory(pipelineFactory);
     }
 
     protected abstract void addSpecificHandlers(ChannelPipeline pipeline);
 
+    public Bootstrap getBootstrap() {
+        return bootstrap;
+    }
+
+    public ChannelPipelineFactory getPipelineFactory() {
+        return bootstrap.getPipelineFactory();
+    }
+
     /**
      * Server port
      */
@@ -143,6 +153,7 @@ public abstract class TrackerServer {
     public void stop() {
         ChannelGroupFuture future = getChannelGroup().close();
         future.awaitUninterruptibly();
+        pipelineFactory.release();
     }
 
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of unknown device identifiers
+ *
+ * Only consulted after device lookup fails, so frames of registered
+ * devices never take the lock. Warnings are throttled per identifier to
+ * one per log interval, least recently reported identifiers are evicted.
+ */
+public class UnknownDeviceCache {
+
+    private final long logInterval;
+    private final int closeLimit;
+
+    private final Map<String, UnknownEntry> cache;
+
+    private static class UnknownEntry {
+
+        private long logTime;
+        private int suppressed;
+
+    }
+
+    /**
+     * @param maxSize maximum number of cached identifiers
+     * @param logInterval minimum time between warnings for one identifier in milliseconds
+     * @param closeLimit unknown frames after which connection is closed (0 to disable)
+     */
+    public UnknownDeviceCache(final int maxSize, long logInterval, int closeLimit) {
+        this.logInterval = logInterval;
+        this.closeLimit = closeLimit;
+        cache = new LinkedHashMap<String, UnknownEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UnknownEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public int getCloseLimit() {
+        return closeLimit;
+    }
+
+    /**
+     * Count warning for identifier
+     *
+     * @return number of warnings suppressed since last logged one or -1 if this one should be suppressed too
+     */
+    public synchronized int report(String uniqueId) {
+        long now = System.currentTimeMillis();
+        UnknownEntry entry = cache.get(uniqueId);
+        if (entry == null) {
+            entry = new UnknownEntry();
+            cache.put(uniqueId, entry);
+        } else if (now - entry.logTime < logInterval) {
+            entry.suppressed++;
+            return -1;
+        }
+        int suppressed = entry.suppressed;
+        entry.logTime = now;
+        entry.suppressed = 0;
+        return suppressed;
+    }
+
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+}
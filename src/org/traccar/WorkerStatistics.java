@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+
+/**
+ * I/O worker statistics
+ *
+ * Netty does not expose selector loop internals, so events are counted by
+ * the first pipeline handler, which runs on the worker thread that owns
+ * the channel. Counters are written only by their worker thread.
+ */
+@ChannelHandler.Sharable
+public class WorkerStatistics implements ChannelUpstreamHandler {
+
+    /**
+     * Counters of one worker thread
+     */
+    public static class Counters {
+
+        private volatile long channels;
+        private volatile long messages;
+        private volatile long bytes;
+
+        /**
+         * Currently connected channels
+         */
+        public long getChannels() {
+            return channels;
+        }
+
+        public long getMessages() {
+            return messages;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+    }
+
+    private final ConcurrentMap<String, Counters> workers = new ConcurrentHashMap<String, Counters>();
+
+    private final ThreadLocal<Counters> counters = new ThreadLocal<Counters>() {
+        @Override
+        protected Counters initialValue() {
+            Counters value = new Counters();
+            workers.put(Thread.currentThread().getName(), value);
+            return value;
+        }
+    };
+
+    @Override
+    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        Counters current = counters.get();
+        if (e instanceof MessageEvent) {
+            current.messages++;
+            Object message = ((MessageEvent) e).getMessage();
+            if (message instanceof ChannelBuffer) {
+                current.bytes += ((ChannelBuffer) message).readableBytes();
+            }
+        } else if (e instanceof ChannelStateEvent && ((ChannelStateEvent) e).getState() == ChannelState.CONNECTED) {
+            // Accepted channels are opened by boss thread, connection events come from worker
+            current.channels += (((ChannelStateEvent) e).getValue() != null) ? 1 : -1;
+        }
+        ctx.sendUpstream(e);
+    }
+
+    /**
+     * Counters by worker thread name
+     */
+    public Map<String, Counters> getWorkers() {
+        return new TreeMap<String, Counters>(workers);
+    }
+
+    /**
+     * One line summary of all workers
+     */
+    public String format() {
+        StringBuilder s = new StringBuilder("Workers");
+        for (Map.Entry<String, Counters> worker : getWorkers().entrySet()) {
+            Counters value = worker.getValue();
+            s.append(" ").append(worker.getKey()).append(": ");
+            s.append(value.channels).append(" channels ");
+            s.append(value.messages).append(" messages ");
+            s.append(value.bytes).append(" bytes;");
+        }
+        return s.toString();
+    }
+
+}
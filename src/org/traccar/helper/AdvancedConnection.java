@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 Anton Tananaev (anton.tananaev@gmail.com)
+ * Copyright 2012 - 2014 Anton Tananaev (anton.tananaev@gmail.com)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,45 +17,330 @@ package org.traccar.helper;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Bounded pool of database connections
+ *
+ * Minimum number of connections is opened on creation. Connections lost
+ * later are reopened by background task, so releasing thread never waits
+ * for database. Failures to open are only logged.
+ */
 public class AdvancedConnection {
 
-    /**
-     * Database connection
-     */
-    private Connection connection;
-    
     /**
      * Connection attributes
      */
     private String url;
     private String user;
     private String password;
-    
+
+    /**
+     * Pool configuration
+     */
+    private final int minSize;
+    private final int statementCacheSize;
+    private final long timeout;
+    private final long validationInterval;
+    private final long idleTimeout;
+
+    /**
+     * Idle connections, most recently used first
+     */
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<PooledConnection>();
+
+    /**
+     * Limits number of open connections
+     */
+    private final Semaphore permits;
+
+    /**
+     * Open connections, idle, borrowed and being opened
+     */
+    private final AtomicInteger openCount = new AtomicInteger();
+
+    /**
+     * Reopens connections below minimum size, thread exits when idle
+     */
+    private final ExecutorService refillExecutor = new ThreadPoolExecutor(
+            0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("pool-refill"));
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+
     public AdvancedConnection(String url, String user, String password) {
+        this(url, user, password, 1, 1, 16, 0, 0, 0);
+    }
+
+    /**
+     * @param minSize idle connections kept open
+     * @param maxSize maximum number of open connections
+     * @param statementCacheSize prepared statements cached per connection
+     * @param timeout borrow timeout in milliseconds (0 to wait forever)
+     * @param validationInterval idle time in milliseconds after which connection is validated on borrow
+     * @param idleTimeout idle time in milliseconds after which connections above minimum size are closed
+     */
+    public AdvancedConnection(
+            String url, String user, String password, int minSize, int maxSize,
+            int statementCacheSize, long timeout, long validationInterval, long idleTimeout) {
         this.url = url;
         this.user = user;
         this.password = password;
+        this.minSize = minSize;
+        this.statementCacheSize = statementCacheSize;
+        this.timeout = timeout;
+        this.validationInterval = validationInterval;
+        this.idleTimeout = idleTimeout;
+        permits = new Semaphore(maxSize, true);
+        fill();
     }
-    
-    public final void reset() throws SQLException {
-        if (connection != null) {
-            connection.close();
-            connection = null;
-        }
+
+    private Connection connect() throws SQLException {
         if (user != null && password != null) {
-            connection = DriverManager.getConnection(url, user, password);
+            return DriverManager.getConnection(url, user, password);
         } else {
-            connection = DriverManager.getConnection(url);
+            return DriverManager.getConnection(url);
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        openCount.incrementAndGet();
+        return openReserved();
+    }
+
+    /**
+     * Open connection already counted in open count, count is restored on failure
+     */
+    private PooledConnection openReserved() throws SQLException {
+        boolean success = false;
+        try {
+            PooledConnection connection = new PooledConnection(connect(), statementCacheSize);
+            success = true;
+            return connection;
+        } finally {
+            if (!success) {
+                openCount.decrementAndGet();
+            }
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        openCount.decrementAndGet();
+        connection.close();
+    }
+
+    /**
+     * Open idle connections up to minimum size, slots are reserved before opening
+     */
+    private void fill() {
+        while (true) {
+            int count = openCount.get();
+            if (count >= minSize) {
+                return;
+            }
+            if (!openCount.compareAndSet(count, count + 1)) {
+                continue;
+            }
+            if (!permits.tryAcquire()) {
+                openCount.decrementAndGet();
+                return;
+            }
+            try {
+                idle.offerLast(openReserved());
+            } catch (SQLException error) {
+                Log.warning("Failed to open pool connection", error);
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Schedule background fill, at most one is pending at a time
+     */
+    private void scheduleFill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                refillExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        refillScheduled.set(false);
+                        fill();
+                    }
+                });
+            } catch (RejectedExecutionException error) {
+                refillScheduled.set(false);
+            }
         }
     }
-    
-    public Connection getInstance() throws SQLException {
-        if (connection == null) {
-            reset();
+
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Take connection from the pool, new connection is opened if there is no idle one
+     */
+    public PooledConnection borrow() throws SQLException {
+        try {
+            if (timeout > 0) {
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Connection pool timeout");
+                }
+            } else {
+                permits.acquire();
+            }
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Connection pool wait interrupted");
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (validate(connection)) {
+                    return connection;
+                }
+                discard(connection);
+            }
+            return open();
+        } catch (SQLException error) {
+            permits.release();
+            throw error;
+        } catch (RuntimeException error) {
+            permits.release();
+            throw error;
+        }
+    }
+
+    private boolean validate(PooledConnection connection) {
+        if (System.currentTimeMillis() - connection.releaseTime < validationInterval) {
+            return true;
         }
-        return connection;
+        try {
+            return connection.getConnection().isValid((int) Math.max(1, timeout / 1000));
+        } catch (SQLException error) {
+            return false;
+        }
+    }
+
+    /**
+     * Return healthy connection to the pool
+     */
+    public void release(PooledConnection connection) {
+        connection.releaseTime = System.currentTimeMillis();
+        idle.offerFirst(connection);
+        permits.release();
+
+        // Shrink pool down to minimum size
+        if (idleTimeout > 0 && idle.size() > minSize) {
+            PooledConnection oldest = idle.peekLast();
+            if (oldest != null && connection.releaseTime - oldest.releaseTime > idleTimeout
+                    && idle.removeLastOccurrence(oldest)) {
+                discard(oldest);
+            }
+        }
+
+        // Replace connections closed as broken
+        if (openCount.get() < minSize) {
+            scheduleFill();
+        }
+    }
+
+    /**
+     * Close broken connection instead of returning it to the pool
+     */
+    public void invalidate(PooledConnection connection) {
+        discard(connection);
+        permits.release();
+    }
+
+    /**
+     * Close all idle connections
+     */
+    public void close() {
+        refillExecutor.shutdown();
+        try {
+            refillExecutor.awaitTermination(timeout > 0 ? timeout : 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Connection with prepared statement cache
+     */
+    public static class PooledConnection {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private long releaseTime;
+
+        private PooledConnection(Connection connection, final int cacheSize) {
+            this.connection = connection;
+            statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > cacheSize) {
+                        try {
+                            eldest.getValue().close();
+                        } catch (SQLException error) {
+                            Log.warning(error);
+                        }
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            releaseTime = System.currentTimeMillis();
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Return cached statement or prepare new one
+         */
+        public PreparedStatement prepareStatement(String query, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys + query;
+            PreparedStatement statement = statements.get(key);
+            if (statement == null) {
+                statement = connection.prepareStatement(query, autoGeneratedKeys);
+                statements.put(key, statement);
+            }
+            return statement;
+        }
+
+        private void close() {
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException error) {
+                Log.warning(error);
+            }
+        }
+
     }
 
 }
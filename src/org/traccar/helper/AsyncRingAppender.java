@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.log4j.Appender;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.Priority;
+import org.apache.log4j.helpers.OnlyOnceErrorHandler;
+import org.apache.log4j.spi.ErrorHandler;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+
+/**
+ * Asynchronous appender backed by bounded lock-free ring
+ *
+ * Logging threads only claim a slot and store the event, formatting and
+ * file output are done by single background thread. When ring is full
+ * event is dropped or logging thread waits for free slot, depending on
+ * overflow policy. Number of dropped events is reported by the appender.
+ *
+ * Appender interface is implemented directly, because doAppend of
+ * AppenderSkeleton is synchronized and waiting thread would hold the lock.
+ * Threshold and filters are applied here without locking.
+ */
+public class AsyncRingAppender implements Appender, Runnable {
+
+    private static final long IDLE_PARK = 1000000;
+
+    private final Appender delegate;
+    private final boolean block;
+
+    private final int mask;
+    private final AtomicReferenceArray<LoggingEvent> events;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Read position, used by consumer thread only
+     */
+    private long head;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean closed;
+    private final Thread thread;
+
+    private String name;
+    private Layout layout;
+    private ErrorHandler errorHandler = new OnlyOnceErrorHandler();
+    private volatile Priority threshold;
+    private volatile Filter headFilter;
+    private Filter tailFilter;
+
+    /**
+     * @param delegate appender doing actual output
+     * @param bufferSize ring capacity, rounded up to power of two
+     * @param block wait for free slot instead of dropping events
+     */
+    public AsyncRingAppender(Appender delegate, int bufferSize, boolean block) {
+        this.delegate = delegate;
+        this.block = block;
+
+        int capacity = Integer.highestOneBit(Math.max(bufferSize, 2) - 1) << 1;
+        mask = capacity - 1;
+        events = new AtomicReferenceArray<LoggingEvent>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+
+        thread = new Thread(this, "logger");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean offer(LoggingEvent event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events.set(index, event);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private LoggingEvent poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        LoggingEvent event = events.get(index);
+        events.set(index, null);
+        sequences.lazySet(index, head + mask + 1);
+        head += 1;
+        return event;
+    }
+
+    @Override
+    public void doAppend(LoggingEvent event) {
+        if (closed || threshold != null && !event.getLevel().isGreaterOrEqual(threshold)) {
+            return;
+        }
+        for (Filter filter = headFilter; filter != null; filter = filter.getNext()) {
+            int decision = filter.decide(event);
+            if (decision == Filter.DENY) {
+                return;
+            } else if (decision == Filter.ACCEPT) {
+                break;
+            }
+        }
+
+        // Capture caller state before handing event over
+        event.getThreadName();
+
+        while (!offer(event)) {
+            if (!block || !running) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK);
+        }
+    }
+
+    @Override
+    public void run() {
+        long reported = 0;
+        while (true) {
+            LoggingEvent event = poll();
+            if (event != null) {
+                delegate.doAppend(event);
+                continue;
+            }
+            long dropped = droppedCount.get();
+            if (dropped != reported) {
+                delegate.doAppend(new LoggingEvent(
+                        AsyncRingAppender.class.getName(), Logger.getLogger(AsyncRingAppender.class), Level.WARN,
+                        "Log buffer full, dropped " + (dropped - reported) + " messages", null));
+                reported = dropped;
+            }
+            if (!running) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK);
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public Priority getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Events below threshold are ignored
+     */
+    public void setThreshold(Priority threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void addFilter(Filter filter) {
+        if (headFilter == null) {
+            headFilter = filter;
+        } else {
+            tailFilter.setNext(filter);
+        }
+        tailFilter = filter;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return headFilter;
+    }
+
+    @Override
+    public synchronized void clearFilters() {
+        headFilter = null;
+        tailFilter = null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    @Override
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        if (errorHandler != null) {
+            this.errorHandler = errorHandler;
+        }
+    }
+
+    /**
+     * Layout is not used, events are formatted by delegate appender
+     */
+    @Override
+    public Layout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public void setLayout(Layout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Write remaining events and close delegate appender
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    @Override
+    public boolean requiresLayout() {
+        return false;
+    }
+
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * Rotating memory-mapped capture of raw device traffic
+ *
+ * File starts with magic number and version, records follow as length
+ * prefixed entries: time (8 bytes), channel id (4), local port (2),
+ * protocol (1 byte length and ASCII), remote address (1 byte length and
+ * address bytes), remote port (2) and data.
+ *
+ * Writers reserve record space by moving write offset with compare and
+ * set, so records of different channels are copied in parallel and lock
+ * is only taken to start new file. Files are created zero filled and
+ * record length is written last, so reader stops at zero length of a
+ * record that is not complete yet. When record does not fit, new file is
+ * started and the oldest files above retention count are deleted.
+ */
+public class CaptureFile {
+
+    private static final int MAGIC = 0x54524346;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final String PREFIX = "capture-";
+    private static final String SUFFIX = ".bin";
+
+    private static final Charset CHARSET = Charset.forName("US-ASCII");
+
+    private final File directory;
+    private final int fileSize;
+    private final int fileCount;
+
+    private final LinkedList<File> files = new LinkedList<File>();
+
+    private volatile Segment segment;
+    private volatile boolean closed;
+    private boolean failed;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Mapped capture file being written
+     */
+    private static class Segment {
+
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger writeOffset = new AtomicInteger(HEADER_SIZE);
+
+        public Segment(RandomAccessFile file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Reserve space for record with length prefix, returns -1 if file is full
+         */
+        public int reserve(int size) {
+            while (true) {
+                int offset = writeOffset.get();
+                if (offset + size > buffer.capacity()) {
+                    return -1;
+                }
+                if (writeOffset.compareAndSet(offset, offset + size)) {
+                    return offset;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * @param fileSize size of each capture file in bytes
+     * @param fileCount number of files kept, including current one
+     */
+    public CaptureFile(File directory, int fileSize, int fileCount) throws IOException {
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.fileCount = Math.max(fileCount, 1);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create capture directory " + directory);
+        }
+        files.addAll(list(directory));
+        rotate();
+    }
+
+    /**
+     * Capture files in directory, oldest first
+     */
+    public static List<File> list(File directory) {
+        File[] result = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().startsWith(PREFIX) && file.getName().endsWith(SUFFIX);
+            }
+        });
+        if (result == null) {
+            return new LinkedList<File>();
+        }
+        Arrays.sort(result);
+        return new LinkedList<File>(Arrays.asList(result));
+    }
+
+    /**
+     * Protocol name in record encoding, to be computed once by caller
+     */
+    public static byte[] encodeProtocol(String protocol) {
+        byte[] result = protocol.getBytes(CHARSET);
+        return (result.length > 255) ? Arrays.copyOf(result, 255) : result;
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+
+        long time = System.currentTimeMillis();
+        File path;
+        do {
+            path = new File(directory, String.format("%s%013d%s", PREFIX, time++, SUFFIX));
+        } while (path.exists());
+
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        MappedByteBuffer buffer;
+        try {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        } catch (IOException error) {
+            file.close();
+            throw error;
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        segment = new Segment(file, buffer);
+
+        files.addLast(path);
+        while (files.size() > fileCount) {
+            File oldest = files.removeFirst();
+            if (!oldest.delete()) {
+                Log.warning("Failed to delete capture file " + oldest);
+            }
+        }
+    }
+
+    /**
+     * Append data between reader and writer index of the buffer, buffer indexes are not changed
+     */
+    public void write(
+            long time, int channelId, int localPort, byte[] protocol, SocketAddress remoteAddress, ChannelBuffer data) {
+
+        byte[] address = null;
+        int remotePort = 0;
+        if (remoteAddress instanceof InetSocketAddress) {
+            InetSocketAddress socketAddress = (InetSocketAddress) remoteAddress;
+            InetAddress inetAddress = socketAddress.getAddress();
+            if (inetAddress != null) {
+                address = inetAddress.getAddress();
+            }
+            remotePort = socketAddress.getPort();
+        }
+        int addressLength = (address != null) ? address.length : 0;
+        int dataLength = data.readableBytes();
+        int length = 8 + 4 + 2 + 1 + protocol.length + 1 + addressLength + 2 + dataLength;
+
+        if (closed || HEADER_SIZE + 4 + length > fileSize) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        Segment current = segment;
+        int start = (current != null) ? current.reserve(4 + length) : -1;
+        while (start < 0) {
+            current = nextSegment(current);
+            if (current == null) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            start = current.reserve(4 + length);
+        }
+
+        MappedByteBuffer buffer = current.buffer;
+        int offset = start + 4;
+        buffer.putLong(offset, time);
+        buffer.putInt(offset + 8, channelId);
+        buffer.putShort(offset + 12, (short) localPort);
+        buffer.put(offset + 14, (byte) protocol.length);
+        offset += 15;
+        for (byte b : protocol) {
+            buffer.put(offset++, b);
+        }
+        buffer.put(offset++, (byte) addressLength);
+        for (int i = 0; i < addressLength; i++) {
+            buffer.put(offset++, address[i]);
+        }
+        buffer.putShort(offset, (short) remotePort);
+        offset += 2;
+
+        ByteBuffer target = buffer.duplicate();
+        target.limit(offset + dataLength);
+        target.position(offset);
+        data.getBytes(data.readerIndex(), target);
+
+        buffer.putInt(start, length);
+        recordCount.incrementAndGet();
+    }
+
+    /**
+     * Start new file unless other writer already did, returns null on failure
+     */
+    private synchronized Segment nextSegment(Segment full) {
+        if (closed) {
+            return null;
+        }
+        if (segment != null && segment != full) {
+            return segment;
+        }
+        try {
+            rotate();
+            failed = false;
+        } catch (IOException error) {
+            segment = null;
+            if (!failed) {
+                failed = true;
+                Log.warning("Capture file rotation failed", error);
+            }
+        }
+        return segment;
+    }
+
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Flush current file, records written afterwards are dropped
+     */
+    public synchronized void close() {
+        closed = true;
+        closeFile();
+    }
+
+    /**
+     * Mapping stays valid after file is closed, so late writers are safe
+     */
+    private void closeFile() {
+        Segment current = segment;
+        if (current != null) {
+            segment = null;
+            current.buffer.force();
+            try {
+                current.file.close();
+            } catch (IOException error) {
+                Log.warning(error);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of one capture file
+     */
+    public static class Reader {
+
+        private final ByteBuffer buffer;
+        private int offset = HEADER_SIZE;
+
+        private long time;
+        private int channelId;
+        private int localPort;
+        private String protocol;
+        private InetSocketAddress remoteAddress;
+        private ChannelBuffer data;
+
+        public Reader(File path) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(path, "r");
+            try {
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                file.close();
+            }
+            if (buffer.capacity() < HEADER_SIZE + 4 || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a capture file " + path);
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported capture version " + buffer.getInt(4));
+            }
+        }
+
+        /**
+         * Move to next record, returns false at the end of captured data
+         */
+        public boolean next() throws IOException {
+            if (offset + 4 > buffer.capacity()) {
+                return false;
+            }
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                return false;
+            }
+            if (length < 17 || offset + 4 + length > buffer.capacity()) {
+                throw new IOException("Corrupted capture record at " + offset);
+            }
+            int position = offset + 4;
+            int end = position + length;
+
+            time = buffer.getLong(position);
+            channelId = buffer.getInt(position + 8);
+            localPort = buffer.getShort(position + 12) & 0xffff;
+            int protocolLength = buffer.get(position + 14) & 0xff;
+            position += 15;
+            byte[] protocolBytes = new byte[protocolLength];
+            for (int i = 0; i < protocolLength; i++) {
+                protocolBytes[i] = buffer.get(position++);
+            }
+            protocol = new String(protocolBytes, CHARSET);
+
+            int addressLength = buffer.get(position++) & 0xff;
+            byte[] address = new byte[addressLength];
+            for (int i = 0; i < addressLength; i++) {
+                address[i] = buffer.get(position++);
+            }
+            int remotePort = buffer.getShort(position) & 0xffff;
+            position += 2;
+            remoteAddress = (addressLength > 0)
+                    ? new InetSocketAddress(InetAddress.getByAddress(address), remotePort) : null;
+
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(end);
+            slice.position(position);
+            data = ChannelBuffers.wrappedBuffer(slice.slice());
+
+            offset = end;
+            return true;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getChannelId() {
+            return channelId;
+        }
+
+        public int getLocalPort() {
+            return localPort;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        /**
+         * Remote address, null if unknown
+         */
+        public InetSocketAddress getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Captured bytes, backed by mapped file
+         */
+        public ChannelBuffer getData() {
+            return data;
+        }
+
+    }
+
+}
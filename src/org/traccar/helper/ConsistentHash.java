@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring with virtual nodes
+ *
+ * Each node is placed on the ring at several points derived from its name,
+ * key belongs to the first node point following key hash. Adding or removing
+ * node only moves keys between that node and its ring neighbours.
+ */
+public class ConsistentHash<T> {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final SortedMap<Long, T> ring = new TreeMap<Long, T>();
+
+    /**
+     * @param nodes nodes by stable name, for example host and port
+     * @param virtualNodes number of ring points per node
+     */
+    public ConsistentHash(Map<String, T> nodes, int virtualNodes) {
+        for (Map.Entry<String, T> node : nodes.entrySet()) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node.getKey() + "#" + i), node.getValue());
+            }
+        }
+    }
+
+    /**
+     * First 8 bytes of MD5 digest
+     */
+    public static long hash(String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);
+        }
+        byte[] data = digest.digest(key.getBytes(CHARSET));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (data[i] & 0xff);
+        }
+        return hash;
+    }
+
+    /**
+     * Node owning given key, null if ring is empty
+     */
+    public T get(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, T> tail = ring.tailMap(hash(key));
+        return ring.get(tail.isEmpty() ? ring.firstKey() : tail.firstKey());
+    }
+
+}
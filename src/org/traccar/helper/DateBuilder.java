@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.Date;
+
+/**
+ * UTC date and time from separate fields
+ *
+ * Replacement for cleared UTC Calendar in decoders. Epoch time is
+ * calculated directly with civil calendar arithmetic, without time zone
+ * lookup and field arrays. Fields are lenient as in Calendar, values out of
+ * range overflow into the next field. Unset fields default to 1970-01-01
+ * 00:00:00.000. Result matches Gregorian calendar, so dates before 1582 are
+ * different from default Calendar.
+ */
+public class DateBuilder {
+
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+    private int year = 1970;
+    private int month = 1;
+    private int day = 1;
+    private int hour;
+    private int minute;
+    private int second;
+    private int millis;
+    private long offset;
+
+    /**
+     * Days since 1970-01-01, month from 1 to 12
+     */
+    private static long days(long year, int month, long day) {
+        if (month <= 2) {
+            year -= 1;
+        }
+        long era = ((year >= 0) ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Milliseconds since epoch for UTC time, month from 1 to 12
+     */
+    public static long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        int monthIndex = month - 1;
+        int yearShift = (monthIndex >= 0) ? monthIndex / 12 : (monthIndex - 11) / 12;
+        return days((long) year + yearShift, monthIndex - yearShift * 12 + 1, day) * MILLIS_PER_DAY
+                + (((long) hour * 60 + minute) * 60 + second) * 1000 + millis;
+    }
+
+    public DateBuilder setYear(int year) {
+        this.year = year;
+        return this;
+    }
+
+    /**
+     * Month from 1 to 12
+     */
+    public DateBuilder setMonth(int month) {
+        this.month = month;
+        return this;
+    }
+
+    public DateBuilder setDay(int day) {
+        this.day = day;
+        return this;
+    }
+
+    /**
+     * Current UTC date, time fields are not changed
+     */
+    public DateBuilder setCurrentDate() {
+        year = 1970;
+        month = 1;
+        day = (int) (System.currentTimeMillis() / MILLIS_PER_DAY) + 1;
+        return this;
+    }
+
+    public DateBuilder setDate(int year, int month, int day) {
+        this.year = year;
+        this.month = month;
+        this.day = day;
+        return this;
+    }
+
+    public DateBuilder setHour(int hour) {
+        this.hour = hour;
+        return this;
+    }
+
+    public DateBuilder setMinute(int minute) {
+        this.minute = minute;
+        return this;
+    }
+
+    public DateBuilder setSecond(int second) {
+        this.second = second;
+        return this;
+    }
+
+    public DateBuilder setMillis(int millis) {
+        this.millis = millis;
+        return this;
+    }
+
+    public DateBuilder setTime(int hour, int minute, int second) {
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+        return this;
+    }
+
+    /**
+     * Shift result by given milliseconds, independent of field values
+     */
+    public DateBuilder addMillis(long millis) {
+        offset += millis;
+        return this;
+    }
+
+    public long getMillis() {
+        return toMillis(year, month, day, hour, minute, second, millis) + offset;
+    }
+
+    public Date getDate() {
+        return new Date(getMillis());
+    }
+
+}
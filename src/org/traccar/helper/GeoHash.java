@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interleaved geohash functions
+ *
+ * Hash has 26 bits per coordinate (about 0.6 m precision) and fits into
+ * sorted set score without loss. Cell at lower precision covers continuous
+ * range of full precision hashes, so area query becomes a few score ranges.
+ */
+public class GeoHash {
+
+    public static final int STEP = 26;
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    private static long index(double value, double min, double max, int step) {
+        long cells = 1L << step;
+        long index = (long) Math.floor((value - min) / (max - min) * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    private static long interleave(long latIndex, long lonIndex, int step) {
+        long hash = 0;
+        for (int i = step - 1; i >= 0; i--) {
+            hash = (hash << 2) | (((lonIndex >> i) & 1) << 1) | ((latIndex >> i) & 1);
+        }
+        return hash;
+    }
+
+    public static long encode(double latitude, double longitude) {
+        return interleave(index(latitude, -90, 90, STEP), index(longitude, -180, 180, STEP), STEP);
+    }
+
+    /**
+     * Decode hash into center of its cell
+     *
+     * @return latitude and longitude
+     */
+    public static double[] decode(long hash) {
+        long latIndex = 0;
+        long lonIndex = 0;
+        for (int i = STEP - 1; i >= 0; i--) {
+            lonIndex = (lonIndex << 1) | ((hash >> (2 * i + 1)) & 1);
+            latIndex = (latIndex << 1) | ((hash >> (2 * i)) & 1);
+        }
+        double cells = 1L << STEP;
+        return new double[] {
+            (latIndex + 0.5) / cells * 180 - 90,
+            (lonIndex + 0.5) / cells * 360 - 180
+        };
+    }
+
+    /**
+     * Great circle distance in meters
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /**
+     * Hash ranges covering bounding box, each range is start inclusive and end exclusive
+     *
+     * Box crossing 180th meridian has minimum longitude greater than maximum.
+     */
+    public static List<long[]> cover(double minLat, double minLon, double maxLat, double maxLon) {
+        List<long[]> ranges = new ArrayList<long[]>();
+        if (minLon > maxLon) {
+            coverBox(minLat, minLon, maxLat, 180, ranges);
+            coverBox(minLat, -180, maxLat, maxLon, ranges);
+        } else {
+            coverBox(minLat, minLon, maxLat, maxLon, ranges);
+        }
+
+        // Sort and merge adjacent ranges
+        List<long[]> result = new ArrayList<long[]>();
+        while (!ranges.isEmpty()) {
+            int first = 0;
+            for (int i = 1; i < ranges.size(); i++) {
+                if (ranges.get(i)[0] < ranges.get(first)[0]) {
+                    first = i;
+                }
+            }
+            long[] range = ranges.remove(first);
+            long[] last = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                result.add(range);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cover box with cells of the finest precision that is still not smaller than box
+     */
+    private static void coverBox(double minLat, double minLon, double maxLat, double maxLon, List<long[]> ranges) {
+        int step = STEP;
+        while (step > 0 && (180.0 / (1L << step) < maxLat - minLat || 360.0 / (1L << step) < maxLon - minLon)) {
+            step -= 1;
+        }
+        int shift = 2 * (STEP - step);
+
+        long latStart = index(minLat, -90, 90, step);
+        long latEnd = index(maxLat, -90, 90, step);
+        long lonStart = index(minLon, -180, 180, step);
+        long lonEnd = index(maxLon, -180, 180, step);
+        for (long latIndex = latStart; latIndex <= latEnd; latIndex++) {
+            for (long lonIndex = lonStart; lonIndex <= lonEnd; lonIndex++) {
+                long hash = interleave(latIndex, lonIndex, step);
+                ranges.add(new long[] {hash << shift, (hash + 1) << shift});
+            }
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Block id allocator backed by sequence table
+ *
+ * Reserve query advances stored counter by block size and select query
+ * returns new counter value. Both run in one transaction, so row lock
+ * makes reserved blocks unique even with several servers sharing database.
+ * Ids are then handed out from memory.
+ */
+public class IdAllocator {
+
+    private final AdvancedConnection connection;
+    private final String reserveQuery;
+    private final int[] sizeIndexes;
+    private final String selectQuery;
+    private final int blockSize;
+
+    private long nextId;
+    private long limit;
+
+    /**
+     * @param reserveQuery update query with :size parameter
+     * @param selectQuery query returning counter value after update
+     */
+    public IdAllocator(AdvancedConnection connection, String reserveQuery, String selectQuery, int blockSize) {
+        this.connection = connection;
+        this.selectQuery = selectQuery;
+        this.blockSize = blockSize;
+
+        Map<String, List<Integer>> indexMap = new HashMap<String, List<Integer>>();
+        this.reserveQuery = NamedParameterStatement.parse(reserveQuery, indexMap);
+        List<Integer> indexList = indexMap.get("size");
+        sizeIndexes = new int[(indexList != null) ? indexList.size() : 0];
+        for (int i = 0; i < sizeIndexes.length; i++) {
+            sizeIndexes[i] = indexList.get(i);
+        }
+    }
+
+    /**
+     * Return next free id, new block is reserved when current one is used up
+     */
+    public synchronized long next() throws SQLException {
+        if (nextId >= limit) {
+            reserve();
+        }
+        return nextId++;
+    }
+
+    private void reserve() throws SQLException {
+        AdvancedConnection.PooledConnection pooledConnection = connection.borrow();
+        Connection db = pooledConnection.getConnection();
+        long newLimit;
+        try {
+            db.setAutoCommit(false);
+            try {
+                PreparedStatement update = pooledConnection.prepareStatement(reserveQuery, Statement.NO_GENERATED_KEYS);
+                for (int index : sizeIndexes) {
+                    update.setInt(index, blockSize);
+                }
+                update.executeUpdate();
+
+                ResultSet result = pooledConnection.prepareStatement(selectQuery, Statement.NO_GENERATED_KEYS).executeQuery();
+                try {
+                    if (!result.next()) {
+                        throw new SQLException("Id sequence not found");
+                    }
+                    newLimit = result.getLong(1);
+                } finally {
+                    result.close();
+                }
+                db.commit();
+            } catch (SQLException error) {
+                db.rollback();
+                throw error;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        } catch (SQLException error) {
+            connection.invalidate(pooledConnection);
+            throw error;
+        }
+        connection.release(pooledConnection);
+
+        // Block is only used once reservation is committed
+        limit = newLimit;
+        nextId = newLimit - blockSize;
+    }
+
+}
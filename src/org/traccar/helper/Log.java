@@ -44,11 +44,25 @@ public class Log {
 
         Appender appender = new DailyRollingFileAppender(
                 layout, properties.getProperty("logger.file"), "'.'yyyyMMdd");
+        if (Boolean.valueOf(properties.getProperty("logger.async"))) {
+            appender = new AsyncRingAppender(
+                    appender,
+                    Integer.valueOf(properties.getProperty("logger.bufferSize", "8192")),
+                    "block".equalsIgnoreCase(properties.getProperty("logger.overflow")));
+        }
 
         LogManager.resetConfiguration();
         logger = Logger.getLogger(LOGGER_NAME);
         logger.addAppender(appender);
-        logger.setLevel(Level.ALL);
+        logger.setLevel(Level.toLevel(properties.getProperty("logger.level"), Level.ALL));
+
+        // Protocol specific levels
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".logger.level")) {
+                String protocol = key.substring(0, key.length() - ".logger.level".length());
+                getLogger(protocol).setLevel(Level.toLevel(properties.getProperty(key), Level.ALL));
+            }
+        }
 
         // Workaround for "Bug 745866 - (EDG-45) Possible netty logging config problem"
         InternalLoggerFactory.setDefaultFactory(new InternalLoggerFactory() {
@@ -66,6 +80,47 @@ public class Log {
         }
         return logger;
     }
+
+    /**
+     * Child logger, inherits level and appenders unless configured separately
+     */
+    public static Logger getLogger(String name) {
+        getLogger();
+        return Logger.getLogger(LOGGER_NAME + "." + name);
+    }
+
+    /**
+     * Flush and close appenders
+     */
+    public static void shutdown() {
+        LogManager.shutdown();
+    }
+
+    public static boolean isDebugEnabled() {
+        return getLogger().isDebugEnabled();
+    }
+
+    public static boolean isInfoEnabled() {
+        return getLogger().isInfoEnabled();
+    }
+
+    /**
+     * Replace "{}" placeholders with arguments in order
+     */
+    public static String format(String format, Object... arguments) {
+        StringBuilder s = new StringBuilder(format.length() + 16 * arguments.length);
+        int start = 0;
+        for (Object argument : arguments) {
+            int index = format.indexOf("{}", start);
+            if (index < 0) {
+                break;
+            }
+            s.append(format, start, index).append(argument);
+            start = index + 2;
+        }
+        s.append(format, start, format.length());
+        return s.toString();
+    }
     
     public static void logSystemInfo() {
         try {
@@ -131,10 +186,49 @@ public class Log {
         getLogger().info(msg);
     }
 
+    /**
+     * Parameterized messages are formatted only if level is enabled
+     */
+    public static void info(String format, Object argument) {
+        if (isInfoEnabled()) {
+            info(format(format, argument));
+        }
+    }
+
+    public static void info(String format, Object argument1, Object argument2) {
+        if (isInfoEnabled()) {
+            info(format(format, argument1, argument2));
+        }
+    }
+
+    public static void info(String format, Object... arguments) {
+        if (isInfoEnabled()) {
+            info(format(format, arguments));
+        }
+    }
+
     public static void debug(String msg) {
         getLogger().debug(msg);
     }
 
+    public static void debug(String format, Object argument) {
+        if (isDebugEnabled()) {
+            debug(format(format, argument));
+        }
+    }
+
+    public static void debug(String format, Object argument1, Object argument2) {
+        if (isDebugEnabled()) {
+            debug(format(format, argument1, argument2));
+        }
+    }
+
+    public static void debug(String format, Object... arguments) {
+        if (isDebugEnabled()) {
+            debug(format(format, arguments));
+        }
+    }
+
     /**
      * Netty logger implementation
      */
@@ -22,14 +22,14 @@ import java.util.Date;
 public class NamedParameterStatement {
 
     /**
-     * Native statement
+     * Parameter name to handle mapping
      */
-    private PreparedStatement statement;
+    private final Map<String, Integer> handleMap;
 
     /**
-     * Index mapping
+     * Statement indexes of each parameter, indexed by handle
      */
-    private final Map<String, List<Integer>> indexMap;
+    private final int[][] indexes;
 
     /**
      * Query string
@@ -37,20 +37,65 @@ public class NamedParameterStatement {
     private final String parsedQuery;
 
     /**
-     * Database connection
+     * Number of rows in expanded VALUES list and parameters per row
      */
-    private AdvancedConnection connection;
+    private final int rows;
+    private final int rowSize;
 
-    private int autoGeneratedKeys;
+    /**
+     * Database connection pool
+     */
+    private AdvancedConnection connection;
 
     /**
      * Initialize statement
      */
     public NamedParameterStatement(AdvancedConnection connection, String query) {
+        this(connection, query, 1);
+    }
 
-        indexMap = new HashMap<String, List<Integer>>();
-        parsedQuery = parse(query, indexMap);
+    /**
+     * Initialize statement with VALUES list of the query repeated for given number of rows
+     */
+    public NamedParameterStatement(AdvancedConnection connection, String query, int rows) {
+
+        Map<String, List<Integer>> indexMap = new LinkedHashMap<String, List<Integer>>();
+        String singleQuery = parse(query, indexMap);
+        if (rows > 1) {
+            parsedQuery = parse(expandValues(query, rows), new HashMap<String, List<Integer>>());
+        } else {
+            parsedQuery = singleQuery;
+        }
+        this.rows = rows;
         this.connection = connection;
+
+        int count = 0;
+        for (List<Integer> indexList : indexMap.values()) {
+            count += indexList.size();
+        }
+        rowSize = count;
+
+        handleMap = new HashMap<String, Integer>();
+        indexes = new int[indexMap.size()][];
+        for (Map.Entry<String, List<Integer>> entry : indexMap.entrySet()) {
+            int handle = handleMap.size();
+            handleMap.put(entry.getKey(), handle);
+            indexes[handle] = new int[entry.getValue().size()];
+            int i = 0;
+            for (Integer index : entry.getValue()) {
+                indexes[handle][i++] = index;
+            }
+        }
+    }
+
+    /**
+     * Resolve parameter name to handle for fast binding
+     *
+     * @return handle or -1 if query does not have such parameter
+     */
+    public int getHandle(String name) {
+        Integer handle = handleMap.get(name);
+        return (handle != null) ? handle : -1;
     }
 
     /**
@@ -109,142 +154,328 @@ public class NamedParameterStatement {
         return parsedQuery.toString();
     }
 
-    public NamedParameterStatement(AdvancedConnection connection, String query, Long deviceid) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    /**
+     * Find keyword outside of quotes, not being part of other identifier
+     *
+     * @return keyword index or -1 if not found
+     */
+    static int findKeyword(String query, String keyword) {
+        boolean inSingleQuote = false;
+        boolean inDoubleQuote = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (inSingleQuote) {
+                if (c == '\'') inSingleQuote = false;
+            } else if (inDoubleQuote) {
+                if (c == '"') inDoubleQuote = false;
+            } else if (c == '\'') {
+                inSingleQuote = true;
+            } else if (c == '"') {
+                inDoubleQuote = true;
+            } else if (query.regionMatches(true, i, keyword, 0, keyword.length())
+                    && (i == 0 || !Character.isJavaIdentifierPart(query.charAt(i - 1)))
+                    && (i + keyword.length() == query.length()
+                            || !Character.isJavaIdentifierPart(query.charAt(i + keyword.length())))) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    public void reset(boolean resetConnection) throws SQLException {
-        if (statement != null) {
-            statement.close();
-            statement = null;
+    /**
+     * Repeat VALUES list of single row INSERT query
+     */
+    static String expandValues(String query, int rows) {
+
+        int valuesIndex = findKeyword(query, "VALUES");
+        int begin = (valuesIndex != -1) ? query.indexOf('(', valuesIndex) : -1;
+        if (begin == -1) {
+            throw new IllegalArgumentException("Query has no VALUES list");
         }
-        if (resetConnection) {
-            connection.reset();
+
+        int depth = 0;
+        int end = -1;
+        boolean inSingleQuote = false;
+        boolean inDoubleQuote = false;
+        for (int i = begin; i < query.length() && end == -1; i++) {
+            char c = query.charAt(i);
+            if (inSingleQuote) {
+                if (c == '\'') inSingleQuote = false;
+            } else if (inDoubleQuote) {
+                if (c == '"') inDoubleQuote = false;
+            } else if (c == '\'') {
+                inSingleQuote = true;
+            } else if (c == '"') {
+                inDoubleQuote = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                end = i + 1;
+            }
+        }
+        if (end == -1) {
+            throw new IllegalArgumentException("Query VALUES list is not closed");
+        }
+
+        String prefix = query.substring(0, begin);
+        String values = query.substring(begin, end);
+        String suffix = query.substring(end);
+
+        // Row offsets are only valid if all parameters are in the list
+        Map<String, List<Integer>> outside = new HashMap<String, List<Integer>>();
+        parse(prefix, outside);
+        parse(suffix, outside);
+        if (!outside.isEmpty()) {
+            throw new IllegalArgumentException("Query has parameters outside of VALUES list");
         }
-        statement = connection.getInstance().prepareStatement(parsedQuery, autoGeneratedKeys);
+
+        StringBuilder result = new StringBuilder(prefix);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(values);
+        }
+        return result.append(suffix).toString();
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public NamedParameterStatement(AdvancedConnection connection, String query, Long deviceid) {
+        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
-    public void prepare(int autoGeneratedKeys) throws SQLException {
-        this.autoGeneratedKeys = autoGeneratedKeys;
+    /**
+     * Borrow connection and prepare statement, returned parameters must be closed after use
+     */
+    public Params prepare(int autoGeneratedKeys) throws SQLException {
+        AdvancedConnection.PooledConnection pooledConnection = connection.borrow();
         try {
-            if (statement == null) {
-                reset(false);
-            } else if (statement.getWarnings() != null) {
-                reset(true);
-            }
+            return new Params(pooledConnection, pooledConnection.prepareStatement(parsedQuery, autoGeneratedKeys), true);
         } catch (SQLException firstError) {
+            connection.invalidate(pooledConnection);
+            pooledConnection = connection.borrow();
             try {
-                reset(true);
+                return new Params(pooledConnection, pooledConnection.prepareStatement(parsedQuery, autoGeneratedKeys), true);
             } catch (SQLException secondError) {
+                connection.invalidate(pooledConnection);
                 Log.warning(secondError);
                 throw secondError;
             }
         }
     }
 
-    public void prepare() throws SQLException {
-        prepare(Statement.NO_GENERATED_KEYS);
-    }
-
-    /**
-     * Execute query with result
-     */
-    public ResultSet executeQuery() throws SQLException {
-        return statement.executeQuery();
+    public Params prepare() throws SQLException {
+        return prepare(Statement.NO_GENERATED_KEYS);
     }
 
-
     /**
-     * Executes query without result
+     * Prepare statement on connection borrowed by caller, for several statements in one transaction
+     *
+     * Closing returned parameters does not release connection.
      */
-    public int executeUpdate() throws SQLException {
-        return statement.executeUpdate();
+    public Params prepare(AdvancedConnection.PooledConnection pooledConnection, int autoGeneratedKeys)
+            throws SQLException {
+        return new Params(pooledConnection, pooledConnection.prepareStatement(parsedQuery, autoGeneratedKeys), false);
     }
 
     /**
-     * Return generated keys
+     * Prepared statement bound to pooled connection
      */
-    public ResultSet getGeneratedKeys() throws SQLException {
-        return statement.getGeneratedKeys();
-    }
+    public class Params {
+
+        private final AdvancedConnection.PooledConnection pooledConnection;
+        private final PreparedStatement statement;
+        private final boolean owner;
+        private boolean failed;
+        private int offset;
+
+        private Params(
+                AdvancedConnection.PooledConnection pooledConnection, PreparedStatement statement, boolean owner) {
+            this.pooledConnection = pooledConnection;
+            this.statement = statement;
+            this.owner = owner;
+        }
 
-    /**
-     * Immediately closes the statement
-     */
-    public void close() throws SQLException {
-        statement.close();
-    }
+        /**
+         * Select row of expanded VALUES list for following set calls
+         */
+        public void setRow(int row) {
+            if (row < 0 || row >= rows) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+            }
+            offset = row * rowSize;
+        }
 
-    public void setInt(String name, Integer value) throws SQLException {
+        /**
+         * Execute query with result
+         */
+        public ResultSet executeQuery() throws SQLException {
+            try {
+                return statement.executeQuery();
+            } catch (SQLException error) {
+                failed = true;
+                throw error;
+            }
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setInt(index, value);
-            } else {
-                statement.setNull(index, Types.INTEGER);
+        /**
+         * Executes query without result
+         */
+        public int executeUpdate() throws SQLException {
+            try {
+                return statement.executeUpdate();
+            } catch (SQLException error) {
+                failed = true;
+                throw error;
             }
         }
-    }
 
-    public void setLong(String name, Long value) throws SQLException {
+        /**
+         * Add current parameters to the batch
+         */
+        public void addBatch() throws SQLException {
+            statement.addBatch();
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setLong(index, value);
-            } else {
-                statement.setNull(index, Types.INTEGER);
+        /**
+         * Executes all batched parameter sets
+         */
+        public int[] executeBatch() throws SQLException {
+            try {
+                return statement.executeBatch();
+            } catch (SQLException error) {
+                failed = true;
+                throw error;
             }
         }
-    }
 
-    public void setBoolean(String name, Boolean value) throws SQLException {
+        /**
+         * Return generated keys
+         */
+        public ResultSet getGeneratedKeys() throws SQLException {
+            return statement.getGeneratedKeys();
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setBoolean(index, value);
+        /**
+         * Return connection to the pool, broken connections are closed
+         */
+        public void close() {
+            if (!owner) {
+                return;
+            }
+            if (failed) {
+                connection.invalidate(pooledConnection);
             } else {
-                statement.setNull(index, Types.BOOLEAN);
+                connection.release(pooledConnection);
             }
         }
-    }
 
-    public void setDouble(String name, Double value) throws SQLException {
+        public void setInt(String name, Integer value) throws SQLException {
+            setInt(getHandle(name), value);
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setDouble(index, value);
-            } else {
-                statement.setNull(index, Types.DOUBLE);
+        public void setLong(String name, Long value) throws SQLException {
+            setLong(getHandle(name), value);
+        }
+
+        public void setBoolean(String name, Boolean value) throws SQLException {
+            setBoolean(getHandle(name), value);
+        }
+
+        public void setDouble(String name, Double value) throws SQLException {
+            setDouble(getHandle(name), value);
+        }
+
+        public void setTimestamp(String name, Date value) throws SQLException {
+            setTimestamp(getHandle(name), value);
+        }
+
+        public void setString(String name, String value) throws SQLException {
+            setString(getHandle(name), value);
+        }
+
+        public void setInt(int handle, Integer value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            for (int index : indexes[handle]) {
+                if (value != null) {
+                    statement.setInt(index + offset, value);
+                } else {
+                    statement.setNull(index + offset, Types.INTEGER);
+                }
             }
         }
-    }
 
-    public void setTimestamp(String name, Date value) throws SQLException {
+        public void setLong(int handle, Long value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            for (int index : indexes[handle]) {
+                if (value != null) {
+                    statement.setLong(index + offset, value);
+                } else {
+                    statement.setNull(index + offset, Types.INTEGER);
+                }
+            }
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setTimestamp(index, new Timestamp(value.getTime()));
-            } else {
-                statement.setNull(index, Types.TIMESTAMP);
+        public void setBoolean(int handle, Boolean value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            for (int index : indexes[handle]) {
+                if (value != null) {
+                    statement.setBoolean(index + offset, value);
+                } else {
+                    statement.setNull(index + offset, Types.BOOLEAN);
+                }
             }
         }
-    }
 
-    public void setString(String name, String value) throws SQLException {
+        public void setDouble(int handle, Double value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            for (int index : indexes[handle]) {
+                if (value != null) {
+                    statement.setDouble(index + offset, value);
+                } else {
+                    statement.setNull(index + offset, Types.DOUBLE);
+                }
+            }
+        }
 
-        List<Integer> indexList = indexMap.get(name);
-        if (indexList != null) for (Integer index: indexList) {
-            if (value != null) {
-                statement.setString(index, value);
-            } else {
-                statement.setNull(index, Types.VARCHAR);
+        public void setTimestamp(int handle, Date value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            Timestamp timestamp = (value != null) ? new Timestamp(value.getTime()) : null;
+            for (int index : indexes[handle]) {
+                if (timestamp != null) {
+                    statement.setTimestamp(index + offset, timestamp);
+                } else {
+                    statement.setNull(index + offset, Types.TIMESTAMP);
+                }
             }
         }
+
+        public void setString(int handle, String value) throws SQLException {
+            if (handle < 0) {
+                return;
+            }
+            for (int index : indexes[handle]) {
+                if (value != null) {
+                    statement.setString(index + offset, value);
+                } else {
+                    statement.setNull(index + offset, Types.VARCHAR);
+                }
+            }
+        }
+
     }
 
 }
@@ -16,6 +16,7 @@
 package org.traccar.model;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data manager
@@ -33,10 +34,25 @@ public interface DataManager {
      */
     public String getCompanyNameByDevice(Long device) throws Exception;
 
+    /**
+     * Get company names for all devices
+     */
+    public Map<Long, String> getCompanyNames() throws Exception;
+
     /**
      * Manage positions
      */
     public Long addPosition(Position position) throws Exception;
-    public void updateLatestPosition(Long deviceId, Long positionId) throws Exception;
+
+    /**
+     * Store positions in one go, returns ids in the same order (null if not available)
+     */
+    public List<Long> addPositions(List<Position> positions) throws Exception;
+    public void updateLatestPosition(Position position, Long positionId) throws Exception;
+
+    /**
+     * Last archive index stored for device (null if unknown)
+     */
+    public Long getLastIndex(Long deviceId) throws Exception;
 
 }
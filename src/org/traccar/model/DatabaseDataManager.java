@@ -16,23 +16,23 @@
 package org.traccar.model;
 
 import java.io.File;
-import java.io.StringReader;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.sql.*;
 import java.util.*;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.namespace.QName;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import org.traccar.helper.AdvancedConnection;
 import org.traccar.helper.DriverDelegate;
+import org.traccar.helper.IdAllocator;
 import org.traccar.helper.Log;
 import org.traccar.helper.NamedParameterStatement;
-import org.xml.sax.InputSource;
 import org.traccar.helper.Log;
 
 /**
@@ -48,9 +48,32 @@ public class DatabaseDataManager implements DataManager {
      * Database statements
      */
     private NamedParameterStatement queryGetDevices;
-    private NamedParameterStatement queryAddPosition;
+    private NamedParameterStatement queryGetChangedDevices;
+    private PositionInserter positionInserter;
+
+    /**
+     * Position id allocator (optional)
+     */
+    private IdAllocator idAllocator;
     private NamedParameterStatement queryUpdateLatestPosition;
     private NamedParameterStatement queryGetCompanyName;
+    private NamedParameterStatement queryGetCompanyNames;
+    private NamedParameterStatement queryGetLastIndex;
+
+    /**
+     * Database connection pool
+     */
+    private AdvancedConnection connection;
+
+    /**
+     * Write-behind position writer (optional)
+     */
+    private PositionWriter positionWriter;
+
+    /**
+     * Coalescing latest position updater (optional)
+     */
+    private LatestPositionUpdater latestPositionUpdater;
 
     /**
      * Initialize database
@@ -79,12 +102,20 @@ public class DatabaseDataManager implements DataManager {
         } else {
             devicesRefreshDelay = new Long(300) * 1000; // Magic number
         }
+        devicesIncrementalRefreshDelay = Long.valueOf(
+                properties.getProperty("database.incrementalRefreshDelay", "10")) * 1000;
 
         // Connect database
         String url = properties.getProperty("database.url");
         String user = properties.getProperty("database.user");
         String password = properties.getProperty("database.password");
-        AdvancedConnection connection = new AdvancedConnection(url, user, password);
+        connection = new AdvancedConnection(url, user, password,
+                Integer.parseInt(properties.getProperty("database.pool.minSize", "1")),
+                Integer.parseInt(properties.getProperty("database.pool.maxSize", "8")),
+                Integer.parseInt(properties.getProperty("database.pool.statementCacheSize", "16")),
+                Long.parseLong(properties.getProperty("database.pool.timeout", "10")) * 1000,
+                Long.parseLong(properties.getProperty("database.pool.validationInterval", "30")) * 1000,
+                Long.parseLong(properties.getProperty("database.pool.idleTimeout", "300")) * 1000);
 
         // Load statements from configuration
         String query;
@@ -94,15 +125,38 @@ public class DatabaseDataManager implements DataManager {
             queryGetDevices = new NamedParameterStatement(connection, query);
         }
 
+        query = properties.getProperty("database.selectDevicesChanged");
+        if (query != null) {
+            queryGetChangedDevices = new NamedParameterStatement(connection, query);
+        }
+
         
+        String reserveQuery = properties.getProperty("database.reservePositionIds");
+        String selectQuery = properties.getProperty("database.selectPositionIds");
+        if (reserveQuery != null && selectQuery != null) {
+            idAllocator = new IdAllocator(connection, reserveQuery, selectQuery,
+                    Integer.parseInt(properties.getProperty("database.positionIdBlockSize", "1000")));
+        }
+
         query = properties.getProperty("database.insertPosition");
         if (query != null) {
-            queryAddPosition = new NamedParameterStatement(connection, query);
+            positionInserter = new PositionInserter(connection, query,
+                    Integer.parseInt(properties.getProperty("database.insertPosition.rows", "1")), idAllocator != null);
+            if (idAllocator != null && !positionInserter.hasPositionId()) {
+                throw new IllegalArgumentException(
+                        "database.insertPosition has to store :position_id when position ids are allocated");
+            }
         }
 
         query = properties.getProperty("database.updateLatestPosition");
         if (query != null) {
             queryUpdateLatestPosition = new NamedParameterStatement(connection, query);
+
+            if (Boolean.parseBoolean(properties.getProperty("database.latestPosition.coalesce"))) {
+                latestPositionUpdater = new LatestPositionUpdater(queryUpdateLatestPosition,
+                        Long.parseLong(properties.getProperty("database.latestPosition.flushInterval", "1000")));
+                latestPositionUpdater.start();
+            }
         }
         
          query = "select rc.company_name from users_devices as u " +
@@ -110,6 +164,24 @@ public class DatabaseDataManager implements DataManager {
                 "join registration_companyprofile as rc on rc.id = rp.company_id " +
                 "where u.devices_id = :device_id"  ;
         queryGetCompanyName = new NamedParameterStatement(connection, query);
+
+        query = "select u.devices_id, rc.company_name from users_devices as u " +
+                "join registration_posusercompany as rp on rp.user_id = u.user_id " +
+                "join registration_companyprofile as rc on rc.id = rp.company_id";
+        queryGetCompanyNames = new NamedParameterStatement(connection, query);
+
+        query = properties.getProperty("database.selectLastIndex");
+        if (query != null) {
+            queryGetLastIndex = new NamedParameterStatement(connection, query);
+        }
+
+        if (Boolean.parseBoolean(properties.getProperty("database.writer.enable"))) {
+            initPositionWriter(properties);
+        }
+
+        if (queryGetDevices != null) {
+            initDevices();
+        }
         
         
         /*
@@ -125,19 +197,82 @@ public class DatabaseDataManager implements DataManager {
        */
     }
 
+    /**
+     * Initialize write-behind position writer
+     */
+    private void initPositionWriter(Properties properties) {
+
+        if (positionInserter == null) {
+            return;
+        }
+
+        NamedParameterStatement updateStatement = null;
+        String updateQuery = properties.getProperty("database.updateLatestPosition");
+        if (updateQuery != null) {
+            updateStatement = new NamedParameterStatement(connection, updateQuery);
+        }
+
+        PositionSpool spool = null;
+        if (Boolean.parseBoolean(properties.getProperty("database.spool.enable"))) {
+            String path = properties.getProperty("database.spool.file", "positions.spool");
+            try {
+                spool = new PositionSpool(new File(path),
+                        Integer.parseInt(properties.getProperty("database.spool.size", "64")) * 1024 * 1024);
+                if (!spool.isEmpty()) {
+                    Log.info("Position spool contains " + spool.getCount() + " positions");
+                }
+            } catch (IOException error) {
+                Log.warning("Failed to open position spool " + path, error);
+            }
+        }
+
+        positionWriter = new PositionWriter(
+                positionInserter, updateStatement, latestPositionUpdater,
+                Integer.parseInt(properties.getProperty("database.writer.queueSize", "10000")),
+                Integer.parseInt(properties.getProperty("database.writer.batchSize", "100")),
+                Long.parseLong(properties.getProperty("database.writer.flushInterval", "100")),
+                Long.parseLong(properties.getProperty("database.writer.statisticsInterval", "60")) * 1000,
+                spool, Long.parseLong(properties.getProperty("database.spool.retryInterval", "5")) * 1000);
+        positionWriter.start();
+    }
+
+    public PositionWriter getPositionWriter() {
+        return positionWriter;
+    }
+
+    /**
+     * Release background resources
+     */
+    public void stop() {
+        if (devicesRefresher != null) {
+            devicesRefresher.shutdownNow();
+        }
+        if (positionWriter != null) {
+            positionWriter.stop();
+        }
+        if (latestPositionUpdater != null) {
+            latestPositionUpdater.stop();
+        }
+        connection.close();
+    }
+
     @Override
-    public synchronized List<Device> getDevices() throws SQLException {
+    public List<Device> getDevices() throws SQLException {
 
         List<Device> deviceList = new LinkedList<Device>();
 
         if (queryGetDevices != null) {
-            queryGetDevices.prepare();
-            ResultSet result = queryGetDevices.executeQuery();
-            while (result.next()) {
-                Device device = new Device();
-                device.setId(result.getLong("id"));
-                device.setImei(result.getString("imei"));
-                deviceList.add(device);
+            NamedParameterStatement.Params params = queryGetDevices.prepare();
+            try {
+                ResultSet result = params.executeQuery();
+                while (result.next()) {
+                    Device device = new Device();
+                    device.setId(result.getLong("id"));
+                    device.setImei(result.getString("imei"));
+                    deviceList.add(device);
+                }
+            } finally {
+                params.close();
             }
         }
 
@@ -145,89 +280,196 @@ public class DatabaseDataManager implements DataManager {
     }
 
     /**
-     * Devices cache
+     * Devices cache, immutable snapshot replaced by refresh task
      */
-    private Map<String, Device> devices;
-    private Calendar devicesLastUpdate;
+    private volatile Map<String, Device> devices = Collections.emptyMap();
+    private long devicesLastUpdate;
     private Long devicesRefreshDelay;
+    private Long devicesIncrementalRefreshDelay;
+    private ScheduledExecutorService devicesRefresher;
 
     @Override
-    public Device getDeviceByImei(String imei) throws SQLException {
+    public Device getDeviceByImei(String imei) {
+        return devices.get(imei);
+    }
+
+    /**
+     * Reload all devices and replace snapshot
+     */
+    private void refreshDevices() throws SQLException {
+        long updateTime = System.currentTimeMillis();
+
+        Map<String, Device> snapshot = new HashMap<String, Device>();
+        for (Device device : getDevices()) {
+            snapshot.put(device.getImei(), device);
+        }
+
+        devices = Collections.unmodifiableMap(snapshot);
+        devicesLastUpdate = updateTime;
+    }
 
-        if ((devices == null) || (Calendar.getInstance().getTimeInMillis() - devicesLastUpdate.getTimeInMillis() > devicesRefreshDelay)) {
-            List<Device> list = getDevices();
-            devices = new HashMap<String, Device>();
-            for (Device device: list) {
-                devices.put(device.getImei(), device);
+    /**
+     * Load devices changed since last update and merge them into snapshot
+     */
+    private void refreshChangedDevices() throws SQLException {
+        long updateTime = System.currentTimeMillis();
+
+        List<Device> changed = new LinkedList<Device>();
+        NamedParameterStatement.Params params = queryGetChangedDevices.prepare();
+        try {
+            params.setTimestamp("since", new Date(devicesLastUpdate));
+            ResultSet result = params.executeQuery();
+            while (result.next()) {
+                Device device = new Device();
+                device.setId(result.getLong("id"));
+                device.setImei(result.getString("imei"));
+                changed.add(device);
             }
-            devicesLastUpdate = Calendar.getInstance();
+        } finally {
+            params.close();
         }
 
-        return devices.get(imei);
+        if (!changed.isEmpty()) {
+            Map<String, Device> snapshot = new HashMap<String, Device>(devices);
+            for (Device device : changed) {
+                snapshot.put(device.getImei(), device);
+            }
+            devices = Collections.unmodifiableMap(snapshot);
+        }
+        devicesLastUpdate = updateTime;
     }
 
-    @Override
-    public synchronized Long addPosition(Position position) throws SQLException {
-
-        if (queryAddPosition != null) {
-            queryAddPosition.prepare(Statement.RETURN_GENERATED_KEYS);
-
-            queryAddPosition.setLong("device_id", position.getDeviceId());
-            queryAddPosition.setTimestamp("time", position.getTime());
-            queryAddPosition.setBoolean("valid", position.getValid());
-            queryAddPosition.setDouble("altitude", position.getAltitude());
-            queryAddPosition.setDouble("latitude", position.getLatitude());
-            queryAddPosition.setDouble("longitude", position.getLongitude());
-            queryAddPosition.setDouble("speed", position.getSpeed());
-            queryAddPosition.setDouble("course", position.getCourse());
-            queryAddPosition.setString("address", position.getAddress());
-            queryAddPosition.setString("extended_info", position.getExtendedInfo());
-            
-            // DELME: Temporary compatibility support
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            try {
-                InputSource source = new InputSource(new StringReader(position.getExtendedInfo()));
-                String index = xpath.evaluate("/info/index", source);
-                if (!index.isEmpty()) {
-                    queryAddPosition.setLong("id", Long.valueOf(index));
-                } else {
-                    queryAddPosition.setLong("id", null);
+    /**
+     * Load devices and schedule background refresh
+     */
+    private void initDevices() {
+        try {
+            refreshDevices();
+        } catch (SQLException error) {
+            Log.warning("Devices loading failed", error);
+        }
+
+        devicesRefresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "devices-refresher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        devicesRefresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refreshDevices();
+                } catch (SQLException error) {
+                    Log.warning("Devices refresh failed", error);
                 }
-                source = new InputSource(new StringReader(position.getExtendedInfo()));
-                String power = xpath.evaluate("/info/power", source);
-                if (!power.isEmpty()) {
-                    queryAddPosition.setDouble("power", Double.valueOf(power));
-                } else {
-                    queryAddPosition.setLong("power", null);
+            }
+        }, devicesRefreshDelay, devicesRefreshDelay, TimeUnit.MILLISECONDS);
+
+        if (queryGetChangedDevices != null) {
+            devicesRefresher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refreshChangedDevices();
+                    } catch (SQLException error) {
+                        Log.warning("Devices incremental refresh failed", error);
+                    }
                 }
-            } catch (XPathExpressionException e) {
-                Log.warning("Error in XML: " + position.getExtendedInfo(), e);
-                queryAddPosition.setLong("id", null);
-                queryAddPosition.setLong("power", null);
+            }, devicesIncrementalRefreshDelay, devicesIncrementalRefreshDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Long addPosition(Position position) throws SQLException {
+
+        if (idAllocator != null) {
+            position.setId(idAllocator.next());
+        }
+
+        if (positionWriter != null) {
+            if (!positionWriter.write(position)) {
+                throw new SQLException("Position writer queue is full");
             }
+            return null;
+        }
 
-            queryAddPosition.executeUpdate();
+        if (positionInserter != null) {
+            return positionInserter.insert(position);
+        }
+
+        return null;
+    }
+
+    @Override
+    public List<Long> addPositions(List<Position> positions) throws SQLException {
+
+        if (idAllocator != null) {
+            for (Position position : positions) {
+                position.setId(idAllocator.next());
+            }
+        }
 
-            ResultSet result = queryAddPosition.getGeneratedKeys();
-            if (result != null && result.next()) {
-                return result.getLong(1);
+        if (positionWriter != null) {
+            for (Position position : positions) {
+                if (!positionWriter.write(position)) {
+                    throw new SQLException("Position writer queue is full");
+                }
             }
+            return null;
+        }
+
+        if (positionInserter != null) {
+            return positionInserter.insert(positions);
         }
 
         return null;
     }
 
     @Override
-    public void updateLatestPosition(Long deviceId, Long positionId) throws SQLException {
-        
-        if (queryUpdateLatestPosition != null) {
-            queryUpdateLatestPosition.prepare();
+    public void updateLatestPosition(Position position, Long positionId) throws SQLException {
 
-            queryUpdateLatestPosition.setLong("device_id", deviceId);
-            queryUpdateLatestPosition.setLong("id", positionId);
+        if (positionId == null) {
+            return;
+        }
 
-            queryUpdateLatestPosition.executeUpdate();
+        if (latestPositionUpdater != null) {
+            latestPositionUpdater.update(position.getDeviceId(), positionId, position.getTime());
+        } else if (queryUpdateLatestPosition != null) {
+            NamedParameterStatement.Params params = queryUpdateLatestPosition.prepare();
+            try {
+                params.setLong("device_id", position.getDeviceId());
+                params.setLong("id", positionId);
+                params.setTimestamp("time", position.getTime());
+
+                params.executeUpdate();
+            } finally {
+                params.close();
+            }
+        }
+    }
+
+    @Override
+    public Long getLastIndex(Long deviceId) throws SQLException {
+
+        if (queryGetLastIndex != null) {
+            NamedParameterStatement.Params params = queryGetLastIndex.prepare();
+            try {
+                params.setLong("device_id", deviceId);
+
+                ResultSet result = params.executeQuery();
+                if (result.next()) {
+                    return result.getLong(1);
+                }
+            } finally {
+                params.close();
+            }
         }
+
+        return null;
     }
 
     /**
@@ -242,23 +484,38 @@ public class DatabaseDataManager implements DataManager {
     @Override
     public String getCompanyNameByDevice(Long device) throws Exception {
         
-        Log.info("Device id = "+device);
-        
-        
         String CompanyName = null;
        
-        if (queryGetCompanyName!=null){
-            queryGetCompanyName.prepare();
-        }
-      queryGetCompanyName.setLong("device_id", device);
-        
-        ResultSet result = queryGetCompanyName.executeQuery();
-        while (result.next()) {
-        CompanyName = result.getString("company_name");
-         Log.info("Company Name = "+CompanyName);
+        NamedParameterStatement.Params params = queryGetCompanyName.prepare();
+        try {
+            params.setLong("device_id", device);
+
+            ResultSet result = params.executeQuery();
+            while (result.next()) {
+                CompanyName = result.getString("company_name");
+            }
+        } finally {
+            params.close();
         }
         return CompanyName;
     }
+
+    @Override
+    public Map<Long, String> getCompanyNames() throws Exception {
+
+        Map<Long, String> companies = new HashMap<Long, String>();
+
+        NamedParameterStatement.Params params = queryGetCompanyNames.prepare();
+        try {
+            ResultSet result = params.executeQuery();
+            while (result.next()) {
+                companies.put(result.getLong("devices_id"), result.getString("company_name"));
+            }
+        } finally {
+            params.close();
+        }
+        return companies;
+    }
     
    
    /* 
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.traccar.helper.Log;
+import org.traccar.helper.NamedParameterStatement;
+
+/**
+ * Coalescing latest position updater
+ *
+ * Keeps only the newest position per device and stores pending pointers
+ * periodically as one batch. Positions older than the latest known fix of
+ * the device (archive records) never replace the pointer. Times are only
+ * known since start, so update query should also compare with the stored
+ * position (see default configuration).
+ */
+public class LatestPositionUpdater implements Runnable {
+
+    private final NamedParameterStatement queryUpdateLatestPosition;
+    private final long flushInterval;
+
+    /**
+     * Time of the latest known fix per device
+     */
+    private final Map<Long, Long> latestTimes = new HashMap<Long, Long>();
+
+    /**
+     * Pointers waiting for flush
+     */
+    private Map<Long, Pending> pending = new HashMap<Long, Pending>();
+
+    private ScheduledExecutorService executor;
+
+    private static class Pending {
+
+        private final long positionId;
+        private final long time;
+
+        public Pending(long positionId, long time) {
+            this.positionId = positionId;
+            this.time = time;
+        }
+
+    }
+
+    public LatestPositionUpdater(NamedParameterStatement queryUpdateLatestPosition, long flushInterval) {
+        this.queryUpdateLatestPosition = queryUpdateLatestPosition;
+        this.flushInterval = flushInterval;
+    }
+
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "latest-position-updater");
+            }
+        });
+        executor.scheduleWithFixedDelay(this, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop timer and store remaining pointers
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(flushInterval * 2 + 10000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+        run();
+    }
+
+    /**
+     * Remember position as latest unless device already has newer fix
+     *
+     * Positions without id (driver returned no key) are ignored.
+     */
+    public synchronized void update(Long deviceId, Long positionId, Date time) {
+        if (deviceId == null || positionId == null) {
+            return;
+        }
+        long fixTime = (time != null) ? time.getTime() : 0;
+        Long latestTime = latestTimes.get(deviceId);
+        if (latestTime != null && fixTime < latestTime) {
+            return;
+        }
+        latestTimes.put(deviceId, fixTime);
+        pending.put(deviceId, new Pending(positionId, fixTime));
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private synchronized Map<Long, Pending> takePending() {
+        Map<Long, Pending> result = pending;
+        pending = new HashMap<Long, Pending>();
+        return result;
+    }
+
+    /**
+     * Return pointers after failed flush unless newer ones arrived meanwhile
+     */
+    private synchronized void restorePending(Map<Long, Pending> failed) {
+        for (Map.Entry<Long, Pending> entry : failed.entrySet()) {
+            if (!pending.containsKey(entry.getKey())) {
+                pending.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Map<Long, Pending> batch = takePending();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            NamedParameterStatement.Params params = queryUpdateLatestPosition.prepare();
+            try {
+                for (Map.Entry<Long, Pending> entry : batch.entrySet()) {
+                    params.setLong("device_id", entry.getKey());
+                    params.setLong("id", entry.getValue().positionId);
+                    params.setTimestamp("time", new Date(entry.getValue().time));
+                    params.addBatch();
+                }
+                params.executeBatch();
+            } finally {
+                params.close();
+            }
+        } catch (SQLException error) {
+            Log.warning("Failed to update " + batch.size() + " latest positions", error);
+            restorePending(batch);
+        } catch (RuntimeException error) {
+            // Exception would cancel further scheduled runs
+            Log.warning("Failed to update " + batch.size() + " latest positions", error);
+            restorePending(batch);
+        }
+    }
+
+}
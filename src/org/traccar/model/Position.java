@@ -126,4 +126,30 @@ public class Position extends Data {
         this.address = address;
     }
 
+    /**
+     * Message index (archive record number, for some trackers)
+     */
+    private Long index;
+
+    public Long getIndex() {
+        return index;
+    }
+
+    public void setIndex(Long index) {
+        this.index = index;
+    }
+
+    /**
+     * Power supply voltage (for some trackers)
+     */
+    private Double power;
+
+    public Double getPower() {
+        return power;
+    }
+
+    public void setPower(Double power) {
+        this.power = power;
+    }
+
 }
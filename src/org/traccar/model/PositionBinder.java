@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.sql.SQLException;
+import org.traccar.helper.NamedParameterStatement;
+
+/**
+ * Binds position values to insert statement using precompiled parameter handles
+ */
+public class PositionBinder {
+
+    private final int deviceId;
+    private final int time;
+    private final int valid;
+    private final int altitude;
+    private final int latitude;
+    private final int longitude;
+    private final int speed;
+    private final int course;
+    private final int address;
+    private final int extendedInfo;
+    private final int index;
+    private final int power;
+    private final int id;
+    private final int positionId;
+
+    public PositionBinder(NamedParameterStatement statement) {
+        deviceId = statement.getHandle("device_id");
+        time = statement.getHandle("time");
+        valid = statement.getHandle("valid");
+        altitude = statement.getHandle("altitude");
+        latitude = statement.getHandle("latitude");
+        longitude = statement.getHandle("longitude");
+        speed = statement.getHandle("speed");
+        course = statement.getHandle("course");
+        address = statement.getHandle("address");
+        extendedInfo = statement.getHandle("extended_info");
+        index = statement.getHandle("index");
+        power = statement.getHandle("power");
+        id = statement.getHandle("id");
+        positionId = statement.getHandle("position_id");
+    }
+
+    /**
+     * Check whether statement stores allocated position id
+     */
+    public boolean hasPositionId() {
+        return positionId >= 0;
+    }
+
+    public void bind(NamedParameterStatement.Params params, Position position) throws SQLException {
+
+        params.setLong(deviceId, position.getDeviceId());
+        params.setTimestamp(time, position.getTime());
+        params.setBoolean(valid, position.getValid());
+        params.setDouble(altitude, position.getAltitude());
+        params.setDouble(latitude, position.getLatitude());
+        params.setDouble(longitude, position.getLongitude());
+        params.setDouble(speed, position.getSpeed());
+        params.setDouble(course, position.getCourse());
+        params.setString(address, position.getAddress());
+        params.setString(extendedInfo, position.getExtendedInfo());
+        params.setLong(index, position.getIndex());
+        params.setDouble(power, position.getPower());
+
+        params.setLong(positionId, position.getId());
+
+        // DELME: Temporary compatibility support
+        params.setLong(id, position.getIndex());
+    }
+
+}
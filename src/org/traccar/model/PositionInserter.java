@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.traccar.helper.AdvancedConnection;
+import org.traccar.helper.NamedParameterStatement;
+
+/**
+ * Position insert supporting multiple positions per round trip
+ *
+ * With multi-row mode the VALUES list of the insert template is expanded
+ * into statements for maximum rows, half of it and so on down to single
+ * row. Positions are written in chunks of the largest fitting size, so any
+ * count takes logarithmic number of statements. Otherwise JDBC batch is
+ * used. All statements of one batch run in a single transaction, so failed
+ * batch can be written again without duplicates.
+ *
+ * If ids are allocated before insert, generated keys are not requested.
+ */
+public class PositionInserter {
+
+    private final AdvancedConnection connection;
+    private final NamedParameterStatement[] statements;
+    private final PositionBinder[] binders;
+    private final boolean allocatedIds;
+
+    /**
+     * @param rows maximum rows per statement, 1 to use JDBC batches
+     * @param allocatedIds positions have ids assigned before insert
+     */
+    public PositionInserter(AdvancedConnection connection, String query, int rows, boolean allocatedIds) {
+        this.connection = connection;
+        this.allocatedIds = allocatedIds;
+        List<NamedParameterStatement> list = new ArrayList<NamedParameterStatement>();
+        for (int size = Math.max(rows, 1); size > 1; size /= 2) {
+            list.add(new NamedParameterStatement(connection, query, size));
+        }
+        list.add(new NamedParameterStatement(connection, query));
+
+        statements = list.toArray(new NamedParameterStatement[list.size()]);
+        binders = new PositionBinder[statements.length];
+        for (int i = 0; i < statements.length; i++) {
+            binders[i] = new PositionBinder(statements[i]);
+        }
+    }
+
+    private NamedParameterStatement getSingleStatement() {
+        return statements[statements.length - 1];
+    }
+
+    public boolean hasPositionId() {
+        return binders[0].hasPositionId();
+    }
+
+    public boolean isMultiRow() {
+        return statements.length > 1;
+    }
+
+    private int getKeysMode() {
+        return allocatedIds ? Statement.NO_GENERATED_KEYS : Statement.RETURN_GENERATED_KEYS;
+    }
+
+    /**
+     * Insert one position
+     *
+     * @return generated or allocated id, null if not available
+     */
+    public Long insert(Position position) throws SQLException {
+        NamedParameterStatement.Params params = getSingleStatement().prepare(getKeysMode());
+        try {
+            binders[binders.length - 1].bind(params, position);
+            params.executeUpdate();
+
+            if (allocatedIds) {
+                return position.getId();
+            }
+            ResultSet result = params.getGeneratedKeys();
+            if (result != null && result.next()) {
+                return result.getLong(1);
+            }
+        } finally {
+            params.close();
+        }
+        return null;
+    }
+
+    /**
+     * Insert positions in given order, either all or none of them are stored
+     *
+     * @return ids in the same order or null if driver does not return key for every row
+     */
+    public List<Long> insert(List<Position> positions) throws SQLException {
+        List<Long> keys = new ArrayList<Long>(positions.size());
+        AdvancedConnection.PooledConnection pooledConnection = connection.borrow();
+        Connection db = pooledConnection.getConnection();
+        try {
+            db.setAutoCommit(false);
+            try {
+                if (isMultiRow()) {
+                    int offset = 0;
+                    for (int i = 0; i < statements.length; i++) {
+                        int size = statements[i].getRows();
+                        while (positions.size() - offset >= size) {
+                            insertRows(pooledConnection, statements[i], binders[i],
+                                    positions.subList(offset, offset + size), keys);
+                            offset += size;
+                        }
+                    }
+                } else {
+                    insertBatch(pooledConnection, positions, keys);
+                }
+                db.commit();
+            } catch (SQLException error) {
+                db.rollback();
+                throw error;
+            } finally {
+                db.setAutoCommit(true);
+            }
+        } catch (SQLException error) {
+            connection.invalidate(pooledConnection);
+            throw error;
+        } catch (RuntimeException error) {
+            connection.invalidate(pooledConnection);
+            throw error;
+        }
+        connection.release(pooledConnection);
+
+        if (allocatedIds) {
+            keys.clear();
+            for (Position position : positions) {
+                keys.add(position.getId());
+            }
+        }
+        return (keys.size() == positions.size()) ? keys : null;
+    }
+
+    private void readKeys(NamedParameterStatement.Params params, List<Long> keys) throws SQLException {
+        if (allocatedIds) {
+            return;
+        }
+        ResultSet result = params.getGeneratedKeys();
+        if (result != null) {
+            while (result.next()) {
+                keys.add(result.getLong(1));
+            }
+        }
+    }
+
+    private void insertRows(
+            AdvancedConnection.PooledConnection pooledConnection, NamedParameterStatement statement,
+            PositionBinder binder, List<Position> positions, List<Long> keys) throws SQLException {
+        NamedParameterStatement.Params params = statement.prepare(pooledConnection, getKeysMode());
+        try {
+            for (int row = 0; row < positions.size(); row++) {
+                params.setRow(row);
+                binder.bind(params, positions.get(row));
+            }
+            params.executeUpdate();
+            readKeys(params, keys);
+        } finally {
+            params.close();
+        }
+    }
+
+    private void insertBatch(
+            AdvancedConnection.PooledConnection pooledConnection, List<Position> positions, List<Long> keys)
+            throws SQLException {
+        NamedParameterStatement.Params params = getSingleStatement().prepare(pooledConnection, getKeysMode());
+        try {
+            for (Position position : positions) {
+                binders[binders.length - 1].bind(params, position);
+                params.addBatch();
+            }
+            params.executeBatch();
+            readKeys(params, keys);
+        } finally {
+            params.close();
+        }
+    }
+
+}
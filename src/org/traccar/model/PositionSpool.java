@@ -0,0 +1,389 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Memory-mapped append-only position spool
+ *
+ * File starts with header containing magic number and persisted read
+ * offset. Records follow as length prefixed entries. Record length is
+ * written last and next record length is cleared before that, so torn
+ * records are never visible after crash. Reading is two phase: positions
+ * are returned by read() and removed only after commit(), appending in
+ * between is allowed.
+ *
+ * Appended records and new read offset are forced to disk before append()
+ * and commit() return, so spooled positions survive operating system
+ * crash or power loss, not only process crash. Positions read, but not
+ * committed before crash are returned again after restart.
+ */
+public class PositionSpool {
+
+    private static final int MAGIC = 0x54525350;
+    private static final int HEADER_SIZE = 16;
+    private static final int READ_OFFSET = 8;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * Null field flags
+     */
+    private static final int HAS_TIME = 1;
+    private static final int HAS_SERVER_TIME = 1 << 1;
+    private static final int HAS_VALID = 1 << 2;
+    private static final int HAS_LATITUDE = 1 << 3;
+    private static final int HAS_LONGITUDE = 1 << 4;
+    private static final int HAS_ALTITUDE = 1 << 5;
+    private static final int HAS_SPEED = 1 << 6;
+    private static final int HAS_COURSE = 1 << 7;
+    private static final int HAS_ADDRESS = 1 << 8;
+    private static final int HAS_INDEX = 1 << 9;
+    private static final int HAS_POWER = 1 << 10;
+    private static final int HAS_EXTENDED_INFO = 1 << 11;
+    private static final int VALID = 1 << 12;
+    private static final int HAS_ID = 1 << 13;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+
+    private int readOffset;
+    private int pendingOffset;
+    private int writeOffset;
+    private int count;
+
+    /**
+     * @param size spool file size in bytes
+     */
+    public PositionSpool(File path, int size) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        if (file.length() > size) {
+            size = (int) file.length();
+        }
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            reset();
+        } else {
+            readOffset = (int) buffer.getLong(READ_OFFSET);
+            if (readOffset < HEADER_SIZE || readOffset > size - 4) {
+                throw new IOException("Corrupted spool file " + path);
+            }
+            recover();
+        }
+        pendingOffset = readOffset;
+    }
+
+    /**
+     * Find end of committed records
+     */
+    private void recover() {
+        writeOffset = readOffset;
+        count = 0;
+        while (writeOffset <= buffer.capacity() - 4) {
+            int length = buffer.getInt(writeOffset);
+            if (length <= 0 || writeOffset + 4 + length > buffer.capacity() - 4) {
+                break;
+            }
+            writeOffset += 4 + length;
+            count += 1;
+        }
+    }
+
+    private void reset() {
+        readOffset = HEADER_SIZE;
+        pendingOffset = HEADER_SIZE;
+        writeOffset = HEADER_SIZE;
+        count = 0;
+        buffer.putInt(HEADER_SIZE, 0);
+        buffer.putLong(READ_OFFSET, HEADER_SIZE);
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Number of spooled positions
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Spooled data size in bytes
+     */
+    public synchronized int getUsed() {
+        return writeOffset - readOffset;
+    }
+
+    /**
+     * Append positions in given order, data is on disk when method returns
+     *
+     * @return number of appended positions, less than list size if spool is full
+     */
+    public synchronized int append(List<Position> positions) {
+        int appended = 0;
+        for (Position position : positions) {
+            byte[] record = encode(position);
+            // Record, its length and terminating zero length must fit
+            if (writeOffset + 8 + record.length > buffer.capacity()) {
+                compact();
+                if (writeOffset + 8 + record.length > buffer.capacity()) {
+                    break;
+                }
+            }
+            buffer.position(writeOffset + 4);
+            buffer.put(record);
+            buffer.putInt(writeOffset + 4 + record.length, 0);
+            buffer.putInt(writeOffset, record.length);
+            writeOffset += 4 + record.length;
+            count += 1;
+            appended += 1;
+        }
+        if (appended > 0) {
+            buffer.force();
+        }
+        return appended;
+    }
+
+    /**
+     * Move unread records to the beginning of the file
+     *
+     * Only done if regions do not overlap, so original records stay intact
+     * until header points to the new location.
+     */
+    private void compact() {
+        int length = writeOffset - readOffset;
+        if (readOffset - HEADER_SIZE < length + 4) {
+            return;
+        }
+        ByteBuffer source = buffer.duplicate();
+        source.position(readOffset).limit(writeOffset);
+        buffer.position(HEADER_SIZE);
+        buffer.put(source.slice());
+        buffer.putInt(HEADER_SIZE + length, 0);
+        pendingOffset -= readOffset - HEADER_SIZE;
+        readOffset = HEADER_SIZE;
+        writeOffset = HEADER_SIZE + length;
+        buffer.putLong(READ_OFFSET, readOffset);
+        buffer.force();
+    }
+
+    /**
+     * Read oldest positions without removing them
+     */
+    public synchronized void read(List<Position> positions, int maxCount) {
+        pendingOffset = readOffset;
+        while (positions.size() < maxCount && pendingOffset < writeOffset) {
+            int length = buffer.getInt(pendingOffset);
+            ByteBuffer record = buffer.duplicate();
+            record.position(pendingOffset + 4).limit(pendingOffset + 4 + length);
+            positions.add(decode(record));
+            pendingOffset += 4 + length;
+        }
+    }
+
+    /**
+     * Remove positions returned by last read
+     */
+    public synchronized void commit(int removedCount) {
+        readOffset = pendingOffset;
+        count -= removedCount;
+        if (readOffset == writeOffset) {
+            reset();
+        } else {
+            buffer.putLong(READ_OFFSET, readOffset);
+        }
+        buffer.force();
+    }
+
+    /**
+     * Flush changes to disk and release file
+     */
+    public synchronized void close() throws IOException {
+        buffer.force();
+        file.close();
+    }
+
+    private static byte[] encode(Position position) {
+        byte[] address = (position.getAddress() != null) ? position.getAddress().getBytes(CHARSET) : null;
+        byte[] extendedInfo = (position.getExtendedInfo() != null) ? position.getExtendedInfo().getBytes(CHARSET) : null;
+
+        int flags = 0;
+        int length = 4 + 8;
+        if (position.getId() != null) {
+            flags |= HAS_ID;
+            length += 8;
+        }
+        if (position.getTime() != null) {
+            flags |= HAS_TIME;
+            length += 8;
+        }
+        if (position.getServerTime() != null) {
+            flags |= HAS_SERVER_TIME;
+            length += 8;
+        }
+        if (position.getValid() != null) {
+            flags |= HAS_VALID;
+            if (position.getValid()) {
+                flags |= VALID;
+            }
+        }
+        if (position.getLatitude() != null) {
+            flags |= HAS_LATITUDE;
+            length += 8;
+        }
+        if (position.getLongitude() != null) {
+            flags |= HAS_LONGITUDE;
+            length += 8;
+        }
+        if (position.getAltitude() != null) {
+            flags |= HAS_ALTITUDE;
+            length += 8;
+        }
+        if (position.getSpeed() != null) {
+            flags |= HAS_SPEED;
+            length += 8;
+        }
+        if (position.getCourse() != null) {
+            flags |= HAS_COURSE;
+            length += 8;
+        }
+        if (address != null) {
+            flags |= HAS_ADDRESS;
+            length += 4 + address.length;
+        }
+        if (position.getIndex() != null) {
+            flags |= HAS_INDEX;
+            length += 8;
+        }
+        if (position.getPower() != null) {
+            flags |= HAS_POWER;
+            length += 8;
+        }
+        if (extendedInfo != null) {
+            flags |= HAS_EXTENDED_INFO;
+            length += 4 + extendedInfo.length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(flags);
+        record.putLong(position.getDeviceId());
+        if (position.getId() != null) {
+            record.putLong(position.getId());
+        }
+        if (position.getTime() != null) {
+            record.putLong(position.getTime().getTime());
+        }
+        if (position.getServerTime() != null) {
+            record.putLong(position.getServerTime().getTime());
+        }
+        if (position.getLatitude() != null) {
+            record.putDouble(position.getLatitude());
+        }
+        if (position.getLongitude() != null) {
+            record.putDouble(position.getLongitude());
+        }
+        if (position.getAltitude() != null) {
+            record.putDouble(position.getAltitude());
+        }
+        if (position.getSpeed() != null) {
+            record.putDouble(position.getSpeed());
+        }
+        if (position.getCourse() != null) {
+            record.putDouble(position.getCourse());
+        }
+        if (address != null) {
+            record.putInt(address.length);
+            record.put(address);
+        }
+        if (position.getIndex() != null) {
+            record.putLong(position.getIndex());
+        }
+        if (position.getPower() != null) {
+            record.putDouble(position.getPower());
+        }
+        if (extendedInfo != null) {
+            record.putInt(extendedInfo.length);
+            record.put(extendedInfo);
+        }
+        return record.array();
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] data = new byte[record.getInt()];
+        record.get(data);
+        return new String(data, CHARSET);
+    }
+
+    private static Position decode(ByteBuffer record) {
+        Position position = new Position();
+        int flags = record.getInt();
+        position.setDeviceId(record.getLong());
+        if ((flags & HAS_ID) != 0) {
+            position.setId(record.getLong());
+        }
+        if ((flags & HAS_TIME) != 0) {
+            position.setTime(new Date(record.getLong()));
+        }
+        if ((flags & HAS_SERVER_TIME) != 0) {
+            position.setServerTime(new Date(record.getLong()));
+        }
+        if ((flags & HAS_VALID) != 0) {
+            position.setValid((flags & VALID) != 0);
+        }
+        if ((flags & HAS_LATITUDE) != 0) {
+            position.setLatitude(record.getDouble());
+        }
+        if ((flags & HAS_LONGITUDE) != 0) {
+            position.setLongitude(record.getDouble());
+        }
+        if ((flags & HAS_ALTITUDE) != 0) {
+            position.setAltitude(record.getDouble());
+        }
+        if ((flags & HAS_SPEED) != 0) {
+            position.setSpeed(record.getDouble());
+        }
+        if ((flags & HAS_COURSE) != 0) {
+            position.setCourse(record.getDouble());
+        }
+        if ((flags & HAS_ADDRESS) != 0) {
+            position.setAddress(readString(record));
+        }
+        if ((flags & HAS_INDEX) != 0) {
+            position.setIndex(record.getLong());
+        }
+        if ((flags & HAS_POWER) != 0) {
+            position.setPower(record.getDouble());
+        }
+        if ((flags & HAS_EXTENDED_INFO) != 0) {
+            position.setExtendedInfo(readString(record));
+        }
+        return position;
+    }
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.io.IOException;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.helper.Log;
+import org.traccar.helper.NamedParameterStatement;
+
+/**
+ * Write-behind position writer
+ *
+ * Positions are queued by the I/O threads and stored by a dedicated thread
+ * using JDBC batches.
+ *
+ * With optional spool, positions that fail to store or arrive while the
+ * queue is more than half full are written to disk and replayed once the
+ * database accepts writes again. While spool is not empty all new positions
+ * go through it as well to keep their order.
+ *
+ * Batch rejected because of its data is written again one position at a
+ * time. Positions with allocated id that are already stored (batch stored
+ * before crash, but not removed from spool) are accepted as written, other
+ * rejected positions are dropped, so one bad record can not stop writing.
+ */
+public class PositionWriter implements Runnable {
+
+    private final BlockingQueue<Position> queue;
+    private final PositionInserter positionInserter;
+    private final NamedParameterStatement queryUpdateLatestPosition;
+    private final LatestPositionUpdater latestPositionUpdater;
+    private final PositionSpool spool;
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final long statisticsInterval;
+    private final long retryInterval;
+    private final int spoolThreshold;
+
+    private Thread thread;
+    private volatile boolean running;
+    private boolean keysWarningLogged;
+    private long retryTime;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile long positionCount;
+    private volatile long batchCount;
+    private volatile long flushTime;
+    private volatile int lastBatchSize;
+    private volatile long lastFlushLatency;
+    private volatile long spooledCount;
+    private volatile long replayedCount;
+
+    /**
+     * @param spool disk spool for positions that can not be stored (optional)
+     * @param retryInterval delay in milliseconds before retrying spool replay after failure
+     */
+    public PositionWriter(
+            PositionInserter positionInserter, NamedParameterStatement queryUpdateLatestPosition,
+            LatestPositionUpdater latestPositionUpdater, int queueSize, int batchSize, long flushInterval, long statisticsInterval,
+            PositionSpool spool, long retryInterval) {
+        this.positionInserter = positionInserter;
+        this.queryUpdateLatestPosition = queryUpdateLatestPosition;
+        this.latestPositionUpdater = latestPositionUpdater;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.statisticsInterval = statisticsInterval;
+        this.spool = spool;
+        this.retryInterval = retryInterval;
+        queue = new ArrayBlockingQueue<Position>(queueSize);
+        spoolThreshold = queueSize / 2;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "position-writer");
+        thread.start();
+    }
+
+    /**
+     * Stop writer thread, queued positions are flushed or spooled first
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException error) {
+                Log.warning(error);
+            }
+        }
+    }
+
+    /**
+     * Queue position for writing, returns false if queue is full
+     */
+    public boolean write(Position position) {
+        if (queue.offer(position)) {
+            return true;
+        }
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    public long getPositionCount() {
+        return positionCount;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpooledCount() {
+        return spooledCount;
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    @Override
+    public void run() {
+        List<Position> batch = new ArrayList<Position>(batchSize);
+        long statisticsTime = System.currentTimeMillis();
+
+        while (running || !queue.isEmpty()) {
+            if (spool != null && !spool.isEmpty()) {
+                // New positions wait behind spooled ones
+                queue.drainTo(batch);
+                spool(batch);
+                batch.clear();
+                if (!replay() && running) {
+                    try {
+                        Thread.sleep(flushInterval);
+                    } catch (InterruptedException error) {
+                        Log.warning(error);
+                    }
+                }
+            } else {
+                try {
+                    collect(batch);
+                } catch (InterruptedException error) {
+                    Log.warning(error);
+                }
+
+                if (!batch.isEmpty()) {
+                    if (spool != null && queue.size() > spoolThreshold) {
+                        spool(batch);
+                    } else if (!flush(batch)) {
+                        if (spool != null) {
+                            spool(batch);
+                        } else {
+                            droppedCount.addAndGet(batch.size());
+                            Log.warning("Position spool is not enabled, " + batch.size() + " positions dropped");
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+
+            if (statisticsInterval > 0 && System.currentTimeMillis() - statisticsTime >= statisticsInterval) {
+                logStatistics();
+                statisticsTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Wait for the first position and then collect until batch is full or flush interval expires
+     */
+    private void collect(List<Position> batch) throws InterruptedException {
+        Position first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.currentTimeMillis() + flushInterval;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                Position next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+    }
+
+    private void spool(List<Position> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (spool.isEmpty()) {
+            Log.warning("Database is not keeping up, spooling positions to disk");
+        }
+        int appended = spool.append(batch);
+        spooledCount += appended;
+        if (appended < batch.size()) {
+            droppedCount.addAndGet(batch.size() - appended);
+            Log.warning("Position spool is full, " + (batch.size() - appended) + " positions dropped");
+        }
+    }
+
+    /**
+     * Store oldest spooled positions, returns false if nothing was stored
+     */
+    private boolean replay() {
+        if (!running || System.currentTimeMillis() < retryTime) {
+            return false;
+        }
+
+        List<Position> batch = new ArrayList<Position>(batchSize);
+        spool.read(batch, batchSize);
+        if (!flush(batch)) {
+            retryTime = System.currentTimeMillis() + retryInterval;
+            return false;
+        }
+
+        spool.commit(batch.size());
+        replayedCount += batch.size();
+        if (spool.isEmpty()) {
+            Log.info("Position spool replayed");
+        }
+        return true;
+    }
+
+    /**
+     * Store batch, returns false if positions were not inserted
+     */
+    private boolean flush(List<Position> batch) {
+        long startTime = System.currentTimeMillis();
+        List<Position> stored = batch;
+        List<Long> keys;
+        try {
+            // Keys are only usable if driver returns one per inserted row
+            keys = positionInserter.insert(batch);
+        } catch (SQLException error) {
+            if (!isDataError(error)) {
+                Log.warning("Failed to write " + batch.size() + " positions", error);
+                return false;
+            }
+            Log.warning("Batch of " + batch.size() + " positions rejected, writing positions separately", error);
+            stored = new ArrayList<Position>(batch);
+            keys = new ArrayList<Long>(batch.size());
+            try {
+                insertSeparately(stored, keys);
+            } catch (SQLException separateError) {
+                Log.warning("Failed to write " + batch.size() + " positions", separateError);
+                return false;
+            }
+        }
+
+        updateLatestPositions(stored, keys);
+
+        lastBatchSize = stored.size();
+        lastFlushLatency = System.currentTimeMillis() - startTime;
+        positionCount += stored.size();
+        batchCount += 1;
+        flushTime += lastFlushLatency;
+        return true;
+    }
+
+    /**
+     * Error caused by the written values rather than database availability
+     */
+    private static boolean isDataError(SQLException error) {
+        String state = error.getSQLState();
+        return error instanceof SQLIntegrityConstraintViolationException || error instanceof SQLDataException
+                || state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /**
+     * Unique key violation (standard state, MySQL and SQL Server codes)
+     */
+    private static boolean isDuplicateKey(SQLException error) {
+        return "23505".equals(error.getSQLState()) || error.getErrorCode() == 1062 || error.getErrorCode() == 2627;
+    }
+
+    /**
+     * Insert positions one by one, rejected positions are removed from the list
+     *
+     * @param keys filled with ids of stored positions, null values if not available
+     */
+    private void insertSeparately(List<Position> batch, List<Long> keys) throws SQLException {
+        Iterator<Position> iterator = batch.iterator();
+        while (iterator.hasNext()) {
+            Position position = iterator.next();
+            try {
+                keys.add(positionInserter.insert(position));
+            } catch (SQLException error) {
+                if (position.getId() != null && isDuplicateKey(error)) {
+                    keys.add(position.getId());
+                } else if (isDataError(error)) {
+                    iterator.remove();
+                    droppedCount.incrementAndGet();
+                    Log.warning("Position of device " + position.getDeviceId() + " rejected and dropped", error);
+                } else {
+                    throw error;
+                }
+            }
+        }
+    }
+
+    /**
+     * Update latest position pointers of stored batch
+     *
+     * Positions are already stored, so failure is only logged and batch is
+     * not written again.
+     */
+    private void updateLatestPositions(List<Position> batch, List<Long> keys) {
+        if (keys == null || keys.contains(null)) {
+            if (!keysWarningLogged) {
+                Log.warning("Database driver does not return batch keys, latest position is not updated");
+                keysWarningLogged = true;
+            }
+        } else if (latestPositionUpdater != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                Position position = batch.get(i);
+                position.setId(keys.get(i));
+                latestPositionUpdater.update(position.getDeviceId(), position.getId(), position.getTime());
+            }
+        } else if (queryUpdateLatestPosition != null) {
+            try {
+                NamedParameterStatement.Params params = queryUpdateLatestPosition.prepare();
+                try {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Position position = batch.get(i);
+                        position.setId(keys.get(i));
+                        params.setLong("device_id", position.getDeviceId());
+                        params.setLong("id", position.getId());
+                        params.setTimestamp("time", position.getTime());
+                        params.addBatch();
+                    }
+                    params.executeBatch();
+                } finally {
+                    params.close();
+                }
+            } catch (SQLException error) {
+                Log.warning("Failed to update latest positions of " + batch.size() + " stored positions", error);
+            }
+        }
+    }
+
+    private void logStatistics() {
+        long batches = batchCount;
+        Log.info("Position writer" +
+                " queue: " + getQueueSize() +
+                " written: " + positionCount +
+                " dropped: " + getDroppedCount() +
+                (spool != null ? " spooled: " + spool.getCount() : "") +
+                " batch: " + lastBatchSize +
+                " latency: " + lastFlushLatency + "ms" +
+                " average latency: " + (batches > 0 ? flushTime / batches : 0) + "ms");
+    }
+
+}
@@ -17,22 +17,17 @@ package org.traccar.protocol;
 
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
-import java.sql.ResultSet;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Properties;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.AdvancedConnection;
 import org.traccar.helper.Crc;
 import org.traccar.helper.Log;
-import org.traccar.helper.NamedParameterStatement;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -78,17 +73,9 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
 
     private void loadLastIndex() {
         try {
-            Properties p = getServerManager().getProperties();
-            if (p.contains("database.selectLastIndex")) {
-                AdvancedConnection connection = new AdvancedConnection(
-                        p.getProperty("database.url"), p.getProperty("database.user"), p.getProperty("database.password"));
-                NamedParameterStatement queryLastIndex = new NamedParameterStatement(connection, p.getProperty("database.selectLastIndex"));
-                queryLastIndex.prepare();
-                queryLastIndex.setLong("device_id", deviceId);
-                ResultSet result = queryLastIndex.executeQuery();
-                if (result.next()) {
-                    lastIndex = result.getLong(1);
-                }
+            Long index = getDataManager().getLastIndex(deviceId);
+            if (index != null) {
+                lastIndex = index;
             }
         } catch(Exception error) {
         }
@@ -142,11 +129,9 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
             buf.skipBytes(length);
             length = buf.readUnsignedShort();
             String imei = buf.readBytes(length).toString(Charset.defaultCharset());
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
+            if (identify(imei)) {
+                deviceId = getDeviceId();
                 loadLastIndex();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei + " (id - " + id + ")");
             }
         }
         
@@ -177,6 +162,7 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
                 if (type == MSG_TYPE_LOG_RECORDS) {
                     extendedInfo.set("archive", true);
                     lastIndex = buf.readUnsignedInt() + 1;
+                    position.setIndex(lastIndex);
                     extendedInfo.set("index", lastIndex);
 
                     subtype = buf.readUnsignedShort();
@@ -188,10 +174,7 @@ public class ApelProtocolDecoder extends BaseProtocolDecoder {
                 }
 
                 // Time
-                Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                time.clear();
-                time.setTimeInMillis(buf.readUnsignedInt() * 1000);
-                position.setTime(time.getTime());
+                position.setTime(new Date(buf.readUnsignedInt() * 1000));
 
                 // Latitude
                 position.setLatitude(buf.readInt() * 180.0 / 0x7FFFFFFF);
@@ -21,7 +21,6 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -125,12 +124,10 @@ public class AplicomProtocolDecoder extends BaseProtocolDecoder {
         // Create new position
         Position position = new Position();
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("aplicom");
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Event
         extendedInfo.set("event", buf.readUnsignedByte());
@@ -181,7 +178,8 @@ public class AplicomProtocolDecoder extends BaseProtocolDecoder {
 
         // Power
         if ((selector & 0x8000) != 0) {
-            extendedInfo.set("power", buf.readUnsignedShort() / 1000.0);
+            position.setPower(buf.readUnsignedShort() / 1000.0);
+            extendedInfo.set("power", position.getPower());
             extendedInfo.set("battery", buf.readUnsignedShort());
         }
         
@@ -25,7 +25,6 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -79,12 +78,10 @@ public class AtrackProtocolDecoder extends BaseProtocolDecoder {
         long deviceId;
         long rawId = buf.readLong();
         String id = String.valueOf(rawId);
-        try {
-            deviceId = getDataManager().getDeviceByImei(id).getId();
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + id);
+        if (!identify(id)) {
             return null;
         }
+        deviceId = getDeviceId();
         
         // Send acknowledgement
         sendResponse(channel, rawId, index);
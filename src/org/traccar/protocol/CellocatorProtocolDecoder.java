@@ -16,15 +16,13 @@
 package org.traccar.protocol;
 
 import java.nio.ByteOrder;
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -106,12 +104,10 @@ public class CellocatorProtocolDecoder extends BaseProtocolDecoder {
             ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("cellocator");
             
             // Device identifier
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(String.valueOf(deviceId)).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + deviceId);
+            if (!identify(String.valueOf(deviceId))) {
                 return null;
             }
+            position.setDeviceId(getDeviceId());
             
             buf.readUnsignedByte(); // hardware version
             buf.readUnsignedByte(); // software version
@@ -151,15 +147,14 @@ public class CellocatorProtocolDecoder extends BaseProtocolDecoder {
             position.setCourse(buf.readUnsignedShort() / Math.PI * 180.0 / 1000.0);
             
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.SECOND, buf.readUnsignedByte());
-            time.set(Calendar.MINUTE, buf.readUnsignedByte());
-            time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-            time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-            time.set(Calendar.MONTH, buf.readUnsignedByte() - 1);
-            time.set(Calendar.YEAR, buf.readUnsignedShort());
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setSecond(buf.readUnsignedByte());
+            time.setMinute(buf.readUnsignedByte());
+            time.setHour(buf.readUnsignedByte());
+            time.setDay(buf.readUnsignedByte());
+            time.setMonth(buf.readUnsignedByte());
+            time.setYear(buf.readUnsignedShort());
+            position.setTime(time.getDate());
 
             position.setExtendedInfo(extendedInfo.toString());
             return position;
@@ -16,8 +16,6 @@
 package org.traccar.protocol;
 
 import java.nio.charset.Charset;
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -26,6 +24,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
+import org.traccar.helper.DateBuilder;
 import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
@@ -98,20 +97,17 @@ public class EnforaProtocolDecoder extends BaseProtocolDecoder {
         Integer index = 1;
 
         // Get device by IMEI
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MILLISECOND, Integer.valueOf(parser.group(index++)) * 10);
+        DateBuilder time = new DateBuilder();
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
+        time.setMillis(Integer.valueOf(parser.group(index++)) * 10);
 
         // Validity
         position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -143,10 +139,10 @@ public class EnforaProtocolDecoder extends BaseProtocolDecoder {
         }
 
         // Date
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
 
         position.setExtendedInfo(extendedInfo.toString());
         return position;
@@ -16,15 +16,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -56,12 +54,10 @@ public class Ev603ProtocolDecoder extends BaseProtocolDecoder{
         // Detect device ID
         if (sentence.startsWith("!1,")) {
             String imei = sentence.substring(3);
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
+            if (!identify(imei)) {
                 return null;
             }
+            deviceId = getDeviceId();
         }
 
         else if (sentence.startsWith("!A,")) {
@@ -78,17 +74,16 @@ public class Ev603ProtocolDecoder extends BaseProtocolDecoder{
             Integer index = 1;
 
             // Date
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
+            DateBuilder time = new DateBuilder();
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setYear(2000 + Integer.valueOf(parser.group(index++)));
 
             // Time
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
 
             // Validity
             position.setValid(true);
@@ -109,10 +109,8 @@ public class GalileoProtocolDecoder extends BaseProtocolDecoder {
                 case TAG_IMEI:
                     String imei = buf.toString(buf.readerIndex(), 15, Charset.defaultCharset());
                     buf.skipBytes(imei.length());
-                    try {
-                        deviceId = getDataManager().getDeviceByImei(imei).getId();
-                    } catch(Exception error) {
-                        Log.warning("Unknown device - " + imei);
+                    if (identify(imei)) {
+                        deviceId = getDeviceId();
                     }
                     break;
 
@@ -140,7 +138,9 @@ public class GalileoProtocolDecoder extends BaseProtocolDecoder {
                     break;
                     
                 case TAG_POWER:
-                    extendedInfo.set("power", buf.readUnsignedShort());
+                    int power = buf.readUnsignedShort();
+                    position.setPower((double) power);
+                    extendedInfo.set("power", power);
                     break;
                     
                 case TAG_BATTERY:
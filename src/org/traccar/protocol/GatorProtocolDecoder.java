@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -69,22 +67,19 @@ public class GatorProtocolDecoder extends BaseProtocolDecoder {
             ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("gator");
 
             // Identification
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (identify(id)) {
+                position.setDeviceId(getDeviceId());
             }
             
             // Date and time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, 2000 + ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.MONTH, ChannelBufferTools.readHexInteger(buf, 2) - 1);
-            time.set(Calendar.DAY_OF_MONTH, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.HOUR_OF_DAY, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.MINUTE, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.SECOND, ChannelBufferTools.readHexInteger(buf, 2));
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(2000 + ChannelBufferTools.readHexInteger(buf, 2));
+            time.setMonth(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setDay(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setHour(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setMinute(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setSecond(ChannelBufferTools.readHexInteger(buf, 2));
+            position.setTime(time.getDate());
 
             // Location
             position.setLatitude(ChannelBufferTools.readCoordinate(buf));
@@ -108,7 +103,8 @@ public class GatorProtocolDecoder extends BaseProtocolDecoder {
             extendedInfo.set("oil", buf.readUnsignedShort() / 10.0);
 
             // Power
-            extendedInfo.set("power", buf.readUnsignedByte() + buf.readUnsignedByte() / 100.0);
+            position.setPower(buf.readUnsignedByte() + buf.readUnsignedByte() / 100.0);
+            extendedInfo.set("power", position.getPower());
 
             // Milage
             extendedInfo.set("milage", buf.readUnsignedInt());
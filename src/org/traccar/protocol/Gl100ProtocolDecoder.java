@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -80,12 +78,10 @@ public class Gl100ProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by IMEI
         String imei = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Validity
         position.setValid(Integer.valueOf(parser.group(index++)) == 0);
@@ -98,17 +94,16 @@ public class Gl100ProtocolDecoder extends BaseProtocolDecoder {
         position.setLatitude(Double.valueOf(parser.group(index++)));
 
         // Date
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.YEAR, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
+        DateBuilder time = new DateBuilder();
+        time.setYear(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setDay(Integer.valueOf(parser.group(index++)));
 
         // Time
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
 
         position.setExtendedInfo(extendedInfo.toString());
         return position;
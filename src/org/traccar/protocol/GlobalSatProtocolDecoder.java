@@ -15,16 +15,14 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
 import java.util.Properties;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -90,12 +88,10 @@ public class GlobalSatProtocolDecoder extends BaseProtocolDecoder {
 
             switch(format.charAt(formatIndex)) {
                 case 'S':
-                    try {
-                        position.setDeviceId(getDataManager().getDeviceByImei(value).getId());
-                    } catch(Exception error) {
-                        Log.warning("Unknown device - " + value);
+                    if (!identify(value)) {
                         return null;
                     }
+                    position.setDeviceId(getDeviceId());
                     break;
                 case 'A':
                     if (value.isEmpty()) {
@@ -105,16 +101,15 @@ public class GlobalSatProtocolDecoder extends BaseProtocolDecoder {
                     }
                     break;
                 case 'B':
-                    Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                    time.clear();
-                    time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(value.substring(0, 2)));
-                    time.set(Calendar.MONTH, Integer.valueOf(value.substring(2, 4)) - 1);
-                    time.set(Calendar.YEAR, 2000 + Integer.valueOf(value.substring(4)));
+                    DateBuilder time = new DateBuilder();
+                    time.setDay(Integer.valueOf(value.substring(0, 2)));
+                    time.setMonth(Integer.valueOf(value.substring(2, 4)));
+                    time.setYear(2000 + Integer.valueOf(value.substring(4)));
                     value = values[++valueIndex];
-                    time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(value.substring(0, 2)));
-                    time.set(Calendar.MINUTE, Integer.valueOf(value.substring(2, 4)));
-                    time.set(Calendar.SECOND, Integer.valueOf(value.substring(4)));
-                    position.setTime(time.getTime());
+                    time.setHour(Integer.valueOf(value.substring(0, 2)));
+                    time.setMinute(Integer.valueOf(value.substring(2, 4)));
+                    time.setSecond(Integer.valueOf(value.substring(4)));
+                    position.setTime(time.getDate());
                     break;
                 case 'C':
                     valueIndex += 1;
@@ -209,26 +204,23 @@ public class GlobalSatProtocolDecoder extends BaseProtocolDecoder {
 
         // Identification
         String imei = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Validity
         position.setValid(parser.group(index++).compareTo("1") != 0);
         
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        DateBuilder time = new DateBuilder();
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
 
         // Longitude
         String hemisphere = parser.group(index++);
@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -93,22 +91,19 @@ public class Gps103ProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by IMEI
         String imei = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Alarm message
         extendedInfo.set("alarm", parser.group(index++));
         
         // Date
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
+        DateBuilder time = new DateBuilder();
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setDay(Integer.valueOf(parser.group(index++)));
         
         int localHours = Integer.valueOf(parser.group(index++));
         int localMinutes = Integer.valueOf(parser.group(index++));
@@ -117,10 +112,10 @@ public class Gps103ProtocolDecoder extends BaseProtocolDecoder {
         int utcMinutes = Integer.valueOf(parser.group(index++));
 
         // Time
-        time.set(Calendar.HOUR_OF_DAY, localHours);
-        time.set(Calendar.MINUTE, localMinutes);
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MILLISECOND, Integer.valueOf(parser.group(index++)));
+        time.setHour(localHours);
+        time.setMinute(localMinutes);
+        time.setSecond(Integer.valueOf(parser.group(index++)));
+        time.setMillis(Integer.valueOf(parser.group(index++)));
         
         // Timezone calculation
         int deltaMinutes = (localHours - utcHours) * 60 + localMinutes - utcMinutes;
@@ -129,8 +124,8 @@ public class Gps103ProtocolDecoder extends BaseProtocolDecoder {
         } else if (deltaMinutes > 12 * 60) {
             deltaMinutes -= 24 * 60;
         }
-        time.add(Calendar.MINUTE, -deltaMinutes);
-        position.setTime(time.getTime());
+        time.addMillis(-deltaMinutes * 60 * 1000);
+        position.setTime(time.getDate());
 
         // Validity
         position.setValid(parser.group(index++).compareTo("A") == 0);
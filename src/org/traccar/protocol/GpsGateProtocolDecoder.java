@@ -15,8 +15,6 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
@@ -24,7 +22,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.Crc;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -73,11 +71,12 @@ public class GpsGateProtocolDecoder extends BaseProtocolDecoder {
                 int endIndex = sentence.indexOf(',', beginIndex);
                 if (endIndex != -1) {
                     String imei = sentence.substring(beginIndex, endIndex);
-                    try {
-                        deviceId = getDataManager().getDeviceByImei(imei).getId();
-                        send(channel, "$FRSES," + channel.getId());
-                    } catch(Exception error) {
-                        Log.warning("Unknown device - " + imei);
+                    if (identify(imei)) {
+                        deviceId = getDeviceId();
+                        if (channel != null) {
+                            send(channel, "$FRSES," + channel.getId());
+                        }
+                    } else {
                         send(channel, "$FRERR,AuthError,Unknown device");
                     }
                 } else {
@@ -110,11 +109,10 @@ public class GpsGateProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+            DateBuilder time = new DateBuilder();
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
             index += 1; // Skip milliseconds
 
             // Validity
@@ -149,10 +147,10 @@ public class GpsGateProtocolDecoder extends BaseProtocolDecoder {
             }
 
             // Date
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
 
             // Altitude
             position.setAltitude(0.0);
@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -78,25 +76,23 @@ public class Gt02ProtocolDecoder extends BaseProtocolDecoder {
             // Create new position
             Position position = new Position();
             ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("gt02");
+            position.setIndex((long) index);
             extendedInfo.set("index", index);
 
             // Get device id
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
+            if (identify(imei)) {
+                position.setDeviceId(getDeviceId());
             }
 
             // Date and time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, 2000 + buf.readUnsignedByte());
-            time.set(Calendar.MONTH, buf.readUnsignedByte() - 1);
-            time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-            time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-            time.set(Calendar.MINUTE, buf.readUnsignedByte());
-            time.set(Calendar.SECOND, buf.readUnsignedByte());
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(2000 + buf.readUnsignedByte());
+            time.setMonth(buf.readUnsignedByte());
+            time.setDay(buf.readUnsignedByte());
+            time.setHour(buf.readUnsignedByte());
+            time.setMinute(buf.readUnsignedByte());
+            time.setSecond(buf.readUnsignedByte());
+            position.setTime(time.getDate());
 
             // Latitude
             double latitude = buf.readUnsignedInt() / (60.0 * 30000.0);
@@ -15,8 +15,6 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
@@ -24,14 +22,14 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.Crc;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
 public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
 
     private Long deviceId;
-    private final TimeZone timeZone = TimeZone.getTimeZone("UTC");
+    private int timeZoneOffset;
 
     public Gt06ProtocolDecoder(ServerManager serverManager) {
         super(serverManager);
@@ -105,15 +103,13 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
                 if ((extensionBits & 0x8) != 0) {
                     offset = -offset;
                 }
-                timeZone.setRawOffset(offset);
+                timeZoneOffset = offset;
             }
             
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
+            if (identify(imei)) {
+                deviceId = getDeviceId();
                 buf.skipBytes(dataLength - 8);
                 sendResponse(channel, type, buf.readUnsignedShort());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
             }
             
         }
@@ -130,15 +126,15 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
             ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("gt06");
 
             // Date and time
-            Calendar time = Calendar.getInstance(timeZone);
-            time.clear();
-            time.set(Calendar.YEAR, 2000 + buf.readUnsignedByte());
-            time.set(Calendar.MONTH, buf.readUnsignedByte() - 1);
-            time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-            time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-            time.set(Calendar.MINUTE, buf.readUnsignedByte());
-            time.set(Calendar.SECOND, buf.readUnsignedByte());
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(2000 + buf.readUnsignedByte());
+            time.setMonth(buf.readUnsignedByte());
+            time.setDay(buf.readUnsignedByte());
+            time.setHour(buf.readUnsignedByte());
+            time.setMinute(buf.readUnsignedByte());
+            time.setSecond(buf.readUnsignedByte());
+            time.addMillis(-timeZoneOffset);
+            position.setTime(time.getDate());
 
             // GPS length and Satellites count
             int gpsLength = buf.readUnsignedByte();
@@ -190,7 +186,9 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
                     // TODO parse other flags
 
                     // Voltage
-                    extendedInfo.set("power", buf.readUnsignedByte());
+                    int power = buf.readUnsignedByte();
+                    position.setPower((double) power);
+                    extendedInfo.set("power", power);
 
                     // GSM signal
                     extendedInfo.set("gsm", buf.readUnsignedByte());
@@ -202,6 +200,7 @@ public class Gt06ProtocolDecoder extends BaseProtocolDecoder {
                 buf.skipBytes(buf.readableBytes() - 6);
             }
             int index = buf.readUnsignedShort();
+            position.setIndex((long) index);
             extendedInfo.set("index", index);
             sendResponse(channel, type, index);
 
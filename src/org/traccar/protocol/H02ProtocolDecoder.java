@@ -16,8 +16,6 @@
 package org.traccar.protocol;
 
 import java.nio.charset.Charset;
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -26,7 +24,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -65,23 +63,20 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
 
         // Identification
         String id = ChannelBufferTools.readHexString(buf, 10);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + id);
+        if (!identify(id)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
         
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.MINUTE, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.SECOND, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.DAY_OF_MONTH, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.MONTH, ChannelBufferTools.readHexInteger(buf, 2) - 1);
-        time.set(Calendar.YEAR, 2000 + ChannelBufferTools.readHexInteger(buf, 2));
-        position.setTime(time.getTime());
+        DateBuilder time = new DateBuilder();
+        time.setHour(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setMinute(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setSecond(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setDay(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setMonth(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setYear(2000 + ChannelBufferTools.readHexInteger(buf, 2));
+        position.setTime(time.getDate());
         
         // Location
         double latitude = readCoordinate(buf, false);
@@ -139,19 +134,16 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by IMEI
         String imei = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+        DateBuilder time = new DateBuilder();
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
 
         // Validity
         position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -183,10 +175,10 @@ public class H02ProtocolDecoder extends BaseProtocolDecoder {
         }
 
         // Date
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
         
         // Status
         extendedInfo.set("status", parser.group(index++));
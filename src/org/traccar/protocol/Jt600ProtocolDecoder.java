@@ -16,8 +16,6 @@
 package org.traccar.protocol;
 
 import java.nio.charset.Charset;
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -26,7 +24,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -45,10 +43,9 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by identifier
         String id = Long.valueOf(ChannelBufferTools.readHexString(buf, 10)).toString();
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + id);
+        if (identify(id)) {
+            position.setDeviceId(getDeviceId());
+        } else {
             //return null;
         }
 
@@ -59,15 +56,14 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
         buf.readBytes(2); // length
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.DAY_OF_MONTH, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.MONTH, ChannelBufferTools.readHexInteger(buf, 2) - 1);
-        time.set(Calendar.YEAR, 2000 + ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.HOUR_OF_DAY, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.MINUTE, ChannelBufferTools.readHexInteger(buf, 2));
-        time.set(Calendar.SECOND, ChannelBufferTools.readHexInteger(buf, 2));
-        position.setTime(time.getTime());
+        DateBuilder time = new DateBuilder();
+        time.setDay(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setMonth(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setYear(2000 + ChannelBufferTools.readHexInteger(buf, 2));
+        time.setHour(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setMinute(ChannelBufferTools.readHexInteger(buf, 2));
+        time.setSecond(ChannelBufferTools.readHexInteger(buf, 2));
+        position.setTime(time.getDate());
 
         // Coordinates
         int temp = ChannelBufferTools.readHexInteger(buf, 8);
@@ -98,7 +94,9 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
             extendedInfo.set("satellites", buf.readUnsignedByte());
 
             // Power
-            extendedInfo.set("power", buf.readUnsignedByte());
+            int power = buf.readUnsignedByte();
+            position.setPower((double) power);
+            extendedInfo.set("power", power);
 
             buf.readByte(); // other flags and sensors
 
@@ -164,12 +162,10 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by identifier
         String id = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + id);
+        if (!identify(id)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Longitude
         Double longitude = Double.valueOf(parser.group(index++));
@@ -187,15 +183,14 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
         position.setValid(parser.group(index++).compareTo("A") == 0);
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        DateBuilder time = new DateBuilder();
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
 
         // Speed
         position.setSpeed(Double.valueOf(parser.group(index++)));
@@ -207,7 +202,8 @@ public class Jt600ProtocolDecoder extends BaseProtocolDecoder {
         position.setAltitude(0.0);
 
         // Power
-        extendedInfo.set("power", Double.valueOf(parser.group(index++)));
+        position.setPower(Double.valueOf(parser.group(index++)));
+        extendedInfo.set("power", position.getPower());
 
         position.setExtendedInfo(extendedInfo.toString());
         return position;
@@ -15,8 +15,6 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
@@ -25,7 +23,7 @@ import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
 import org.traccar.helper.Crc;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -77,22 +75,19 @@ public class KhdProtocolDecoder extends BaseProtocolDecoder {
 
             // Device identification
             String id = readSerialNumber(buf);
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (identify(id)) {
+                position.setDeviceId(getDeviceId());
             }
             
             // Date and time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, 2000 + ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.MONTH, ChannelBufferTools.readHexInteger(buf, 2) - 1);
-            time.set(Calendar.DAY_OF_MONTH, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.HOUR_OF_DAY, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.MINUTE, ChannelBufferTools.readHexInteger(buf, 2));
-            time.set(Calendar.SECOND, ChannelBufferTools.readHexInteger(buf, 2));
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(2000 + ChannelBufferTools.readHexInteger(buf, 2));
+            time.setMonth(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setDay(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setHour(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setMinute(ChannelBufferTools.readHexInteger(buf, 2));
+            time.setSecond(ChannelBufferTools.readHexInteger(buf, 2));
+            position.setTime(time.getDate());
 
             // Location
             position.setLatitude(ChannelBufferTools.readCoordinate(buf));
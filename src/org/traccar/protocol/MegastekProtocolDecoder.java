@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -85,11 +83,10 @@ public class MegastekProtocolDecoder extends BaseProtocolDecoder {
         int index = 1;
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+        DateBuilder time = new DateBuilder();
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
 
         // Validity
         position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -123,10 +120,10 @@ public class MegastekProtocolDecoder extends BaseProtocolDecoder {
         }
 
         // Date
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());        
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());        
 
         return true;
     }
@@ -197,16 +194,10 @@ public class MegastekProtocolDecoder extends BaseProtocolDecoder {
 
             // IMEI
             String imei = parser.group(index++);
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-            } catch(Exception firstError) {
-                try {
-                    position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-                } catch(Exception secondError) {
-                    Log.warning("Unknown device - " + imei + " (id - " + id + ")");
-                    return null;
-                }
+            if (!identify(imei, id)) {
+                return null;
             }
+            position.setDeviceId(getDeviceId());
 
             // Satellites
             extendedInfo.set("satellites", parser.group(index++));
@@ -215,7 +206,8 @@ public class MegastekProtocolDecoder extends BaseProtocolDecoder {
             position.setAltitude(Double.valueOf(parser.group(index++)));
 
             // Battery
-            extendedInfo.set("power", Double.valueOf(parser.group(index++)));
+            position.setPower(Double.valueOf(parser.group(index++)));
+            extendedInfo.set("power", position.getPower());
 
             // Charger
             String charger = parser.group(index++);
@@ -240,12 +232,10 @@ public class MegastekProtocolDecoder extends BaseProtocolDecoder {
             // Altitude
             position.setAltitude(0.0);
             
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (!identify(id)) {
                 return null;
             }
+            position.setDeviceId(getDeviceId());
 
             extendedInfo.set("mcc", parser.group(index++));
             extendedInfo.set("mnc", parser.group(index++));
@@ -17,8 +17,6 @@ package org.traccar.protocol;
 
 import java.nio.charset.Charset;
 import java.text.ParseException;
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.buffer.ChannelBuffer;
@@ -28,7 +26,7 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.Crc;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -136,12 +134,10 @@ public class MeiligaoProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by id
         String imei = getImei(buf);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Parse message
         String sentence = buf.toString(offset, buf.readableBytes() - offset - 4, Charset.defaultCharset());
@@ -153,14 +149,13 @@ public class MeiligaoProtocolDecoder extends BaseProtocolDecoder {
         Integer index = 1;
 
         // Time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+        DateBuilder time = new DateBuilder();
+        time.setHour(Integer.valueOf(parser.group(index++)));
+        time.setMinute(Integer.valueOf(parser.group(index++)));
+        time.setSecond(Integer.valueOf(parser.group(index++)));
         String mseconds = parser.group(index++);
         if (mseconds != null) {
-            time.set(Calendar.MILLISECOND, Integer.valueOf(mseconds));
+            time.setMillis(Integer.valueOf(mseconds));
         }
 
         // Validity
@@ -195,10 +190,10 @@ public class MeiligaoProtocolDecoder extends BaseProtocolDecoder {
         }
 
         // Date
-        time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-        time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-        time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-        position.setTime(time.getTime());
+        time.setDay(Integer.valueOf(parser.group(index++)));
+        time.setMonth(Integer.valueOf(parser.group(index++)));
+        time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+        position.setTime(time.getDate());
 
         // Dilution of precision
         extendedInfo.set("hdop", parser.group(index++));
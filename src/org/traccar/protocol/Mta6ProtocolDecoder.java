@@ -16,11 +16,9 @@
 package org.traccar.protocol;
 
 import java.nio.charset.Charset;
-import java.util.Calendar;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
@@ -33,7 +31,7 @@ import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.ChannelBufferTools;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -106,12 +104,11 @@ public class Mta6ProtocolDecoder extends BaseProtocolDecoder {
                 weekNumber = buf.readUnsignedShort();
             }
 
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, 1980);
-            time.set(Calendar.MONTH, 0);
-            time.set(Calendar.DAY_OF_MONTH, 6);
-            long offset = time.getTimeInMillis();
+            DateBuilder time = new DateBuilder();
+            time.setYear(1980);
+            time.setMonth(1);
+            time.setDay(6);
+            long offset = time.getMillis();
 
             return new Date(offset + weekNumber * 7 * 24 * 60 * 60 * 1000 + weekTime);
         }
@@ -189,7 +186,9 @@ public class Mta6ProtocolDecoder extends BaseProtocolDecoder {
 
                 if (checkBit(flags, 7)) {
                     extendedInfo.set("battery", buf.getUnsignedByte(buf.readerIndex()) >> 2);
-                    extendedInfo.set("power", buf.readUnsignedShort() & 0x03ff);
+                    int power = buf.readUnsignedShort() & 0x03ff;
+                    position.setPower((double) power);
+                    extendedInfo.set("power", power);
                     buf.readByte(); // microcontroller temperature
 
                     extendedInfo.set("gsm", (buf.getUnsignedByte(buf.readerIndex()) >> 4) & 0x07);
@@ -269,7 +268,9 @@ public class Mta6ProtocolDecoder extends BaseProtocolDecoder {
 
         if (checkBit(flags, 5)) {
             extendedInfo.set("battery", buf.getUnsignedByte(buf.readerIndex()) >> 2);
-            extendedInfo.set("power", buf.readUnsignedShort() & 0x03ff);
+            int power = buf.readUnsignedShort() & 0x03ff;
+            position.setPower((double) power);
+            extendedInfo.set("power", power);
             buf.readByte(); // microcontroller temperature
 
             extendedInfo.set("gsm", buf.getUnsignedByte(buf.readerIndex()) >> 5);
@@ -301,12 +302,10 @@ public class Mta6ProtocolDecoder extends BaseProtocolDecoder {
         int index = ChannelBufferTools.find(buf, buf.readerIndex(), length, "&");
         String uniqueId = buf.toString(buf.readerIndex(), index - buf.readerIndex(), Charset.defaultCharset());
         long deviceId;
-        try {
-            deviceId = getDataManager().getDeviceByImei(uniqueId).getId();
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + uniqueId);
+        if (!identify(uniqueId)) {
             return null;
         }
+        deviceId = getDeviceId();
         buf.skipBytes(uniqueId.length());
         buf.skipBytes("&bin=".length());
         
@@ -24,7 +24,6 @@ import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
 import org.traccar.helper.Crc;
-import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -83,6 +82,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
         position.setValid(true);
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
         
@@ -120,6 +120,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
         position.setValid(true);
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
         
@@ -158,6 +159,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         Position position = new Position();
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
         position.setTime(convertTimestamp(timestamp));
@@ -182,6 +184,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         Position position = new Position();
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
         position.setTime(convertTimestamp(timestamp));
@@ -209,6 +212,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         Position position = new Position();
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
 
@@ -250,6 +254,7 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         Position position = new Position();
         ExtendedInfoFormatter extendedInfo = new ExtendedInfoFormatter("navigil");
 
+        position.setIndex((long) sequenceNumber);
         extendedInfo.set("index", sequenceNumber);
         position.setDeviceId(deviceId);
         position.setTime(convertTimestamp(timestamp));
@@ -295,12 +300,10 @@ public class NavigilProtocolDecoder extends BaseProtocolDecoder {
         // Get device identifier
         long deviceId;
         String navigilDeviceId = String.valueOf(buf.readUnsignedInt());
-        try {
-            deviceId = getDataManager().getDeviceByImei(navigilDeviceId).getId();
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + navigilDeviceId);
+        if (!identify(navigilDeviceId)) {
             return null;
         }
+        deviceId = getDeviceId();
 
         long timestamp = buf.readUnsignedInt(); // message timestamp
 
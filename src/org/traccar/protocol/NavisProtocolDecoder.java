@@ -17,17 +17,15 @@ package org.traccar.protocol;
 
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
-import java.util.Calendar;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -98,21 +96,21 @@ public class NavisProtocolDecoder extends BaseProtocolDecoder {
         extendedInfo.set("format", format);
 
         long index = buf.readUnsignedInt();
+        position.setIndex(index);
         extendedInfo.set("index", index);
 
         // Event type
         extendedInfo.set("event", buf.readUnsignedShort());
 
         // Event time
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-        time.set(Calendar.MINUTE, buf.readUnsignedByte());
-        time.set(Calendar.SECOND, buf.readUnsignedByte());
-        time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-        time.set(Calendar.MONTH, buf.readUnsignedByte());
-        time.set(Calendar.YEAR, 2000 + buf.readUnsignedByte());
-        extendedInfo.set("time", time.getTimeInMillis());
+        DateBuilder time = new DateBuilder();
+        time.setHour(buf.readUnsignedByte());
+        time.setMinute(buf.readUnsignedByte());
+        time.setSecond(buf.readUnsignedByte());
+        time.setDay(buf.readUnsignedByte());
+        time.setMonth(buf.readUnsignedByte() + 1);
+        time.setYear(2000 + buf.readUnsignedByte());
+        extendedInfo.set("time", time.getMillis());
 
         // Alarm status
         extendedInfo.set("alarm", buf.readUnsignedByte());
@@ -137,7 +135,8 @@ public class NavisProtocolDecoder extends BaseProtocolDecoder {
             extendedInfo.set("input", buf.readUnsignedByte());
         }
 
-        extendedInfo.set("power", buf.readUnsignedShort() / 1000.0);
+        position.setPower(buf.readUnsignedShort() / 1000.0);
+        extendedInfo.set("power", position.getPower());
 
         // Battery power
         extendedInfo.set("battery", buf.readUnsignedShort());
@@ -164,14 +163,14 @@ public class NavisProtocolDecoder extends BaseProtocolDecoder {
             position.setValid((locationStatus & 0x02) == 0x02);
 
             // Location time
-            time.clear();
-            time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-            time.set(Calendar.MINUTE, buf.readUnsignedByte());
-            time.set(Calendar.SECOND, buf.readUnsignedByte());
-            time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-            time.set(Calendar.MONTH, buf.readUnsignedByte());
-            time.set(Calendar.YEAR, 2000 + buf.readUnsignedByte());
-            position.setTime(time.getTime());
+            time = new DateBuilder();
+            time.setHour(buf.readUnsignedByte());
+            time.setMinute(buf.readUnsignedByte());
+            time.setSecond(buf.readUnsignedByte());
+            time.setDay(buf.readUnsignedByte());
+            time.setMonth(buf.readUnsignedByte() + 1);
+            time.setYear(2000 + buf.readUnsignedByte());
+            position.setTime(time.getDate());
 
             // Location data
             position.setLatitude(buf.readFloat() / Math.PI * 180);
@@ -260,11 +259,9 @@ public class NavisProtocolDecoder extends BaseProtocolDecoder {
     private Object processHandshake(Channel channel, ChannelBuffer buf) {
         buf.readByte(); // semicolon symbol
         imei = buf.toString(Charset.defaultCharset());
-        try {
-            databaseDeviceId = getDataManager().getDeviceByImei(imei).getId();
+        if (identify(imei)) {
+            databaseDeviceId = getDeviceId();
             sendReply(channel, ChannelBuffers.copiedBuffer(ByteOrder.LITTLE_ENDIAN, "*<S", charset));
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
         }
         return null;
     }
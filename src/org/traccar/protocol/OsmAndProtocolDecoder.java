@@ -30,7 +30,6 @@ import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.jboss.netty.handler.codec.http.QueryStringDecoder;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -60,12 +59,10 @@ public class OsmAndProtocolDecoder extends BaseProtocolDecoder {
 
         // Identification
         String id = params.get(params.containsKey("id") ? "id" : "deviceid").get(0);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + id);
+        if (!identify(id)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
 
         // Decode position
         position.setValid(true);
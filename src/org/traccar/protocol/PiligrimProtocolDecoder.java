@@ -17,10 +17,8 @@ package org.traccar.protocol;
 
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
-import java.util.Calendar;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
@@ -33,7 +31,7 @@ import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.jboss.netty.handler.codec.http.QueryStringDecoder;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -85,12 +83,10 @@ public class PiligrimProtocolDecoder extends BaseProtocolDecoder {
             long deviceId;
             QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
             String imei = decoder.getParameters().get("imei").get(0);
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
+            if (!identify(imei)) {
                 return null;
             }
+            deviceId = getDeviceId();
 
             List<Position> positions = new LinkedList<Position>();
             ChannelBuffer buf = request.getContent();
@@ -108,15 +104,14 @@ public class PiligrimProtocolDecoder extends BaseProtocolDecoder {
                     position.setDeviceId(deviceId);
                     
                     // Time
-                    Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                    time.clear();
-                    time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-                    time.set(Calendar.MONTH, (buf.getByte(buf.readerIndex()) & 0x0f) - 1);
-                    time.set(Calendar.YEAR, 2010 + (buf.readUnsignedByte() >> 4));
-                    time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-                    time.set(Calendar.MINUTE, buf.readUnsignedByte());
-                    time.set(Calendar.SECOND, buf.readUnsignedByte());
-                    position.setTime(time.getTime());
+                    DateBuilder time = new DateBuilder();
+                    time.setDay(buf.readUnsignedByte());
+                    time.setMonth(buf.getByte(buf.readerIndex()) & 0x0f);
+                    time.setYear(2010 + (buf.readUnsignedByte() >> 4));
+                    time.setHour(buf.readUnsignedByte());
+                    time.setMinute(buf.readUnsignedByte());
+                    time.setSecond(buf.readUnsignedByte());
+                    position.setTime(time.getDate());
                     
                     // Latitude
                     double latitude = buf.readUnsignedByte();
@@ -158,7 +153,8 @@ public class PiligrimProtocolDecoder extends BaseProtocolDecoder {
                         // External power
                         double power = buf.readUnsignedByte();
                         power += buf.readUnsignedByte() << 8;
-                        extendedInfo.set("power", power / 100);
+                        position.setPower(power / 100);
+                        extendedInfo.set("power", position.getPower());
 
                         // Battery
                         double battery = buf.readUnsignedByte();
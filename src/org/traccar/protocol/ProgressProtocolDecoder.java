@@ -17,21 +17,15 @@ package org.traccar.protocol;
 
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
-import java.sql.ResultSet;
-import java.util.Calendar;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Properties;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.AdvancedConnection;
-import org.traccar.helper.Log;
-import org.traccar.helper.NamedParameterStatement;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -68,17 +62,9 @@ public class ProgressProtocolDecoder extends BaseProtocolDecoder {
      */
     private void loadLastIndex() {
         try {
-            Properties p = getServerManager().getProperties();
-            if (p.contains("database.selectLastIndex")) {
-                AdvancedConnection connection = new AdvancedConnection(
-                        p.getProperty("database.url"), p.getProperty("database.user"), p.getProperty("database.password"));
-                NamedParameterStatement queryLastIndex = new NamedParameterStatement(connection, p.getProperty("database.selectLastIndex"));
-                queryLastIndex.prepare();
-                queryLastIndex.setLong("device_id", deviceId);
-                ResultSet result = queryLastIndex.executeQuery();
-                if (result.next()) {
-                    lastIndex = result.getLong(1);
-                }
+            Long index = getDataManager().getLastIndex(deviceId);
+            if (index != null) {
+                lastIndex = index;
             }
         } catch(Exception error) {
         }
@@ -121,11 +107,9 @@ public class ProgressProtocolDecoder extends BaseProtocolDecoder {
             buf.skipBytes(length);
             length = buf.readUnsignedShort();
             String imei = buf.readBytes(length).toString(Charset.defaultCharset());
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
+            if (identify(imei)) {
+                deviceId = getDeviceId();
                 loadLastIndex();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei + " (id - " + id + ")");
             }
         }
 
@@ -155,16 +139,14 @@ public class ProgressProtocolDecoder extends BaseProtocolDecoder {
                         break; // workaround for device bug
                     }
                     lastIndex = buf.readUnsignedInt();
+                    position.setIndex(lastIndex);
                     extendedInfo.set("index", lastIndex);
                 } else {
                     newIndex = buf.readUnsignedInt();
                 }
 
                 // Time
-                Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                time.clear();
-                time.setTimeInMillis(buf.readUnsignedInt() * 1000);
-                position.setTime(time.getTime());
+                position.setTime(new Date(buf.readUnsignedInt() * 1000));
 
                 // Latitude
                 position.setLatitude(((double) buf.readInt()) / 0x7FFFFFFF * 180.0);
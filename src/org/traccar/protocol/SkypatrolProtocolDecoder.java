@@ -16,13 +16,12 @@
 package org.traccar.protocol;
 
 import java.nio.charset.Charset;
-import java.util.Calendar;
-import java.util.TimeZone;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
+import org.traccar.helper.DateBuilder;
 import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
@@ -95,12 +94,10 @@ public class SkypatrolProtocolDecoder extends BaseProtocolDecoder {
                 Log.warning("No device id field");
                 return null;
             }
-            try {
-                position.setDeviceId(getDataManager().getDeviceByImei(id).getId());
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (!identify(id)) {
                 return null;
             }
+            position.setDeviceId(getDeviceId());
 
             // IO data
             if (checkBit(mask, 3)) {
@@ -122,14 +119,13 @@ public class SkypatrolProtocolDecoder extends BaseProtocolDecoder {
                 buf.readUnsignedByte();
             }
 
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
+            DateBuilder time = new DateBuilder();
 
             // Date
             if (checkBit(mask, 8)) {
-                time.set(Calendar.DAY_OF_MONTH, buf.readUnsignedByte());
-                time.set(Calendar.MONTH, buf.readUnsignedByte() - 1);
-                time.set(Calendar.YEAR, 2000 + buf.readUnsignedByte());
+                time.setDay(buf.readUnsignedByte());
+                time.setMonth(buf.readUnsignedByte());
+                time.setYear(2000 + buf.readUnsignedByte());
             }
 
             // GPS status
@@ -159,12 +155,12 @@ public class SkypatrolProtocolDecoder extends BaseProtocolDecoder {
 
             // Time
             if (checkBit(mask, 14)) {
-                time.set(Calendar.HOUR_OF_DAY, buf.readUnsignedByte());
-                time.set(Calendar.MINUTE, buf.readUnsignedByte());
-                time.set(Calendar.SECOND, buf.readUnsignedByte());
+                time.setHour(buf.readUnsignedByte());
+                time.setMinute(buf.readUnsignedByte());
+                time.setSecond(buf.readUnsignedByte());
             }
 
-            position.setTime(time.getTime());
+            position.setTime(time.getDate());
 
             // Altitude
             if (checkBit(mask, 15)) {
@@ -198,7 +194,8 @@ public class SkypatrolProtocolDecoder extends BaseProtocolDecoder {
 
             // Battery level
             if (checkBit(mask, 24)) {
-                extendedInfo.set("power", buf.readUnsignedShort() / 1000.0);
+                position.setPower(buf.readUnsignedShort() / 1000.0);
+                extendedInfo.set("power", position.getPower());
             }
 
             // GPS overspeed
@@ -213,7 +210,9 @@ public class SkypatrolProtocolDecoder extends BaseProtocolDecoder {
 
             // Sequence number
             if (checkBit(mask, 28)) {
-                extendedInfo.set("index", buf.readUnsignedShort());
+                int index = buf.readUnsignedShort();
+                position.setIndex((long) index);
+                extendedInfo.set("index", index);
             }
 
             // Extended info
@@ -15,16 +15,14 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -52,26 +50,21 @@ public class SyrusProtocolDecoder extends BaseProtocolDecoder {
             ".*");
 
     private Date getTime(long week, long day, long seconds) {
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.clear();
-        time.set(Calendar.YEAR, 1980);
-        time.set(Calendar.MONTH, 0);
-        time.set(Calendar.DAY_OF_MONTH, 6);
+        DateBuilder time = new DateBuilder();
+        time.setYear(1980);
+        time.setMonth(1);
+        time.setDay(6);
 
-        long millis = time.getTimeInMillis();
+        long millis = time.getMillis();
         millis += ((week * 7 + day) * 24 * 60 * 60 + seconds) * 1000;
 
         return new Date(millis);
     }
     
     private Date getTime(long seconds) {
-        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-        time.set(Calendar.HOUR_OF_DAY, 0);
-        time.set(Calendar.MINUTE, 0);
-        time.set(Calendar.SECOND, 0);
-        time.set(Calendar.MILLISECOND, 0);
+        DateBuilder time = new DateBuilder().setCurrentDate();
         
-        long millis = time.getTimeInMillis() + seconds * 1000;
+        long millis = time.getMillis() + seconds * 1000;
         
         long diff = new Date().getTime() - millis;
         
@@ -109,12 +102,10 @@ public class SyrusProtocolDecoder extends BaseProtocolDecoder {
 
             // Find device in database
             String id = sentence.substring(beginIndex, endIndex);
-            try {
-                deviceId = getDataManager().getDeviceByImei(id).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (!identify(id)) {
                 return null;
             }
+            deviceId = getDeviceId();
             
             // Send response
             if (sendResponse && channel != null) {
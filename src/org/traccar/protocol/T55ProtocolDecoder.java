@@ -15,15 +15,14 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
+import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -91,39 +90,31 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
         // Identification
         if (sentence.startsWith("$PGID")) {
             String imei = sentence.substring(6, sentence.length() - 3);
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
+            if (identify(imei)) {
+                deviceId = getDeviceId();
             }
         }
 
         // Identification
         else if (sentence.startsWith("$PCPTI")) {
             String id = sentence.substring(7, sentence.indexOf(",", 7));
-            try {
-                deviceId = getDataManager().getDeviceByImei(id).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (identify(id)) {
+                deviceId = getDeviceId();
             }
         }
 
         // Identification
         else if (sentence.startsWith("IMEI")) {
             String id = sentence.substring(5, sentence.length());
-            try {
-                deviceId = getDataManager().getDeviceByImei(id).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + id);
+            if (identify(id)) {
+                deviceId = getDeviceId();
             }
         }
         
         // Identification
         else if (Character.isDigit(sentence.charAt(0)) & sentence.length() == 15) {
-            try {
-                deviceId = getDataManager().getDeviceByImei(sentence).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + sentence);
+            if (identify(sentence)) {
+                deviceId = getDeviceId();
             }
         }
 
@@ -149,11 +140,10 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+            DateBuilder time = new DateBuilder();
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
 
             // Validity
             position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -187,10 +177,10 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
             }
 
             // Date
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
 
             // Altitude
             position.setAltitude(0.0);
@@ -216,12 +206,12 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MILLISECOND, 0);
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder().setCurrentDate();
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
+            time.setMillis(0);
+            position.setTime(time.getDate());
 
             // Validity
             position.setValid(true);
@@ -268,7 +258,7 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            position.setTime(Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTime());
+            position.setTime(new Date());
 
             // Validity
             position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -325,15 +315,14 @@ public class T55ProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
 
             // Validity
             position.setValid(parser.group(index++).compareTo("A") == 0);
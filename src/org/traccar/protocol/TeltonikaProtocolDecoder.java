@@ -25,7 +25,6 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -42,11 +41,9 @@ public class TeltonikaProtocolDecoder extends BaseProtocolDecoder {
 
         int length = buf.readUnsignedShort();
         String imei = buf.toString(buf.readerIndex(), length, Charset.defaultCharset());
-        try {
-            deviceId = getDataManager().getDeviceByImei(imei).getId();
+        if (identify(imei)) {
+            deviceId = getDeviceId();
             result = true;
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
         }
         
         if (channel != null) {
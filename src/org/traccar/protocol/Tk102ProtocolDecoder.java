@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -57,12 +55,10 @@ public class Tk102ProtocolDecoder extends BaseProtocolDecoder {
         // Login
         if (sentence.startsWith("[!")) {
             String imei = sentence.substring(14, 14 + 15);
-            try {
-                deviceId = getDataManager().getDeviceByImei(imei).getId();
-            } catch(Exception error) {
-                Log.warning("Unknown device - " + imei);
+            if (!identify(imei)) {
                 return null;
             }
+            deviceId = getDeviceId();
 
             if (channel != null) {
                 channel.write("[”0000000001" + sentence.substring(13) + "]");
@@ -91,11 +87,10 @@ public class Tk102ProtocolDecoder extends BaseProtocolDecoder {
             Integer index = 1;
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+            DateBuilder time = new DateBuilder();
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
 
             // Validity
             position.setValid(parser.group(index++).compareTo("A") == 0 ? true : false);
@@ -119,10 +114,10 @@ public class Tk102ProtocolDecoder extends BaseProtocolDecoder {
             position.setCourse(0.0);
 
             // Date
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
 
             // Altitude
             position.setAltitude(0.0);
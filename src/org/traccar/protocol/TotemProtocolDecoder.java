@@ -15,15 +15,13 @@
  */
 package org.traccar.protocol;
 
-import java.util.Calendar;
-import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.traccar.BaseProtocolDecoder;
 import org.traccar.ServerManager;
-import org.traccar.helper.Log;
+import org.traccar.helper.DateBuilder;
 import org.traccar.model.ExtendedInfoFormatter;
 import org.traccar.model.Position;
 
@@ -165,12 +163,10 @@ public class TotemProtocolDecoder extends BaseProtocolDecoder {
 
         // Get device by IMEI
         String imei = parser.group(index++);
-        try {
-            position.setDeviceId(getDataManager().getDeviceByImei(imei).getId());
-        } catch(Exception error) {
-            Log.warning("Unknown device - " + imei);
+        if (!identify(imei)) {
             return null;
         }
+        position.setDeviceId(getDeviceId());
         
         // Alarm type
         extendedInfo.set("alarm", parser.group(index++));
@@ -178,18 +174,17 @@ public class TotemProtocolDecoder extends BaseProtocolDecoder {
         if (format == MessageFormat.first || format == MessageFormat.second) {
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
+            DateBuilder time = new DateBuilder();
             int year = 0;
             if (format == MessageFormat.second) {
-                time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-                time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
+                time.setDay(Integer.valueOf(parser.group(index++)));
+                time.setMonth(Integer.valueOf(parser.group(index++)));
                 year = Integer.valueOf(parser.group(index++));
-                time.set(Calendar.YEAR, 2000 + year);
+                time.setYear(2000 + year);
             }
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
 
             // Validity
             position.setValid(parser.group(index++).compareTo("A") == 0);
@@ -224,15 +219,15 @@ public class TotemProtocolDecoder extends BaseProtocolDecoder {
 
             // Date
             if (format == MessageFormat.first) {
-                time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-                time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
+                time.setDay(Integer.valueOf(parser.group(index++)));
+                time.setMonth(Integer.valueOf(parser.group(index++)));
                 year = Integer.valueOf(parser.group(index++));
-                time.set(Calendar.YEAR, 2000 + year);
+                time.setYear(2000 + year);
             }
             if (year == 0) {
                 return null; // ignore invalid data
             }
-            position.setTime(time.getTime());
+            position.setTime(time.getDate());
 
             // Altitude
             position.setAltitude(0.0);
@@ -245,7 +240,8 @@ public class TotemProtocolDecoder extends BaseProtocolDecoder {
 
             // Power
             extendedInfo.set("battery", parser.group(index++));
-            extendedInfo.set("power", Double.valueOf(parser.group(index++)));
+            position.setPower(Double.valueOf(parser.group(index++)));
+            extendedInfo.set("power", position.getPower());
 
             // ADC
             extendedInfo.set("adc", parser.group(index++));
@@ -262,22 +258,22 @@ public class TotemProtocolDecoder extends BaseProtocolDecoder {
         } else if (format == MessageFormat.third) {
 
             // Time
-            Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-            time.clear();
-            time.set(Calendar.YEAR, 2000 + Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MONTH, Integer.valueOf(parser.group(index++)) - 1);
-            time.set(Calendar.DAY_OF_MONTH, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.HOUR_OF_DAY, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.MINUTE, Integer.valueOf(parser.group(index++)));
-            time.set(Calendar.SECOND, Integer.valueOf(parser.group(index++)));
-            position.setTime(time.getTime());
+            DateBuilder time = new DateBuilder();
+            time.setYear(2000 + Integer.valueOf(parser.group(index++)));
+            time.setMonth(Integer.valueOf(parser.group(index++)));
+            time.setDay(Integer.valueOf(parser.group(index++)));
+            time.setHour(Integer.valueOf(parser.group(index++)));
+            time.setMinute(Integer.valueOf(parser.group(index++)));
+            time.setSecond(Integer.valueOf(parser.group(index++)));
+            position.setTime(time.getDate());
             
             // IO Status
             extendedInfo.set("io", parser.group(index++));
 
             // Power
             extendedInfo.set("battery", Double.valueOf(parser.group(index++)) / 10);
-            extendedInfo.set("power", Double.valueOf(parser.group(index++)));
+            position.setPower(Double.valueOf(parser.group(index++)));
+            extendedInfo.set("power", position.getPower());
 
             // ADC
             extendedInfo.set("adc1", parser.group(index++));
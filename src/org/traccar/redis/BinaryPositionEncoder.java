@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.traccar.model.Position;
+
+/**
+ * Compact binary position encoder
+ *
+ * Big-endian message layout:
+ * <pre>
+ * version   1 byte
+ * flags     1 byte
+ * device    8 bytes
+ * time      8 bytes, epoch milliseconds (if HAS_TIME)
+ * latitude  4 bytes, degrees * 10^7 (if HAS_LOCATION)
+ * longitude 4 bytes, degrees * 10^7 (if HAS_LOCATION)
+ * speed     4 bytes, knots * 100 (if HAS_SPEED)
+ * course    2 bytes, unsigned degrees * 100 (if HAS_COURSE)
+ * address   2 bytes unsigned length and UTF-8 text (if HAS_ADDRESS)
+ * </pre>
+ * Company is not included, it is implied by channel name. Messages are
+ * decoded by {@link BinaryPositionMessage}.
+ */
+public class BinaryPositionEncoder implements PositionEncoder {
+
+    public static final int VERSION = 1;
+
+    public static final int HAS_TIME = 1;
+    public static final int HAS_LOCATION = 1 << 1;
+    public static final int HAS_SPEED = 1 << 2;
+    public static final int HAS_COURSE = 1 << 3;
+    public static final int HAS_VALID = 1 << 4;
+    public static final int VALID = 1 << 5;
+    public static final int HAS_ADDRESS = 1 << 6;
+
+    public static final double COORDINATE_SCALE = 10000000.0;
+    public static final double SCALE = 100.0;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final boolean speed;
+    private final boolean course;
+    private final boolean valid;
+    private final boolean address;
+
+    /**
+     * Optional fields are written if enabled and present in position
+     */
+    public BinaryPositionEncoder(boolean speed, boolean course, boolean valid, boolean address) {
+        this.speed = speed;
+        this.course = course;
+        this.valid = valid;
+        this.address = address;
+    }
+
+    /**
+     * Create encoder with optional fields from comma separated list
+     */
+    public static BinaryPositionEncoder create(String fields) {
+        String list = "," + ((fields != null) ? fields.replace(" ", "") : "") + ",";
+        return new BinaryPositionEncoder(
+                list.contains(",speed,"), list.contains(",course,"), list.contains(",valid,"), list.contains(",address,"));
+    }
+
+    @Override
+    public byte[] encode(Position position, String company) {
+        int flags = 0;
+        int length = 1 + 1 + 8;
+        if (position.getTime() != null) {
+            flags |= HAS_TIME;
+            length += 8;
+        }
+        if (position.getLatitude() != null && position.getLongitude() != null) {
+            flags |= HAS_LOCATION;
+            length += 4 + 4;
+        }
+        if (speed && position.getSpeed() != null) {
+            flags |= HAS_SPEED;
+            length += 4;
+        }
+        if (course && position.getCourse() != null) {
+            flags |= HAS_COURSE;
+            length += 2;
+        }
+        if (valid && position.getValid() != null) {
+            flags |= HAS_VALID;
+            if (position.getValid()) {
+                flags |= VALID;
+            }
+        }
+        byte[] text = null;
+        if (address && position.getAddress() != null) {
+            text = position.getAddress().getBytes(CHARSET);
+            if (text.length > 0xffff) {
+                text = null;
+            } else {
+                flags |= HAS_ADDRESS;
+                length += 2 + text.length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) flags);
+        buffer.putLong(position.getDeviceId());
+        if ((flags & HAS_TIME) != 0) {
+            buffer.putLong(position.getTime().getTime());
+        }
+        if ((flags & HAS_LOCATION) != 0) {
+            buffer.putInt((int) Math.round(position.getLatitude() * COORDINATE_SCALE));
+            buffer.putInt((int) Math.round(position.getLongitude() * COORDINATE_SCALE));
+        }
+        if ((flags & HAS_SPEED) != 0) {
+            buffer.putInt((int) Math.round(position.getSpeed() * SCALE));
+        }
+        if ((flags & HAS_COURSE) != 0) {
+            double value = position.getCourse() % 360;
+            buffer.putShort((short) Math.round(((value < 0) ? value + 360 : value) * SCALE));
+        }
+        if (text != null) {
+            buffer.putShort((short) text.length);
+            buffer.put(text);
+        }
+        return buffer.array();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Decoder of binary live position messages for subscribers
+ *
+ * Depends only on standard library, so it can be copied into consumer
+ * code. Absent optional fields are returned as null.
+ */
+public class BinaryPositionMessage {
+
+    private static final int HAS_TIME = 1;
+    private static final int HAS_LOCATION = 1 << 1;
+    private static final int HAS_SPEED = 1 << 2;
+    private static final int HAS_COURSE = 1 << 3;
+    private static final int HAS_VALID = 1 << 4;
+    private static final int VALID = 1 << 5;
+    private static final int HAS_ADDRESS = 1 << 6;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private long deviceId;
+    private Long time;
+    private Double latitude;
+    private Double longitude;
+    private Double speed;
+    private Double course;
+    private Boolean valid;
+    private String address;
+
+    /**
+     * Decode message, throws IllegalArgumentException for unsupported version
+     */
+    public static BinaryPositionMessage decode(byte[] message) {
+        ByteBuffer buffer = ByteBuffer.wrap(message);
+        int version = buffer.get() & 0xff;
+        if (version != 1) {
+            throw new IllegalArgumentException("Unsupported message version " + version);
+        }
+        int flags = buffer.get() & 0xff;
+
+        BinaryPositionMessage result = new BinaryPositionMessage();
+        result.deviceId = buffer.getLong();
+        if ((flags & HAS_TIME) != 0) {
+            result.time = buffer.getLong();
+        }
+        if ((flags & HAS_LOCATION) != 0) {
+            result.latitude = buffer.getInt() / 10000000.0;
+            result.longitude = buffer.getInt() / 10000000.0;
+        }
+        if ((flags & HAS_SPEED) != 0) {
+            result.speed = buffer.getInt() / 100.0;
+        }
+        if ((flags & HAS_COURSE) != 0) {
+            result.course = (buffer.getShort() & 0xffff) / 100.0;
+        }
+        if ((flags & HAS_VALID) != 0) {
+            result.valid = (flags & VALID) != 0;
+        }
+        if ((flags & HAS_ADDRESS) != 0) {
+            byte[] text = new byte[buffer.getShort() & 0xffff];
+            buffer.get(text);
+            result.address = new String(text, CHARSET);
+        }
+        return result;
+    }
+
+    public long getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * Fix time in epoch milliseconds
+     */
+    public Long getTime() {
+        return time;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Speed in knots
+     */
+    public Double getSpeed() {
+        return speed;
+    }
+
+    public Double getCourse() {
+        return course;
+    }
+
+    public Boolean getValid() {
+        return valid;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+}
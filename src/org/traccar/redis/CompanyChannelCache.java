@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.helper.Log;
+import org.traccar.model.DataManager;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Device to company channel cache
+ */
+public class CompanyChannelCache {
+
+    private static final String CHANNEL_PREFIX = "tracking_";
+    private static final String LATEST_PREFIX = "latest_";
+    private static final String HISTORY_PREFIX = "history_";
+    public static final String GEO_PREFIX = "geo_";
+    public static final String GEO_TIME_PREFIX = "geotime_";
+
+    private final DataManager dataManager;
+    private final long timeout;
+
+    private final ConcurrentMap<Long, Entry> cache = new ConcurrentHashMap<Long, Entry>();
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Resolved company channel and Redis keys of the device
+     */
+    public static class Entry {
+
+        private final String company;
+        private final byte[] channel;
+        private final byte[] latestKey;
+        private final byte[] device;
+        private final byte[] historyKey;
+        private final byte[] geoKey;
+        private final byte[] geoTimeKey;
+        private final long expirationTime;
+
+        private Entry(long deviceId, String company, long expirationTime) {
+            this.company = company;
+            if (company != null) {
+                channel = SafeEncoder.encode(CHANNEL_PREFIX + company);
+                latestKey = SafeEncoder.encode(LATEST_PREFIX + company);
+                device = SafeEncoder.encode(String.valueOf(deviceId));
+                historyKey = SafeEncoder.encode(HISTORY_PREFIX + deviceId);
+                geoKey = SafeEncoder.encode(GEO_PREFIX + company);
+                geoTimeKey = SafeEncoder.encode(GEO_TIME_PREFIX + company);
+            } else {
+                channel = null;
+                latestKey = null;
+                device = null;
+                historyKey = null;
+                geoKey = null;
+                geoTimeKey = null;
+            }
+            this.expirationTime = expirationTime;
+        }
+
+        /**
+         * Normalized company name (null if device has no company)
+         */
+        public String getCompany() {
+            return company;
+        }
+
+        /**
+         * Publish channel name in UTF-8 (null if device has no company)
+         */
+        public byte[] getChannel() {
+            return channel;
+        }
+
+        /**
+         * Company latest position hash key
+         */
+        public byte[] getLatestKey() {
+            return latestKey;
+        }
+
+        /**
+         * Device id as latest position hash field
+         */
+        public byte[] getDevice() {
+            return device;
+        }
+
+        /**
+         * Device position history list key
+         */
+        public byte[] getHistoryKey() {
+            return historyKey;
+        }
+
+        /**
+         * Company geohash sorted set key
+         */
+        public byte[] getGeoKey() {
+            return geoKey;
+        }
+
+        /**
+         * Company sorted set of device update times
+         */
+        public byte[] getGeoTimeKey() {
+            return geoTimeKey;
+        }
+
+    }
+
+    /**
+     * @param timeout entry lifetime in milliseconds
+     */
+    public CompanyChannelCache(DataManager dataManager, long timeout) {
+        this.dataManager = dataManager;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Convert company name to the form used in channel names
+     */
+    public static String normalize(String company) {
+        if (company == null) {
+            return null;
+        }
+        return company.replace(" ", "-").toLowerCase();
+    }
+
+    public Entry get(Long deviceId) throws Exception {
+        long now = System.currentTimeMillis();
+
+        Entry entry = cache.get(deviceId);
+        if (entry != null && entry.expirationTime > now) {
+            hitCount.incrementAndGet();
+            return entry;
+        }
+
+        missCount.incrementAndGet();
+        entry = new Entry(deviceId, normalize(dataManager.getCompanyNameByDevice(deviceId)), now + timeout);
+        cache.put(deviceId, entry);
+        return entry;
+    }
+
+    /**
+     * Load channels for all devices at once
+     *
+     * Expiration is spread over the second half of timeout, so preloaded
+     * entries are not reloaded from database all at the same moment.
+     */
+    public void preload() throws Exception {
+        Map<Long, String> companies = dataManager.getCompanyNames();
+        if (companies != null) {
+            long now = System.currentTimeMillis();
+            long spread = timeout / 2;
+            Random random = new Random();
+            for (Map.Entry<Long, String> company : companies.entrySet()) {
+                long expirationTime = now + timeout - (spread > 0 ? (long) (random.nextDouble() * spread) : 0);
+                cache.put(company.getKey(), new Entry(company.getKey(), normalize(company.getValue()), expirationTime));
+            }
+            Log.info("Company channels loaded for " + companies.size() + " devices");
+        }
+    }
+
+    public void invalidate(Long deviceId) {
+        cache.remove(deviceId);
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+}
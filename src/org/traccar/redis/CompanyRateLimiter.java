@@ -0,0 +1,81 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-company message rate cap
+ *
+ * Token bucket per company refilled at configured rate, burst is limited
+ * to one second worth of messages.
+ */
+public class CompanyRateLimiter {
+
+    private final double rate;
+
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+
+    private final AtomicLong limitedCount = new AtomicLong();
+
+    private static class Bucket {
+
+        private double tokens;
+        private long time;
+
+    }
+
+    /**
+     * @param rate maximum messages per second for each company
+     */
+    public CompanyRateLimiter(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Take one message from company budget, returns false if message should be dropped
+     */
+    public boolean acquire(String company) {
+        Bucket bucket = buckets.get(company);
+        if (bucket == null) {
+            Bucket newBucket = new Bucket();
+            newBucket.tokens = rate;
+            newBucket.time = System.nanoTime();
+            bucket = buckets.putIfAbsent(company, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        synchronized (bucket) {
+            long now = System.nanoTime();
+            bucket.tokens = Math.min(rate, bucket.tokens + (now - bucket.time) * rate / 1000000000.0);
+            bucket.time = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return true;
+            }
+        }
+        limitedCount.incrementAndGet();
+        return false;
+    }
+
+    public long getLimitedCount() {
+        return limitedCount.get();
+    }
+
+}
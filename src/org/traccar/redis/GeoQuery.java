@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.traccar.helper.GeoHash;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Tuple;
+
+/**
+ * Area queries over company geohash index
+ *
+ * Area is covered by geohash cells, devices in cell score ranges are read
+ * and then filtered exactly by decoded location.
+ */
+public class GeoQuery {
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+
+    /**
+     * Device found by query
+     */
+    public static class Result {
+
+        private final long deviceId;
+        private final double latitude;
+        private final double longitude;
+
+        private Result(long deviceId, double latitude, double longitude) {
+            this.deviceId = deviceId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public long getDeviceId() {
+            return deviceId;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+    }
+
+    private static String getKey(String company) {
+        return CompanyChannelCache.GEO_PREFIX + CompanyChannelCache.normalize(company);
+    }
+
+    private static void find(
+            Jedis jedis, String company, double minLat, double minLon, double maxLat, double maxLon, List<Result> results,
+            double latitude, double longitude, double radius) {
+        String key = getKey(company);
+        for (long[] range : GeoHash.cover(minLat, minLon, maxLat, maxLon)) {
+            for (Tuple tuple : jedis.zrangeByScoreWithScores(key, String.valueOf(range[0]), "(" + range[1])) {
+                double[] location = GeoHash.decode((long) tuple.getScore());
+                boolean match;
+                if (radius >= 0) {
+                    match = GeoHash.distance(latitude, longitude, location[0], location[1]) <= radius;
+                } else {
+                    match = location[0] >= minLat && location[0] <= maxLat && ((minLon <= maxLon)
+                            ? location[1] >= minLon && location[1] <= maxLon
+                            : location[1] >= minLon || location[1] <= maxLon);
+                }
+                if (match) {
+                    results.add(new Result(Long.parseLong(tuple.getElement()), location[0], location[1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Find devices inside bounding box, minimum longitude is greater than maximum if box crosses 180th meridian
+     */
+    public static List<Result> box(Jedis jedis, String company, double minLat, double minLon, double maxLat, double maxLon) {
+        List<Result> results = new ArrayList<Result>();
+        find(jedis, company, minLat, minLon, maxLat, maxLon, results, 0, 0, -1);
+        return results;
+    }
+
+    /**
+     * Find devices within radius in meters from given point
+     */
+    public static List<Result> radius(Jedis jedis, String company, double latitude, double longitude, double radius) {
+        double dLat = radius / METERS_PER_DEGREE;
+        double minLat = Math.max(latitude - dLat, -90);
+        double maxLat = Math.min(latitude + dLat, 90);
+
+        double minLon = -180;
+        double maxLon = 180;
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        if (minLat > -90 && maxLat < 90 && dLat / cos < 180) {
+            double dLon = dLat / cos;
+            minLon = longitude - dLon;
+            maxLon = longitude + dLon;
+            if (minLon < -180) {
+                minLon += 360;
+            }
+            if (maxLon > 180) {
+                maxLon -= 360;
+            }
+        }
+
+        List<Result> results = new ArrayList<Result>();
+        find(jedis, company, minLat, minLon, maxLat, maxLon, results, latitude, longitude, radius);
+        return results;
+    }
+
+}
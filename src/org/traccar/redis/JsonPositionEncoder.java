@@ -0,0 +1,285 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.Arrays;
+import org.traccar.model.Position;
+
+/**
+ * JSON position encoder
+ *
+ * Message is written as UTF-8 straight into per-thread buffer, numbers are
+ * formatted without intermediate strings. Only the final message array is
+ * allocated. Coordinates are written with 7 decimal places, other values
+ * with 2.
+ */
+public class JsonPositionEncoder implements PositionEncoder {
+
+    private static final int COORDINATE_DECIMALS = 7;
+    private static final int DECIMALS = 2;
+
+    private static final long[] SCALES = {1, 10, 100, 1000, 10000, 100000, 1000000, 10000000};
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final boolean speed;
+    private final boolean course;
+    private final boolean valid;
+    private final boolean address;
+
+    private final ThreadLocal<Writer> writer = new ThreadLocal<Writer>() {
+        @Override
+        protected Writer initialValue() {
+            return new Writer();
+        }
+    };
+
+    /**
+     * Growable byte buffer with JSON value writers
+     */
+    static class Writer {
+
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        public void reset() {
+            size = 0;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        public void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        /**
+         * Write ASCII text as is
+         */
+        public void writeAscii(String value) {
+            int length = value.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                buffer[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        public void writeLong(long value) {
+            if (value == Long.MIN_VALUE) {
+                writeAscii("-9223372036854775808");
+                return;
+            }
+            ensure(20);
+            if (value < 0) {
+                buffer[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                buffer[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte b = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = b;
+            }
+        }
+
+        /**
+         * Write number rounded to given decimal places with trailing zeros removed
+         */
+        public void writeDouble(double value, int decimals) {
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                writeAscii("null");
+                return;
+            }
+            long scale = SCALES[decimals];
+            if (Math.abs(value) >= (double) (Long.MAX_VALUE / scale)) {
+                writeAscii(Double.toString(value));
+                return;
+            }
+            long scaled = Math.round(value * scale);
+            if (scaled < 0) {
+                writeByte('-');
+                scaled = -scaled;
+            }
+            writeLong(scaled / scale);
+            long fraction = scaled % scale;
+            if (fraction != 0) {
+                while (fraction % 10 == 0) {
+                    fraction /= 10;
+                    decimals -= 1;
+                }
+                ensure(decimals + 1);
+                buffer[size++] = '.';
+                for (int i = decimals - 1; i >= 0; i--) {
+                    buffer[size + i] = (byte) ('0' + fraction % 10);
+                    fraction /= 10;
+                }
+                size += decimals;
+            }
+        }
+
+        /**
+         * Write quoted string with escaping, non-ASCII characters are encoded as UTF-8
+         */
+        public void writeString(String value) {
+            int length = value.length();
+            ensure(length + 2);
+            buffer[size++] = '"';
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    ensure(2 + length - i);
+                    buffer[size++] = '\\';
+                    buffer[size++] = (byte) c;
+                } else if (c < 0x20) {
+                    ensure(6 + length - i);
+                    buffer[size++] = '\\';
+                    buffer[size++] = 'u';
+                    buffer[size++] = '0';
+                    buffer[size++] = '0';
+                    buffer[size++] = HEX[c >> 4];
+                    buffer[size++] = HEX[c & 0xf];
+                } else if (c < 0x80) {
+                    buffer[size++] = (byte) c;
+                } else {
+                    ensure(4 + length - i);
+                    int codePoint = c;
+                    if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    } else if (Character.isSurrogate(c)) {
+                        codePoint = '?';
+                    }
+                    if (codePoint < 0x80) {
+                        buffer[size++] = (byte) codePoint;
+                    } else if (codePoint < 0x800) {
+                        buffer[size++] = (byte) (0xc0 | codePoint >> 6);
+                        buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+                    } else if (codePoint < 0x10000) {
+                        buffer[size++] = (byte) (0xe0 | codePoint >> 12);
+                        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                        buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+                    } else {
+                        buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+                        buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                        buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                        buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+                    }
+                }
+            }
+            ensure(1);
+            buffer[size++] = '"';
+        }
+
+    }
+
+    /**
+     * Encoder with device, time, coordinates and company only
+     */
+    public JsonPositionEncoder() {
+        this(false, false, false, false);
+    }
+
+    /**
+     * Optional fields are written if enabled and present in position
+     */
+    public JsonPositionEncoder(boolean speed, boolean course, boolean valid, boolean address) {
+        this.speed = speed;
+        this.course = course;
+        this.valid = valid;
+        this.address = address;
+    }
+
+    /**
+     * Create encoder with optional fields from comma separated list
+     */
+    public static JsonPositionEncoder create(String fields) {
+        String list = "," + ((fields != null) ? fields.replace(" ", "") : "") + ",";
+        return new JsonPositionEncoder(
+                list.contains(",speed,"), list.contains(",course,"), list.contains(",valid,"), list.contains(",address,"));
+    }
+
+    private static void writeKey(Writer writer, String key) {
+        writer.writeByte(',');
+        writer.writeByte('"');
+        writer.writeAscii(key);
+        writer.writeByte('"');
+        writer.writeByte(':');
+    }
+
+    private static void writeNumber(Writer writer, Double value, int decimals) {
+        if (value != null) {
+            writer.writeDouble(value, decimals);
+        } else {
+            writer.writeAscii("null");
+        }
+    }
+
+    @Override
+    public byte[] encode(Position position, String company) {
+        Writer writer = this.writer.get();
+        writer.reset();
+
+        writer.writeAscii("{\"device\":");
+        writer.writeLong(position.getDeviceId());
+        writeKey(writer, "time");
+        if (position.getTime() != null) {
+            writer.writeLong(position.getTime().getTime());
+        } else {
+            writer.writeAscii("null");
+        }
+        writeKey(writer, "lat");
+        writeNumber(writer, position.getLatitude(), COORDINATE_DECIMALS);
+        writeKey(writer, "lon");
+        writeNumber(writer, position.getLongitude(), COORDINATE_DECIMALS);
+        if (speed && position.getSpeed() != null) {
+            writeKey(writer, "speed");
+            writer.writeDouble(position.getSpeed(), DECIMALS);
+        }
+        if (course && position.getCourse() != null) {
+            writeKey(writer, "course");
+            writer.writeDouble(position.getCourse(), DECIMALS);
+        }
+        if (valid && position.getValid() != null) {
+            writeKey(writer, "valid");
+            writer.writeAscii(position.getValid() ? "true" : "false");
+        }
+        if (address && position.getAddress() != null) {
+            writeKey(writer, "address");
+            writer.writeString(position.getAddress());
+        }
+        writeKey(writer, "company");
+        if (company != null) {
+            writer.writeString(company);
+        } else {
+            writer.writeAscii("null");
+        }
+        writer.writeByte('}');
+
+        return writer.toByteArray();
+    }
+
+}
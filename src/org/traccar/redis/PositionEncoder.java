@@ -0,0 +1,32 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import org.traccar.model.Position;
+
+/**
+ * Live position message encoder
+ */
+public interface PositionEncoder {
+
+    /**
+     * Encode position into new message, called concurrently from several threads
+     *
+     * @param company normalized company name
+     */
+    byte[] encode(Position position, String company);
+
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.helper.Log;
+import org.traccar.model.Position;
+import org.traccar.model.PositionSpool;
+
+/**
+ * Position publisher
+ *
+ * Without queue positions are published on the calling thread. With queue
+ * they are published by a dedicated thread in pipelined batches, so I/O
+ * threads never wait for Redis. Channel lookup and encoding are done by the
+ * publishing thread as well.
+ *
+ * When queue is full, overflow policy decides whether the oldest queued
+ * position is dropped, the caller blocks or the position is spilled to disk
+ * spool. Positions to spill are collected in memory and written to spool
+ * by the publishing thread once per loop, so I/O threads never wait for
+ * disk. Spilled positions are published in between live batches while
+ * Redis is available, so they may arrive on the channel after newer ones.
+ * Latest position and geo index ignore such positions (see
+ * {@link RedisPublisher}).
+ */
+public class PositionPublisher implements Runnable {
+
+    public enum Overflow {
+        DROP_OLDEST, BLOCK, SPILL;
+
+        public static Overflow parse(String value) {
+            if ("block".equalsIgnoreCase(value)) {
+                return BLOCK;
+            } else if ("spill".equalsIgnoreCase(value)) {
+                return SPILL;
+            }
+            return DROP_OLDEST;
+        }
+    }
+
+    /**
+     * Queued position with enqueue time for lag measurement
+     */
+    private static class Entry {
+
+        private final Position position;
+        private final long time;
+
+        private Entry(Position position, long time) {
+            this.position = position;
+            this.time = time;
+        }
+
+    }
+
+    private static final long REPLAY_RETRY_INTERVAL = 1000;
+
+    private final RedisShards redisShards;
+    private final CompanyChannelCache companyChannelCache;
+    private final PositionEncoder encoder;
+
+    private final BlockingQueue<Entry> queue;
+    private final Overflow overflow;
+    private final PositionSpool spool;
+    private final int batchSize;
+
+    /**
+     * Overflow waiting to be spilled, limited to queue size
+     */
+    private final ConcurrentLinkedQueue<Position> spillQueue = new ConcurrentLinkedQueue<Position>();
+    private final AtomicInteger spillQueueSize = new AtomicInteger();
+    private final int spillQueueLimit;
+    private final long flushInterval;
+    private final long statisticsInterval;
+
+    private CompanyRateLimiter rateLimiter;
+
+    private Thread thread;
+    private volatile boolean running;
+    private long replayTime;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private volatile long publishedCount;
+    private volatile long batchCount;
+    private volatile long replayedCount;
+    private volatile long lastLag;
+    private volatile long maxLag;
+    private volatile long throughput;
+
+    /**
+     * Create publisher without queue
+     */
+    public PositionPublisher(RedisShards redisShards, CompanyChannelCache companyChannelCache, PositionEncoder encoder) {
+        this(redisShards, companyChannelCache, encoder, 0, Overflow.DROP_OLDEST, null, 0, 0, 0);
+    }
+
+    /**
+     * @param queueSize maximum number of queued positions, 0 to publish on calling thread
+     * @param spool disk spool for spill overflow policy
+     * @param flushInterval maximum batch collection time in milliseconds
+     * @param statisticsInterval statistics logging interval in milliseconds (0 to disable)
+     */
+    public PositionPublisher(
+            RedisShards redisShards, CompanyChannelCache companyChannelCache, PositionEncoder encoder,
+            int queueSize, Overflow overflow, PositionSpool spool, int batchSize, long flushInterval, long statisticsInterval) {
+        this.redisShards = redisShards;
+        this.companyChannelCache = companyChannelCache;
+        this.encoder = encoder;
+        this.queue = (queueSize > 0) ? new ArrayBlockingQueue<Entry>(queueSize) : null;
+        this.overflow = (overflow != Overflow.SPILL || spool != null) ? overflow : Overflow.DROP_OLDEST;
+        this.spool = spool;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.statisticsInterval = statisticsInterval;
+        spillQueueLimit = queueSize;
+    }
+
+    /**
+     * Downsample published stream to per-company rate cap
+     */
+    public void setRateLimiter(CompanyRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void start() {
+        if (queue != null) {
+            running = true;
+            thread = new Thread(this, "position-publisher");
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop publishing thread, queued positions are published first
+     */
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException error) {
+                Log.warning(error);
+            }
+        }
+    }
+
+    /**
+     * Publish position or queue it for publishing
+     */
+    public void publish(Position position) {
+        if (queue == null) {
+            CompanyChannelCache.Entry companyChannel = getCompanyChannel(position);
+            if (isPublished(companyChannel)) {
+                redisShards.get(companyChannel.getCompany()).publish(companyChannel, position, encoder.encode(position, companyChannel.getCompany()));
+            }
+            return;
+        }
+
+        Entry entry = new Entry(position, System.currentTimeMillis());
+        if (queue.offer(entry)) {
+            return;
+        }
+        switch (overflow) {
+            case BLOCK:
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException error) {
+                    droppedCount.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case SPILL:
+                if (spillQueueSize.incrementAndGet() <= spillQueueLimit) {
+                    spillQueue.offer(position);
+                } else {
+                    spillQueueSize.decrementAndGet();
+                    droppedCount.incrementAndGet();
+                }
+                break;
+            default:
+                while (!queue.offer(entry)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Check that device has company channel and company is within rate cap
+     */
+    private boolean isPublished(CompanyChannelCache.Entry companyChannel) {
+        return companyChannel != null && companyChannel.getChannel() != null
+                && (rateLimiter == null || rateLimiter.acquire(companyChannel.getCompany()));
+    }
+
+    private CompanyChannelCache.Entry getCompanyChannel(Position position) {
+        try {
+            return companyChannelCache.get(position.getDeviceId());
+        } catch (Exception error) {
+            Log.warning(error);
+            return null;
+        }
+    }
+
+    public int getQueueSize() {
+        return (queue != null) ? queue.size() : 0;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Time between queueing and publishing of the last batch in milliseconds
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * Published positions per second during last statistics interval
+     */
+    public long getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public void run() {
+        List<Entry> batch = new ArrayList<Entry>(batchSize);
+        long window = (statisticsInterval > 0) ? statisticsInterval : 1000;
+        long statisticsTime = System.currentTimeMillis();
+        long statisticsCount = 0;
+
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException error) {
+                Log.warning(error);
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+
+            spillOverflow();
+
+            // Spilled positions share bandwidth with live ones
+            if (spool != null && !spool.isEmpty()) {
+                replay();
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - statisticsTime >= window) {
+                throughput = (publishedCount - statisticsCount) * 1000 / (now - statisticsTime);
+                if (statisticsInterval > 0) {
+                    logStatistics();
+                }
+                statisticsTime = now;
+                statisticsCount = publishedCount;
+                maxLag = 0;
+            }
+        }
+        spillOverflow();
+    }
+
+    /**
+     * Wait for the first position and then collect until batch is full or flush interval expires
+     */
+    private void collect(List<Entry> batch) throws InterruptedException {
+        Entry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.currentTimeMillis() + flushInterval;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                Entry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Position> positions = new ArrayList<Position>(batch.size());
+        for (Entry entry : batch) {
+            positions.add(entry.position);
+        }
+
+        List<Position> failed = send(positions);
+        if (failed.size() < positions.size()) {
+            long lag = System.currentTimeMillis() - batch.get(0).time;
+            lastLag = lag;
+            if (lag > maxLag) {
+                maxLag = lag;
+            }
+        }
+        if (!failed.isEmpty()) {
+            if (overflow == Overflow.SPILL) {
+                spill(failed);
+            } else {
+                droppedCount.addAndGet(failed.size());
+            }
+        }
+    }
+
+    /**
+     * Targets, positions and messages for one Redis node
+     */
+    private static class Shard {
+
+        private final List<CompanyChannelCache.Entry> targets = new ArrayList<CompanyChannelCache.Entry>();
+        private final List<Position> positions = new ArrayList<Position>();
+        private final List<byte[]> messages = new ArrayList<byte[]>();
+
+    }
+
+    /**
+     * Publish positions in one pipeline per node
+     *
+     * @return positions that were not published because their node is not available
+     */
+    private List<Position> send(List<Position> positions) {
+        Map<RedisPublisher, Shard> shards = new IdentityHashMap<RedisPublisher, Shard>();
+        for (Position position : positions) {
+            CompanyChannelCache.Entry companyChannel = getCompanyChannel(position);
+            if (isPublished(companyChannel)) {
+                RedisPublisher redisPublisher = redisShards.get(companyChannel.getCompany());
+                Shard shard = shards.get(redisPublisher);
+                if (shard == null) {
+                    shard = new Shard();
+                    shards.put(redisPublisher, shard);
+                }
+                shard.targets.add(companyChannel);
+                shard.positions.add(position);
+                shard.messages.add(encoder.encode(position, companyChannel.getCompany()));
+            }
+        }
+
+        List<Position> failed = new ArrayList<Position>();
+        for (Map.Entry<RedisPublisher, Shard> entry : shards.entrySet()) {
+            Shard shard = entry.getValue();
+            if (entry.getKey().publish(shard.targets, shard.positions, shard.messages)) {
+                publishedCount += shard.messages.size();
+            } else {
+                failed.addAll(shard.positions);
+            }
+        }
+        batchCount += 1;
+        return failed;
+    }
+
+    /**
+     * Append positions that did not fit into queue to spool in one batch
+     */
+    private void spillOverflow() {
+        if (spillQueueSize.get() == 0) {
+            return;
+        }
+        List<Position> positions = new ArrayList<Position>();
+        Position position;
+        while ((position = spillQueue.poll()) != null) {
+            spillQueueSize.decrementAndGet();
+            positions.add(position);
+        }
+        spill(positions);
+    }
+
+    private void spill(List<Position> positions) {
+        int appended = spool.append(positions);
+        spilledCount.addAndGet(appended);
+        if (appended < positions.size()) {
+            droppedCount.addAndGet(positions.size() - appended);
+        }
+    }
+
+    /**
+     * Publish oldest spilled positions while Redis is available
+     *
+     * Positions for unavailable nodes are moved to the end of spool.
+     */
+    private void replay() {
+        if (System.currentTimeMillis() < replayTime) {
+            return;
+        }
+        List<Position> positions = new ArrayList<Position>(batchSize);
+        spool.read(positions, batchSize);
+        List<Position> failed = send(positions);
+        if (failed.size() == positions.size()) {
+            replayTime = System.currentTimeMillis() + REPLAY_RETRY_INTERVAL;
+            return;
+        }
+        spool.commit(positions.size());
+        replayedCount += positions.size() - failed.size();
+        if (!failed.isEmpty()) {
+            spool.append(failed);
+            replayTime = System.currentTimeMillis() + REPLAY_RETRY_INTERVAL;
+        }
+    }
+
+    private void logStatistics() {
+        Log.info("Position publisher" +
+                " queue: " + getQueueSize() +
+                " published: " + publishedCount +
+                " throughput: " + throughput + "/s" +
+                " dropped: " + getDroppedCount() +
+                (rateLimiter != null ? " rate limited: " + rateLimiter.getLimitedCount() : "") +
+                (spool != null ? " spilled: " + spool.getCount() : "") +
+                " lag: " + lastLag + "ms" +
+                " max lag: " + maxLag + "ms" +
+                " redis failures: " + redisShards.getFailedCount() +
+                " channel cache hits: " + companyChannelCache.getHitCount() +
+                " misses: " + companyChannelCache.getMissCount());
+    }
+
+}
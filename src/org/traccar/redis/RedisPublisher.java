@@ -0,0 +1,321 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.helper.GeoHash;
+import org.traccar.helper.Log;
+import org.traccar.helper.NamedThreadFactory;
+import org.traccar.model.Position;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Thread-safe Redis publisher shared by all pipelines
+ *
+ * Besides publishing to company channel, message can be stored as latest
+ * position of the device in "latest_<company>" hash and prepended to capped
+ * "history_<device>" list, so late subscribers can bootstrap from Redis.
+ *
+ * With geo index, device is added to "geo_<company>" sorted set scored by
+ * geohash of its location (see {@link GeoQuery}) and its update time is kept
+ * in "geotime_<company>". Devices not updated within geo timeout are
+ * periodically removed from both sets by background task with its own
+ * connection, so cleanup never delays or fails publishing.
+ *
+ * Latest position and geo index are only updated by the newest fix of the
+ * device published since start, so positions replayed after outage do not
+ * replace newer ones. Channel and history still receive all positions.
+ *
+ * Idle connections are validated by pool evictor in background. After
+ * connection failure publishing is suspended for retry interval, so
+ * message handlers do not wait for reconnection attempts.
+ */
+public class RedisPublisher {
+
+    private final JedisPool pool;
+    private final long retryInterval;
+    private final boolean latest;
+    private final int historySize;
+
+    private static final int GEO_CLEANUP_PAGE = 1000;
+
+    private long geoTimeout;
+    private ScheduledExecutorService geoCleanupExecutor;
+    private final ConcurrentMap<String, CompanyChannelCache.Entry> geoCompanies =
+            new ConcurrentHashMap<String, CompanyChannelCache.Entry>();
+
+    /**
+     * Fix time of the newest published position per device
+     */
+    private final ConcurrentMap<Long, Long> latestTimes = new ConcurrentHashMap<Long, Long>();
+
+    /**
+     * Publishing is suspended until this time after failure
+     */
+    private volatile long retryTime;
+
+    /**
+     * Statistics
+     */
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param timeout connection, socket and pool wait timeout in milliseconds
+     * @param retryInterval delay before reconnecting after failure in milliseconds
+     * @param latest keep latest position of each device in company hash
+     * @param historySize number of positions kept in device history list (0 to disable)
+     */
+    public RedisPublisher(
+            String host, int port, int poolSize, int timeout, String password, long retryInterval,
+            boolean latest, int historySize) {
+        JedisPoolConfig config = new JedisPoolConfig();
+        config.setMaxTotal(poolSize);
+        config.setMaxIdle(poolSize);
+        config.setMaxWaitMillis(timeout);
+        pool = new JedisPool(config, host, port, timeout, password);
+        this.retryInterval = retryInterval;
+        this.latest = latest;
+        this.historySize = historySize;
+    }
+
+    /**
+     * Maintain geohash index of device locations
+     *
+     * @param timeout idle time in milliseconds after which device is removed from index
+     * @param cleanupInterval interval between removals in milliseconds (0 to only remove on {@link #cleanup()} call)
+     */
+    public void enableGeoIndex(long timeout, long cleanupInterval) {
+        geoTimeout = timeout;
+        if (cleanupInterval > 0) {
+            geoCleanupExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("geo-cleanup"));
+            geoCleanupExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    cleanup();
+                }
+            }, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publish message, returns false if Redis is not available
+     */
+    public boolean publish(CompanyChannelCache.Entry target, Position position, byte[] message) {
+        return publish(
+                Collections.singletonList(target), Collections.singletonList(position), Collections.singletonList(message));
+    }
+
+    /**
+     * Publish messages in one pipelined round trip
+     *
+     * Latest position hash, history list and geo index are updated in the same pipeline.
+     *
+     * @return false if Redis is not available, messages are not published then
+     */
+    public boolean publish(List<CompanyChannelCache.Entry> targets, List<Position> positions, List<byte[]> messages) {
+        int size = messages.size();
+        if (isSuspended()) {
+            failedCount.addAndGet(size);
+            return false;
+        }
+
+        Jedis jedis = borrow(size);
+        if (jedis == null) {
+            return false;
+        }
+        try {
+            if (size == 1 && !latest && historySize <= 0 && geoTimeout <= 0) {
+                jedis.publish(targets.get(0).getChannel(), messages.get(0));
+            } else {
+                Pipeline pipeline = jedis.pipelined();
+                for (int i = 0; i < size; i++) {
+                    CompanyChannelCache.Entry target = targets.get(i);
+                    Position position = positions.get(i);
+                    byte[] message = messages.get(i);
+                    pipeline.publish(target.getChannel(), message);
+                    boolean newest = (latest || geoTimeout > 0) && isNewest(position);
+                    if (latest && newest) {
+                        pipeline.hset(target.getLatestKey(), target.getDevice(), message);
+                    }
+                    if (historySize > 0) {
+                        pipeline.lpush(target.getHistoryKey(), message);
+                        pipeline.ltrim(target.getHistoryKey(), 0, historySize - 1);
+                    }
+                    if (geoTimeout > 0 && newest) {
+                        index(pipeline, target, position);
+                    }
+                }
+                pipeline.sync();
+            }
+        } catch (JedisException error) {
+            release(jedis, error, size);
+            return false;
+        }
+        release(jedis, null, size);
+        return true;
+    }
+
+    /**
+     * Remember fix time, returns false if newer position of the device was already published
+     */
+    private boolean isNewest(Position position) {
+        Date time = position.getTime();
+        if (position.getDeviceId() == null || time == null) {
+            return true;
+        }
+        Long fixTime = time.getTime();
+        while (true) {
+            Long latestTime = latestTimes.putIfAbsent(position.getDeviceId(), fixTime);
+            if (latestTime == null) {
+                return true;
+            } else if (fixTime < latestTime) {
+                return false;
+            } else if (fixTime.equals(latestTime) || latestTimes.replace(position.getDeviceId(), latestTime, fixTime)) {
+                return true;
+            }
+        }
+    }
+
+    private void index(Pipeline pipeline, CompanyChannelCache.Entry target, Position position) {
+        if (position.getLatitude() == null || position.getLongitude() == null) {
+            return;
+        }
+        if (!geoCompanies.containsKey(target.getCompany())) {
+            geoCompanies.putIfAbsent(target.getCompany(), target);
+        }
+        pipeline.zadd(target.getGeoKey(), GeoHash.encode(position.getLatitude(), position.getLongitude()), target.getDevice());
+        pipeline.zadd(target.getGeoTimeKey(), System.currentTimeMillis(), target.getDevice());
+    }
+
+    /**
+     * Remove idle devices from geo index, in pages of limited size
+     *
+     * Device reporting during removal may be dropped until its next update.
+     * Failures are only logged and do not suspend publishing.
+     */
+    public void cleanup() {
+        if (isSuspended()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        Jedis jedis;
+        try {
+            jedis = pool.getResource();
+        } catch (JedisException error) {
+            Log.warning("Geo index cleanup failed", error);
+            return;
+        }
+        try {
+            for (CompanyChannelCache.Entry company : geoCompanies.values()) {
+                Set<byte[]> devices;
+                do {
+                    devices = jedis.zrangeByScore(company.getGeoTimeKey(), 0, now - geoTimeout, 0, GEO_CLEANUP_PAGE);
+                    if (!devices.isEmpty()) {
+                        byte[][] members = devices.toArray(new byte[devices.size()][]);
+                        Pipeline pipeline = jedis.pipelined();
+                        pipeline.zrem(company.getGeoKey(), members);
+                        pipeline.zrem(company.getGeoTimeKey(), members);
+                        pipeline.sync();
+                        removed += members.length;
+                    }
+                } while (devices.size() >= GEO_CLEANUP_PAGE);
+            }
+        } catch (JedisException error) {
+            if (error instanceof JedisConnectionException) {
+                pool.returnBrokenResource(jedis);
+            } else {
+                pool.returnResource(jedis);
+            }
+            Log.warning("Geo index cleanup failed", error);
+            return;
+        }
+        pool.returnResource(jedis);
+        if (removed > 0) {
+            Log.info("Removed " + removed + " idle devices from geo index");
+        }
+    }
+
+    public boolean isSuspended() {
+        return retryTime != 0 && System.currentTimeMillis() < retryTime;
+    }
+
+    private Jedis borrow(int size) {
+        try {
+            return pool.getResource();
+        } catch (JedisException error) {
+            suspend(error, size);
+            return null;
+        }
+    }
+
+    private void release(Jedis jedis, JedisException error, int size) {
+        if (error == null) {
+            pool.returnResource(jedis);
+            if (retryTime != 0) {
+                retryTime = 0;
+                Log.info("Redis connection restored");
+            }
+            publishedCount.addAndGet(size);
+        } else if (error instanceof JedisConnectionException) {
+            pool.returnBrokenResource(jedis);
+            suspend(error, size);
+        } else {
+            pool.returnResource(jedis);
+            failedCount.addAndGet(size);
+            Log.warning(error);
+        }
+    }
+
+    private void suspend(JedisException error, int size) {
+        failedCount.addAndGet(size);
+        if (retryTime == 0) {
+            Log.warning("Redis is not available, publishing suspended", error);
+        }
+        retryTime = System.currentTimeMillis() + retryInterval;
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public void close() {
+        if (geoCleanupExecutor != null) {
+            geoCleanupExecutor.shutdownNow();
+        }
+        pool.destroy();
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.traccar.helper.ConsistentHash;
+
+/**
+ * Redis nodes selected by company
+ *
+ * Channel and all keys of a company live on the same node, chosen by
+ * consistent hashing of normalized company name. Nodes are hashed by host
+ * and port, so node list order does not matter and changing the list only
+ * moves companies of added or removed nodes.
+ */
+public class RedisShards {
+
+    private final Map<String, RedisPublisher> nodes;
+    private final ConsistentHash<RedisPublisher> ring;
+
+    private final ConcurrentMap<String, RedisPublisher> routes = new ConcurrentHashMap<String, RedisPublisher>();
+
+    /**
+     * @param nodes publishers by "host:port" name
+     */
+    public RedisShards(Map<String, RedisPublisher> nodes, int virtualNodes) {
+        this.nodes = new LinkedHashMap<String, RedisPublisher>(nodes);
+        ring = new ConsistentHash<RedisPublisher>(nodes, virtualNodes);
+    }
+
+    /**
+     * Publisher of the node owning company
+     */
+    public RedisPublisher get(String company) {
+        RedisPublisher publisher = routes.get(company);
+        if (publisher == null) {
+            publisher = ring.get(company);
+            routes.put(company, publisher);
+        }
+        return publisher;
+    }
+
+    public Collection<RedisPublisher> getAll() {
+        return new ArrayList<RedisPublisher>(nodes.values());
+    }
+
+    public int getSize() {
+        return nodes.size();
+    }
+
+    public long getFailedCount() {
+        long count = 0;
+        for (RedisPublisher publisher : nodes.values()) {
+            count += publisher.getFailedCount();
+        }
+        return count;
+    }
+
+    public void close() {
+        for (RedisPublisher publisher : nodes.values()) {
+            publisher.close();
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.traccar.model.DataManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+/**
+ * In-memory data manager for replay
+ *
+ * Every identifier is accepted as registered device, positions are only
+ * counted, so measurements do not include database latency.
+ */
+public class ReplayDataManager implements DataManager {
+
+    private static final String COMPANY = "replay";
+
+    private final ConcurrentMap<String, Device> devices = new ConcurrentHashMap<String, Device>();
+    private final AtomicLong deviceId = new AtomicLong();
+    private final AtomicLong positionId = new AtomicLong();
+
+    @Override
+    public List<Device> getDevices() {
+        return new ArrayList<Device>(devices.values());
+    }
+
+    @Override
+    public Device getDeviceByImei(String imei) {
+        Device device = devices.get(imei);
+        if (device == null) {
+            device = new Device();
+            device.setId(deviceId.incrementAndGet());
+            device.setImei(imei);
+            Device existing = devices.putIfAbsent(imei, device);
+            if (existing != null) {
+                device = existing;
+            }
+        }
+        return device;
+    }
+
+    @Override
+    public String getCompanyNameByDevice(Long device) {
+        return COMPANY;
+    }
+
+    @Override
+    public Map<Long, String> getCompanyNames() {
+        Map<Long, String> result = new HashMap<Long, String>();
+        for (Device device : devices.values()) {
+            result.put(device.getId(), COMPANY);
+        }
+        return result;
+    }
+
+    @Override
+    public Long addPosition(Position position) {
+        return positionId.incrementAndGet();
+    }
+
+    @Override
+    public List<Long> addPositions(List<Position> positions) {
+        List<Long> result = new ArrayList<Long>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            result.add(positionId.incrementAndGet());
+        }
+        return result;
+    }
+
+    @Override
+    public void updateLatestPosition(Position position, Long positionId) {
+    }
+
+    @Override
+    public Long getLastIndex(Long deviceId) {
+        return null;
+    }
+
+    /**
+     * Number of stored positions
+     */
+    public long getPositionCount() {
+        return positionId.get();
+    }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteOrder;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.netty.bootstrap.Bootstrap;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ConnectionlessBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBufferFactory;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFactory;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.jboss.netty.channel.group.ChannelGroup;
+import org.jboss.netty.channel.group.DefaultChannelGroup;
+import org.jboss.netty.channel.local.DefaultLocalClientChannelFactory;
+import org.jboss.netty.channel.local.DefaultLocalServerChannelFactory;
+import org.jboss.netty.channel.local.LocalAddress;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioDatagramChannelFactory;
+import org.traccar.ServerManager;
+import org.traccar.TrackerServer;
+import org.traccar.helper.Log;
+import org.traccar.helper.NamedThreadFactory;
+
+/**
+ * Replay of recorded traffic through real server pipelines
+ *
+ * Pipelines are built by server manager from the given configuration with
+ * in-memory data manager. In local mode frames are written through
+ * in-process channels, so decoding runs on replay threads. In loopback
+ * mode servers listen on configured ports and simulated devices connect
+ * over TCP or UDP.
+ *
+ * Every protocol present in the source gets the configured number of
+ * simulated connections, each replaying one recorded session. Connections
+ * stay open until all positions are processed. Delays
+ * between frames are divided by speed, with zero speed next frame is
+ * sent as soon as previous one is written.
+ *
+ * Redis publishing is disabled unless "replay.publish" is set, so replayed
+ * positions never reach real subscribers and latency does not include
+ * Redis round trips.
+ *
+ * Usage: ReplayEngine <configuration> <capture file, directory or vector file>
+ */
+public class ReplayEngine {
+
+    private final Properties properties;
+    private final ReplaySource source;
+
+    private final boolean loopback;
+    private final int connections;
+    private final double speed;
+    private final int repeat;
+    private final long rampUp;
+    private final long timeout;
+    private final int threads;
+
+    private final ServerManager serverManager = new ServerManager();
+    private final ReplayDataManager dataManager = new ReplayDataManager();
+
+    private final ConcurrentMap<SocketAddress, AtomicLong> sendTimes = new ConcurrentHashMap<SocketAddress, AtomicLong>();
+    private final Map<String, ReplayProbe> probes = new LinkedHashMap<String, ReplayProbe>();
+    private final Map<String, AtomicLong> frameCounts = new LinkedHashMap<String, AtomicLong>();
+    private final List<ChannelFactory> factories = new LinkedList<ChannelFactory>();
+    private final ChannelGroup clientChannels = new DefaultChannelGroup();
+
+    private ScheduledExecutorService scheduler;
+    private CountDownLatch finished;
+    private long startTime;
+
+    public ReplayEngine(Properties properties, ReplaySource source) {
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        if (!Boolean.parseBoolean(properties.getProperty("replay.publish"))) {
+            this.properties.setProperty("redis.enable", "false");
+        }
+        this.source = source;
+        loopback = properties.getProperty("replay.mode", "local").equals("loopback");
+        connections = Integer.parseInt(properties.getProperty("replay.connections", "100"));
+        speed = Double.parseDouble(properties.getProperty("replay.speed", "1"));
+        repeat = Integer.parseInt(properties.getProperty("replay.repeat", "1"));
+        rampUp = Long.parseLong(properties.getProperty("replay.rampUp", "1000"));
+        timeout = Long.parseLong(properties.getProperty("replay.timeout", "600")) * 1000;
+        threads = Integer.parseInt(properties.getProperty(
+                "replay.threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+    }
+
+    /**
+     * Client side handler, server responses are ignored
+     */
+    private static class ClientHandler extends SimpleChannelUpstreamHandler {
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+            e.getChannel().close();
+        }
+
+    }
+
+    private static final ChannelPipelineFactory CLIENT_PIPELINE_FACTORY = new ChannelPipelineFactory() {
+        @Override
+        public ChannelPipeline getPipeline() {
+            return Channels.pipeline(new ClientHandler());
+        }
+    };
+
+    /**
+     * Simulated device replaying one session
+     */
+    private class Connection implements Runnable, ChannelFutureListener {
+
+        private final List<ReplaySource.Frame> session;
+        private final ByteOrder byteOrder;
+        private final AtomicLong frameCount;
+        private final AtomicLong sendTime = new AtomicLong();
+
+        private Channel channel;
+        private SocketAddress remoteAddress;
+        private int index;
+        private int round;
+
+        public Connection(List<ReplaySource.Frame> session, ByteOrder byteOrder, AtomicLong frameCount) {
+            this.session = session;
+            this.byteOrder = byteOrder;
+            this.frameCount = frameCount;
+        }
+
+        /**
+         * @param remoteAddress destination of datagrams, null for connected channel
+         */
+        public void start(Channel channel, SocketAddress remoteAddress) {
+            this.channel = channel;
+            this.remoteAddress = remoteAddress;
+            clientChannels.add(channel);
+            sendTimes.put(channel.getLocalAddress(), sendTime);
+            scheduler.execute(this);
+        }
+
+        @Override
+        public void run() {
+            if (index >= session.size()) {
+                index = 0;
+                round += 1;
+            }
+            if (round >= repeat || !channel.isOpen()) {
+                finished.countDown();
+                return;
+            }
+
+            ReplaySource.Frame frame = session.get(index++);
+            sendTime.set(System.nanoTime());
+            frameCount.incrementAndGet();
+            ChannelFuture future;
+            if (remoteAddress != null) {
+                future = channel.write(ChannelBuffers.wrappedBuffer(byteOrder, frame.getData()), remoteAddress);
+            } else {
+                future = channel.write(ChannelBuffers.wrappedBuffer(byteOrder, frame.getData()));
+            }
+
+            long delay = 0;
+            if (speed > 0 && index < session.size()) {
+                delay = (long) ((session.get(index).getTime() - frame.getTime()) * 1000 / speed);
+            }
+            if (delay > 0) {
+                scheduler.schedule(this, delay, TimeUnit.MICROSECONDS);
+            } else {
+                future.addListener(this);
+            }
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            scheduler.execute(this);
+        }
+
+    }
+
+    private static ByteOrder getByteOrder(Bootstrap bootstrap) {
+        Object bufferFactory = bootstrap.getOption("bufferFactory");
+        if (bufferFactory instanceof ChannelBufferFactory) {
+            return ((ChannelBufferFactory) bufferFactory).getDefaultOrder();
+        }
+        return ByteOrder.BIG_ENDIAN;
+    }
+
+    private void connect(Bootstrap client, final SocketAddress address, final Connection connection) {
+        if (client instanceof ConnectionlessBootstrap) {
+            connection.start(((ConnectionlessBootstrap) client).bind(new InetSocketAddress("127.0.0.1", 0)), address);
+        } else {
+            ((ClientBootstrap) client).connect(address).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    if (future.isSuccess()) {
+                        connection.start(future.getChannel(), null);
+                    } else {
+                        Log.warning("Replay connection to " + address + " failed", future.getCause());
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Create client bootstrap and return address of the server
+     */
+    private SocketAddress prepare(TrackerServer server, Map<String, Bootstrap> clients) {
+        String protocol = server.getProtocol();
+        final ReplayProbe probe = new ReplayProbe(sendTimes);
+        probes.put(protocol, probe);
+        frameCounts.put(protocol, new AtomicLong());
+
+        final ChannelPipelineFactory pipelineFactory = server.getPipelineFactory();
+        ChannelPipelineFactory probePipelineFactory = new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() throws Exception {
+                ChannelPipeline pipeline = pipelineFactory.getPipeline();
+                pipeline.addBefore("handler", "replayProbe", probe);
+                return pipeline;
+            }
+        };
+
+        Bootstrap client;
+        SocketAddress address;
+        if (!loopback) {
+            DefaultLocalServerChannelFactory serverFactory = new DefaultLocalServerChannelFactory();
+            DefaultLocalClientChannelFactory clientFactory = new DefaultLocalClientChannelFactory();
+            factories.add(serverFactory);
+            factories.add(clientFactory);
+
+            ServerBootstrap local = new ServerBootstrap(serverFactory);
+            local.setOptions(server.getBootstrap().getOptions());
+            local.setPipelineFactory(probePipelineFactory);
+            address = new LocalAddress("replay-" + protocol);
+            local.bind(address);
+
+            client = new ClientBootstrap(clientFactory);
+        } else {
+            server.setPipelineFactory(probePipelineFactory);
+            server.start();
+            address = new InetSocketAddress(
+                    (server.getAddress() != null) ? server.getAddress() : "127.0.0.1", server.getPort());
+
+            if (server.getBootstrap() instanceof ConnectionlessBootstrap) {
+                NioDatagramChannelFactory clientFactory = new NioDatagramChannelFactory(
+                        Executors.newCachedThreadPool(new NamedThreadFactory("replay-datagram")));
+                factories.add(clientFactory);
+                client = new ConnectionlessBootstrap(clientFactory);
+            } else {
+                NioClientSocketChannelFactory clientFactory = new NioClientSocketChannelFactory(
+                        Executors.newCachedThreadPool(new NamedThreadFactory("replay-boss")),
+                        Executors.newCachedThreadPool(new NamedThreadFactory("replay-worker")));
+                factories.add(clientFactory);
+                client = new ClientBootstrap(clientFactory);
+            }
+        }
+        client.setPipelineFactory(CLIENT_PIPELINE_FACTORY);
+        clients.put(protocol, client);
+        return address;
+    }
+
+    /**
+     * Replay all sessions and wait for remaining positions
+     */
+    public void run() throws Exception {
+        serverManager.init(properties, dataManager);
+
+        Map<String, TrackerServer> servers = new LinkedHashMap<String, TrackerServer>();
+        for (TrackerServer server : serverManager.getServers()) {
+            if (source.getSessions().containsKey(server.getProtocol())) {
+                servers.put(server.getProtocol(), server);
+            }
+        }
+        for (String protocol : source.getSessions().keySet()) {
+            if (!servers.containsKey(protocol)) {
+                Log.warning("Protocol " + protocol + " is not enabled, frames skipped");
+            }
+        }
+
+        scheduler = Executors.newScheduledThreadPool(threads, new NamedThreadFactory("replay"));
+        finished = new CountDownLatch(servers.size() * connections);
+        Map<String, Bootstrap> clients = new LinkedHashMap<String, Bootstrap>();
+        startTime = System.nanoTime();
+
+        for (final TrackerServer server : servers.values()) {
+            final SocketAddress address = prepare(server, clients);
+            final Bootstrap client = clients.get(server.getProtocol());
+            List<List<ReplaySource.Frame>> sessions = source.getSessions().get(server.getProtocol());
+            ByteOrder byteOrder = getByteOrder(server.getBootstrap());
+            for (int i = 0; i < connections; i++) {
+                final Connection connection = new Connection(
+                        sessions.get(i % sessions.size()), byteOrder, frameCounts.get(server.getProtocol()));
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        connect(client, address, connection);
+                    }
+                }, rampUp * i / connections, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (!finished.await(timeout, TimeUnit.MILLISECONDS)) {
+            Log.warning("Replay timeout, " + finished.getCount() + " connections not finished");
+        }
+        waitQuiet();
+
+        // Closing earlier would reset connections with unread data
+        clientChannels.close().awaitUninterruptibly();
+    }
+
+    /**
+     * Wait until no positions arrive for one second
+     */
+    private void waitQuiet() throws InterruptedException {
+        long previous = -1;
+        while (true) {
+            Thread.sleep(1000);
+            long count = 0;
+            for (ReplayProbe probe : probes.values()) {
+                count += probe.getPositionCount();
+            }
+            if (count == previous) {
+                return;
+            }
+            previous = count;
+        }
+    }
+
+    private static String formatLatency(long value) {
+        return String.format("%.3f", value / 1000.0);
+    }
+
+    /**
+     * Per protocol frames, positions, throughput and latency percentiles in milliseconds
+     */
+    public String report() {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format("%-12s %8s %10s %10s %10s %9s %9s %9s %9s %9s%n",
+                "protocol", "conn", "frames", "positions", "pos/sec", "p50", "p90", "p99", "p99.9", "max"));
+        for (Map.Entry<String, ReplayProbe> entry : probes.entrySet()) {
+            ReplayProbe probe = entry.getValue();
+            LatencyHistogram histogram = probe.getHistogram();
+            double seconds = (probe.getLastTime() - startTime) / 1e9;
+            s.append(String.format("%-12s %8d %10d %10d %10.0f %9s %9s %9s %9s %9s%n",
+                    entry.getKey(), connections, frameCounts.get(entry.getKey()).get(), probe.getPositionCount(),
+                    (seconds > 0) ? probe.getPositionCount() / seconds : 0.0,
+                    formatLatency(histogram.getPercentile(0.5)),
+                    formatLatency(histogram.getPercentile(0.9)),
+                    formatLatency(histogram.getPercentile(0.99)),
+                    formatLatency(histogram.getPercentile(0.999)),
+                    formatLatency(histogram.getMax())));
+        }
+        s.append("stored positions: ").append(dataManager.getPositionCount());
+        return s.toString();
+    }
+
+    public Map<String, ReplayProbe> getProbes() {
+        return probes;
+    }
+
+    public void stop() {
+        serverManager.stop();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        for (ChannelFactory factory : factories) {
+            factory.releaseExternalResources();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ReplayEngine <configuration> <capture file, directory or vector file>");
+            System.exit(1);
+        }
+
+        Properties properties = new Properties();
+        properties.loadFromXML(new FileInputStream(args[0]));
+
+        ReplaySource source = ReplaySource.load(
+                new File(args[1]), Long.parseLong(properties.getProperty("replay.interval", "1000")));
+
+        ReplayEngine engine = new ReplayEngine(properties, source);
+        try {
+            engine.run();
+            System.out.println(engine.report());
+        } finally {
+            engine.stop();
+        }
+    }
+
+}
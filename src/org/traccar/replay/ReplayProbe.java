@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.replay;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+import org.traccar.model.Position;
+
+/**
+ * Latency probe placed in front of the final event handler
+ *
+ * Positions are counted after the event handler returns, so latency
+ * covers framing, decoding, executor queueing, geocoding and storage.
+ * Latency is measured from the last frame sent by the simulated
+ * connection, which is found by remote address of the channel.
+ */
+@ChannelHandler.Sharable
+public class ReplayProbe implements ChannelUpstreamHandler {
+
+    private final ConcurrentMap<SocketAddress, AtomicLong> sendTimes;
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong positionCount = new AtomicLong();
+    private final AtomicLong lastTime = new AtomicLong();
+
+    /**
+     * @param sendTimes client address to last frame send time in nanoseconds
+     */
+    public ReplayProbe(ConcurrentMap<SocketAddress, AtomicLong> sendTimes) {
+        this.sendTimes = sendTimes;
+    }
+
+    @Override
+    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+        int count = 0;
+        SocketAddress remoteAddress = null;
+        if (e instanceof MessageEvent) {
+            MessageEvent event = (MessageEvent) e;
+            if (event.getMessage() instanceof Position) {
+                count = 1;
+            } else if (event.getMessage() instanceof List) {
+                count = ((List) event.getMessage()).size();
+            }
+            remoteAddress = event.getRemoteAddress();
+        }
+
+        ctx.sendUpstream(e);
+
+        if (count > 0) {
+            long now = System.nanoTime();
+            if (remoteAddress == null) {
+                remoteAddress = e.getChannel().getRemoteAddress();
+            }
+            AtomicLong sendTime = (remoteAddress != null) ? sendTimes.get(remoteAddress) : null;
+            if (sendTime != null) {
+                long latency = (now - sendTime.get()) / 1000;
+                for (int i = 0; i < count; i++) {
+                    histogram.record(latency);
+                }
+            }
+            positionCount.addAndGet(count);
+            lastTime.set(now);
+        }
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getPositionCount() {
+        return positionCount.get();
+    }
+
+    /**
+     * Time of the last counted position in nanoseconds
+     */
+    public long getLastTime() {
+        return lastTime.get();
+    }
+
+}
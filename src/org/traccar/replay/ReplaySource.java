@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.traccar.helper.CaptureFile;
+
+/**
+ * Replay frames grouped into sessions by protocol
+ *
+ * Source is either capture file or directory written by capture handler,
+ * where each captured connection becomes one session, or text file with
+ * "<protocol> <hex frame>" lines, where all frames of a protocol form one
+ * session sent with fixed interval. Empty lines and lines starting with
+ * '#' are ignored.
+ */
+public class ReplaySource {
+
+    /**
+     * Raw frame with time relative to session start in milliseconds
+     */
+    public static class Frame {
+
+        private final long time;
+        private final byte[] data;
+
+        public Frame(long time, byte[] data) {
+            this.time = time;
+            this.data = data;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+    }
+
+    private final Map<String, List<List<Frame>>> sessions = new LinkedHashMap<String, List<List<Frame>>>();
+
+    /**
+     * Protocol name to list of sessions
+     */
+    public Map<String, List<List<Frame>>> getSessions() {
+        return sessions;
+    }
+
+    public int getFrameCount() {
+        int count = 0;
+        for (List<List<Frame>> protocolSessions : sessions.values()) {
+            for (List<Frame> session : protocolSessions) {
+                count += session.size();
+            }
+        }
+        return count;
+    }
+
+    private List<List<Frame>> getProtocolSessions(String protocol) {
+        List<List<Frame>> result = sessions.get(protocol);
+        if (result == null) {
+            result = new ArrayList<List<Frame>>();
+            sessions.put(protocol, result);
+        }
+        return result;
+    }
+
+    /**
+     * Load capture file or directory, frames of each connection keep their original timing
+     */
+    public static ReplaySource loadCapture(File path) throws IOException {
+        List<File> files;
+        if (path.isDirectory()) {
+            files = CaptureFile.list(path);
+        } else {
+            files = new ArrayList<File>();
+            files.add(path);
+        }
+
+        ReplaySource source = new ReplaySource();
+        Map<String, List<Frame>> open = new LinkedHashMap<String, List<Frame>>();
+        Map<String, Long> startTimes = new LinkedHashMap<String, Long>();
+        for (File file : files) {
+            CaptureFile.Reader reader = new CaptureFile.Reader(file);
+            while (reader.next()) {
+                // Datagram channels are shared, so remote address is part of the key
+                String key = reader.getProtocol() + ":" + reader.getChannelId() + ":" + reader.getRemoteAddress();
+                List<Frame> session = open.get(key);
+                if (session == null) {
+                    session = new ArrayList<Frame>();
+                    open.put(key, session);
+                    startTimes.put(key, reader.getTime());
+                    source.getProtocolSessions(reader.getProtocol()).add(session);
+                }
+                byte[] data = new byte[reader.getData().readableBytes()];
+                reader.getData().getBytes(0, data);
+                session.add(new Frame(reader.getTime() - startTimes.get(key), data));
+            }
+        }
+        return source;
+    }
+
+    private static byte[] parseHex(String hex, int number) throws IOException {
+        if (hex.length() % 2 != 0) {
+            throw new IOException("Odd hex length at line " + number);
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid hex at line " + number);
+            }
+            result[i] = (byte) (high << 4 | low);
+        }
+        return result;
+    }
+
+    /**
+     * Load hex vectors, frames of each protocol are spaced by interval in milliseconds
+     */
+    public static ReplaySource loadVectors(File path, long interval) throws IOException {
+        ReplaySource source = new ReplaySource();
+        Map<String, List<Frame>> open = new LinkedHashMap<String, List<Frame>>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), "US-ASCII"));
+        try {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split("\\s+", 2);
+                if (values.length < 2) {
+                    throw new IOException("Invalid vector at line " + number);
+                }
+                List<Frame> session = open.get(values[0]);
+                if (session == null) {
+                    session = new ArrayList<Frame>();
+                    open.put(values[0], session);
+                    source.getProtocolSessions(values[0]).add(session);
+                }
+                session.add(new Frame(session.size() * interval, parseHex(values[1], number)));
+            }
+        } finally {
+            reader.close();
+        }
+        return source;
+    }
+
+    /**
+     * Load capture if path is directory or capture file, otherwise vectors
+     */
+    public static ReplaySource load(File path, long interval) throws IOException {
+        if (path.isDirectory() || path.getName().endsWith(".bin")) {
+            return loadCapture(path);
+        }
+        return loadVectors(path, interval);
+    }
+
+}
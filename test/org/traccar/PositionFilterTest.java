@@ -0,0 +1,47 @@
+package org.traccar;
+
+import java.util.Date;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+public class PositionFilterTest {
+
+    private static Position position(long deviceId, long time, double latitude, double longitude, double course) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setTime(new Date(time));
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setCourse(course);
+        return position;
+    }
+
+    @Test
+    public void testFilter() {
+        PositionFilter filter = new PositionFilter(20, 30, 60000);
+
+        assertTrue(filter.accept(position(1, 0, 10.0, 20.0, 90)));
+        assertFalse(filter.accept(position(1, 5000, 10.0001, 20.0, 90)));
+        assertTrue(filter.accept(position(1, 10000, 10.0003, 20.0, 90)));
+        assertFalse(filter.accept(position(1, 15000, 10.0003, 20.0, 110)));
+        assertTrue(filter.accept(position(1, 20000, 10.0003, 20.0, 130)));
+        assertTrue(filter.accept(position(1, 80000, 10.0003, 20.0, 130)));
+        assertTrue(filter.accept(position(1, 1000, 10.0003, 20.0, 130)));
+
+        assertTrue(filter.accept(position(2, 5000, 10.0, 20.0, 90)));
+        assertEquals(2, filter.getSuppressedCount());
+    }
+
+    @Test
+    public void testManyDevices() {
+        PositionFilter filter = new PositionFilter(20, 0, 60000);
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(filter.accept(position(i, 0, 10.0, 20.0, 0)));
+        }
+        for (long i = 0; i < 10000; i++) {
+            assertFalse(filter.accept(position(i, 1000, 10.0, 20.0, 180)));
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.traccar.helper;
+
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdvancedConnectionTest {
+
+    private static final String URL = "jdbc:h2:mem:pool";
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    @Test
+    public void testMinSize() throws Exception {
+        AdvancedConnection connection = new AdvancedConnection(URL, "sa", "", 2, 4, 16, 1000, 0, 0);
+        assertEquals(2, connection.getOpenCount());
+        assertEquals(2, connection.getIdleCount());
+
+        AdvancedConnection.PooledConnection first = connection.borrow();
+        AdvancedConnection.PooledConnection second = connection.borrow();
+        connection.invalidate(first);
+        connection.invalidate(second);
+        assertEquals(0, connection.getOpenCount());
+
+        // Pool is refilled in background once healthy connection is released
+        connection.release(connection.borrow());
+        for (int i = 0; i < 100 && connection.getIdleCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, connection.getOpenCount());
+        assertEquals(2, connection.getIdleCount());
+
+        connection.close();
+        assertEquals(0, connection.getOpenCount());
+    }
+
+    @Test
+    public void testUnavailable() throws Exception {
+        AdvancedConnection connection = new AdvancedConnection("jdbc:unknown:db", "sa", "", 2, 4, 16, 1000, 0, 0);
+        assertEquals(0, connection.getOpenCount());
+        connection.close();
+    }
+
+}
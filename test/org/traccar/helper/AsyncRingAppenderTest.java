@@ -0,0 +1,145 @@
+package org.traccar.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.Filter;
+import org.apache.log4j.spi.LoggingEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import org.junit.Test;
+
+public class AsyncRingAppenderTest {
+
+    private static class ListAppender extends AppenderSkeleton {
+
+        private final List<String> messages = new ArrayList<String>();
+        private volatile boolean closed;
+
+        @Override
+        protected void append(LoggingEvent event) {
+            messages.add(event.getRenderedMessage());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean requiresLayout() {
+            return false;
+        }
+
+    }
+
+    private static LoggingEvent event(String message) {
+        return event(Level.INFO, message);
+    }
+
+    private static LoggingEvent event(Level level, String message) {
+        return new LoggingEvent(
+                AsyncRingAppenderTest.class.getName(), Logger.getLogger("test"), level, message, null);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        final ListAppender delegate = new ListAppender();
+        final AsyncRingAppender appender = new AsyncRingAppender(delegate, 16, true);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        appender.doAppend(event(thread + ":" + j));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        appender.close();
+
+        assertEquals(4000, delegate.messages.size());
+        assertEquals(0, appender.getDroppedCount());
+        assertEquals(true, delegate.closed);
+
+        // Order of each producer is preserved
+        int[] next = new int[threads.length];
+        for (String message : delegate.messages) {
+            String[] parts = message.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        ListAppender delegate = new ListAppender() {
+            @Override
+            protected void append(LoggingEvent event) {
+                try {
+                    latch.await();
+                } catch (InterruptedException error) {
+                    Thread.currentThread().interrupt();
+                }
+                super.append(event);
+            }
+        };
+        final AsyncRingAppender appender = new AsyncRingAppender(delegate, 2, true);
+        appender.setThreshold(Level.INFO);
+        appender.addFilter(new Filter() {
+            @Override
+            public int decide(LoggingEvent event) {
+                return event.getRenderedMessage().startsWith("deny") ? DENY : NEUTRAL;
+            }
+        });
+
+        // Fill the ring, producer waits for free slot
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 5; i++) {
+                    appender.doAppend(event(String.valueOf(i)));
+                }
+            }
+        };
+        producer.start();
+        producer.join(200);
+
+        // Events rejected by threshold or filter are not blocked by waiting producer
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                appender.doAppend(event(Level.DEBUG, "debug"));
+                appender.doAppend(event("deny"));
+            }
+        };
+        other.start();
+        other.join(1000);
+        assertFalse(other.isAlive());
+
+        latch.countDown();
+        producer.join();
+        appender.close();
+
+        assertEquals(5, delegate.messages.size());
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("device: 1, lat: 2.5", Log.format("device: {}, lat: {}", 1, 2.5));
+        assertEquals("a null {}", Log.format("a {} {}", (Object) null));
+        assertEquals("plain", Log.format("plain", "unused"));
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.traccar.helper;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class CaptureFileTest {
+
+    private static File createDirectory() throws Exception {
+        File directory = File.createTempFile("capture", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        File directory = createDirectory();
+        CaptureFile captureFile = new CaptureFile(directory, 4096, 2);
+
+        ChannelBuffer data = ChannelBuffers.wrappedBuffer(new byte[] {0, 1, 2, 3, 4, 5});
+        data.readerIndex(2);
+        InetSocketAddress remoteAddress = new InetSocketAddress(InetAddress.getByName("10.0.0.1"), 40000);
+        captureFile.write(1000, 7, 5001, CaptureFile.encodeProtocol("gps103"), remoteAddress, data);
+        captureFile.write(2000, 8, 5002, CaptureFile.encodeProtocol("tk103"), null, ChannelBuffers.EMPTY_BUFFER);
+        captureFile.close();
+
+        assertEquals(2, data.readerIndex());
+        assertEquals(2, captureFile.getRecordCount());
+
+        List<File> files = CaptureFile.list(directory);
+        assertEquals(1, files.size());
+
+        CaptureFile.Reader reader = new CaptureFile.Reader(files.get(0));
+        assertTrue(reader.next());
+        assertEquals(1000, reader.getTime());
+        assertEquals(7, reader.getChannelId());
+        assertEquals(5001, reader.getLocalPort());
+        assertEquals("gps103", reader.getProtocol());
+        assertEquals(remoteAddress, reader.getRemoteAddress());
+        assertEquals(ChannelBuffers.wrappedBuffer(new byte[] {2, 3, 4, 5}), reader.getData());
+
+        assertTrue(reader.next());
+        assertEquals("tk103", reader.getProtocol());
+        assertNull(reader.getRemoteAddress());
+        assertEquals(0, reader.getData().readableBytes());
+
+        assertFalse(reader.next());
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        File directory = createDirectory();
+        CaptureFile captureFile = new CaptureFile(directory, 1024, 3);
+
+        byte[] protocol = CaptureFile.encodeProtocol("test");
+        for (int i = 0; i < 100; i++) {
+            captureFile.write(i, i, 5000, protocol, null, ChannelBuffers.wrappedBuffer(new byte[100]));
+        }
+        captureFile.write(0, 0, 5000, protocol, null, ChannelBuffers.wrappedBuffer(new byte[2000]));
+        captureFile.close();
+
+        assertEquals(100, captureFile.getRecordCount());
+        assertEquals(1, captureFile.getDroppedCount());
+
+        List<File> files = CaptureFile.list(directory);
+        assertEquals(3, files.size());
+
+        // Records of retained files are in order and end with the last one
+        long last = -1;
+        for (File file : files) {
+            CaptureFile.Reader reader = new CaptureFile.Reader(file);
+            while (reader.next()) {
+                assertTrue(reader.getTime() > last);
+                last = reader.getTime();
+            }
+        }
+        assertEquals(99, last);
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentWrite() throws Exception {
+        File directory = createDirectory();
+        final CaptureFile captureFile = new CaptureFile(directory, 4096, 1000);
+        final byte[] protocol = CaptureFile.encodeProtocol("test");
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int channelId = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        captureFile.write(j, channelId, 5000, protocol, null,
+                                ChannelBuffers.wrappedBuffer(new byte[j % 50]));
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        captureFile.close();
+
+        assertEquals(4000, captureFile.getRecordCount());
+        assertEquals(0, captureFile.getDroppedCount());
+
+        // Records of each channel are complete and in order
+        long[] next = new long[threads.length];
+        List<File> files = CaptureFile.list(directory);
+        for (File file : files) {
+            CaptureFile.Reader reader = new CaptureFile.Reader(file);
+            while (reader.next()) {
+                assertEquals(next[reader.getChannelId()]++, reader.getTime());
+                assertEquals(reader.getTime() % 50, reader.getData().readableBytes());
+            }
+        }
+        for (long count : next) {
+            assertEquals(1000, count);
+        }
+
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.traccar.helper;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ConsistentHashTest {
+
+    private static Map<String, String> nodes(String... names) {
+        Map<String, String> nodes = new LinkedHashMap<String, String>();
+        for (String name : names) {
+            nodes.put(name, name);
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testDistribution() {
+        ConsistentHash<String> ring = new ConsistentHash<String>(nodes("a:6379", "b:6379", "c:6379"), 160);
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 3000; i++) {
+            String node = ring.get("company-" + i);
+            counts.put(node, counts.containsKey(node) ? counts.get(node) + 1 : 1);
+        }
+        for (int count : counts.values()) {
+            assertTrue(count > 700 && count < 1300);
+        }
+    }
+
+    @Test
+    public void testRebalance() {
+        ConsistentHash<String> before = new ConsistentHash<String>(nodes("a:6379", "b:6379", "c:6379"), 160);
+        ConsistentHash<String> after = new ConsistentHash<String>(nodes("c:6379", "d:6379", "a:6379", "b:6379"), 160);
+        int moved = 0;
+        for (int i = 0; i < 3000; i++) {
+            String key = "company-" + i;
+            if (!before.get(key).equals(after.get(key))) {
+                assertEquals("d:6379", after.get(key));
+                moved += 1;
+            }
+        }
+        assertTrue(moved > 450 && moved < 1050);
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.traccar.helper;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class DateBuilderTest {
+
+    private static long calendar(int year, int month, int day, int hour, int minute, int second, int millis) {
+        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        time.clear();
+        time.set(Calendar.YEAR, year);
+        time.set(Calendar.MONTH, month - 1);
+        time.set(Calendar.DAY_OF_MONTH, day);
+        time.set(Calendar.HOUR_OF_DAY, hour);
+        time.set(Calendar.MINUTE, minute);
+        time.set(Calendar.SECOND, second);
+        time.set(Calendar.MILLISECOND, millis);
+        return time.getTimeInMillis();
+    }
+
+    @Test
+    public void testEveryDay() {
+        Calendar time = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        time.clear();
+        time.set(1583, Calendar.JANUARY, 1);
+        while (time.get(Calendar.YEAR) < 2400) {
+            assertEquals(time.getTimeInMillis(), DateBuilder.toMillis(
+                    time.get(Calendar.YEAR), time.get(Calendar.MONTH) + 1, time.get(Calendar.DAY_OF_MONTH), 0, 0, 0, 0));
+            time.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    @Test
+    public void testEverySecondOfDay() {
+        for (int second = 0; second < 24 * 60 * 60; second++) {
+            assertEquals(calendar(2014, 2, 28, second / 3600, second / 60 % 60, second % 60, 999),
+                    DateBuilder.toMillis(2014, 2, 28, second / 3600, second / 60 % 60, second % 60, 999));
+        }
+    }
+
+    @Test
+    public void testLenient() {
+        int[] values = {-1000, -100, -25, -13, -12, -1, 0, 1, 12, 13, 24, 29, 31, 32, 59, 60, 61, 100, 999, 1000, 10000};
+        for (int month : values) {
+            for (int day : values) {
+                for (int hour : values) {
+                    assertEquals(calendar(2000, month, day, hour, 60, 60, 1000),
+                            DateBuilder.toMillis(2000, month, day, hour, 60, 60, 1000));
+                    assertEquals(calendar(1999, 12, 31, hour, day, month, -1),
+                            DateBuilder.toMillis(1999, 12, 31, hour, day, month, -1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int year = 1600 + random.nextInt(800);
+            int month = random.nextInt(14);
+            int day = random.nextInt(33);
+            int hour = random.nextInt(25);
+            int minute = random.nextInt(61);
+            int second = random.nextInt(61);
+            int millis = random.nextInt(1001);
+            assertEquals(calendar(year, month, day, hour, minute, second, millis),
+                    DateBuilder.toMillis(year, month, day, hour, minute, second, millis));
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        DateBuilder time = new DateBuilder();
+        assertEquals(0, time.getMillis());
+
+        time.setDate(2014, 7, 15).setTime(12, 30, 15).setMillis(500);
+        assertEquals(calendar(2014, 7, 15, 12, 30, 15, 500), time.getMillis());
+
+        time.addMillis(-60 * 60 * 1000);
+        assertEquals(calendar(2014, 7, 15, 11, 30, 15, 500), time.getDate().getTime());
+
+        long now = System.currentTimeMillis();
+        long today = new DateBuilder().setCurrentDate().getMillis();
+        assertEquals(0, today % (24 * 60 * 60 * 1000));
+        assertTrue(today <= now && now - today < 24 * 60 * 60 * 1000 + 1000);
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.traccar.helper;
+
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GeoHashTest {
+
+    @Test
+    public void testEncodeDecode() {
+        double[] location = GeoHash.decode(GeoHash.encode(-33.8688197, 151.2092955));
+        assertEquals(-33.8688197, location[0], 0.000003);
+        assertEquals(151.2092955, location[1], 0.000006);
+
+        assertEquals(0, GeoHash.encode(-90, -180));
+        assertEquals((1L << 52) - 1, GeoHash.encode(90, 180));
+    }
+
+    @Test
+    public void testCover() {
+        long hash = GeoHash.encode(51.5007, -0.1246);
+        List<long[]> ranges = GeoHash.cover(51.49, -0.13, 51.51, -0.12);
+        assertTrue(ranges.size() <= 4);
+
+        boolean covered = false;
+        for (long[] range : ranges) {
+            covered |= hash >= range[0] && hash < range[1];
+        }
+        assertTrue(covered);
+    }
+
+    @Test
+    public void testCoverMeridian() {
+        long east = GeoHash.encode(0, 179.99);
+        long west = GeoHash.encode(0, -179.99);
+        long outside = GeoHash.encode(0, 0);
+        boolean eastCovered = false;
+        boolean westCovered = false;
+        for (long[] range : GeoHash.cover(-1, 179, 1, -179)) {
+            eastCovered |= east >= range[0] && east < range[1];
+            westCovered |= west >= range[0] && west < range[1];
+            assertFalse(outside >= range[0] && outside < range[1]);
+        }
+        assertTrue(eastCovered);
+        assertTrue(westCovered);
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(343.5, GeoHash.distance(51.5007, -0.1246, 51.5033, -0.1219), 1.0);
+    }
+
+}
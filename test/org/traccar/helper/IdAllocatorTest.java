@@ -0,0 +1,77 @@
+package org.traccar.helper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdAllocatorTest {
+
+    private static final String URL = "jdbc:h2:mem:allocator;DB_CLOSE_DELAY=-1";
+
+    private static final String RESERVE = "UPDATE sequences SET next_id = next_id + :size WHERE name = 'positions';";
+    private static final String SELECT = "SELECT next_id FROM sequences WHERE name = 'positions';";
+
+    private Connection db;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        db = DriverManager.getConnection(URL, "sa", "");
+        db.createStatement().execute("CREATE TABLE sequences (name VARCHAR(32) PRIMARY KEY, next_id BIGINT)");
+        db.createStatement().execute("INSERT INTO sequences VALUES ('positions', 1)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        db.createStatement().execute("DROP TABLE sequences");
+        db.close();
+    }
+
+    @Test
+    public void testDisjointBlocks() throws Exception {
+        // Separate pools, as two servers sharing database
+        final AdvancedConnection[] connections = new AdvancedConnection[2];
+        final Set<Long> ids = Collections.synchronizedSet(new HashSet<Long>());
+        final int[] generated = new int[1];
+
+        Thread[] threads = new Thread[connections.length];
+        for (int i = 0; i < threads.length; i++) {
+            connections[i] = new AdvancedConnection(URL, "sa", "");
+            final IdAllocator allocator = new IdAllocator(connections[i], RESERVE, SELECT, 10);
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 500; j++) {
+                            ids.add(allocator.next());
+                            synchronized (generated) {
+                                generated[0] += 1;
+                            }
+                        }
+                    } catch (Exception error) {
+                        Log.warning(error);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (AdvancedConnection connection : connections) {
+            connection.close();
+        }
+
+        assertEquals(1000, generated[0]);
+        assertEquals(1000, ids.size());
+        assertEquals(1L, (long) Collections.min(ids));
+        assertEquals(1000L, (long) Collections.max(ids));
+    }
+
+}
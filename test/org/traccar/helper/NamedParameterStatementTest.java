@@ -0,0 +1,85 @@
+package org.traccar.helper;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class NamedParameterStatementTest {
+
+    @Test
+    public void testExpandValues() {
+        assertEquals(
+                "INSERT INTO positions (device_id, other) VALUES (:device_id, ':x)'), (:device_id, ':x)');",
+                NamedParameterStatement.expandValues(
+                        "INSERT INTO positions (device_id, other) VALUES (:device_id, ':x)');", 2));
+
+        assertEquals(
+                "insert into t (a, b) values (:a, now()), (:a, now()), (:a, now())",
+                NamedParameterStatement.expandValues("insert into t (a, b) values (:a, now())", 3));
+    }
+
+    @Test
+    public void testExpandValuesKeyword() {
+        assertEquals(
+                "INSERT INTO position_values (raw_values, \"VALUES\") VALUES (:a, 'values'), (:a, 'values')",
+                NamedParameterStatement.expandValues(
+                        "INSERT INTO position_values (raw_values, \"VALUES\") VALUES (:a, 'values')", 2));
+
+        assertEquals(-1, NamedParameterStatement.findKeyword("INSERT INTO raw_values_t (a) SELECT 1", "VALUES"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExpandValuesParameterOutside() {
+        NamedParameterStatement.expandValues(
+                "INSERT INTO t (a) VALUES (:a) ON DUPLICATE KEY UPDATE a = :a", 2);
+    }
+
+    @Test
+    public void testRowBinding() throws Exception {
+        String url = "jdbc:h2:mem:statement;DB_CLOSE_DELAY=-1";
+        Class.forName("org.h2.Driver");
+        Connection db = DriverManager.getConnection(url, "sa", "");
+        db.createStatement().execute("CREATE TABLE t (a BIGINT, b VARCHAR(16), c BIGINT)");
+        AdvancedConnection connection = new AdvancedConnection(url, "sa", "");
+        try {
+            NamedParameterStatement statement = new NamedParameterStatement(
+                    connection, "INSERT INTO t (a, b, c) VALUES (:a, :b, :a + 1)", 3);
+            int a = statement.getHandle("a");
+            int b = statement.getHandle("b");
+            assertEquals(-1, statement.getHandle("c"));
+
+            NamedParameterStatement.Params params = statement.prepare();
+            try {
+                for (int row = 0; row < 3; row++) {
+                    params.setRow(row);
+                    params.setLong(a, row * 10L);
+                    params.setString(b, (row != 1) ? "row" + row : null);
+                }
+                try {
+                    params.setRow(3);
+                    fail();
+                } catch (IndexOutOfBoundsException error) {
+                }
+                assertEquals(3, params.executeUpdate());
+            } finally {
+                params.close();
+            }
+
+            ResultSet result = db.createStatement().executeQuery("SELECT a, b, c FROM t ORDER BY a");
+            for (int row = 0; row < 3; row++) {
+                assertTrue(result.next());
+                assertEquals(row * 10L, result.getLong(1));
+                assertEquals((row != 1) ? "row" + row : null, result.getString(2));
+                assertEquals(row * 10L + 1, result.getLong(3));
+            }
+            assertFalse(result.next());
+        } finally {
+            connection.close();
+            db.createStatement().execute("DROP TABLE t");
+            db.close();
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.traccar.helper;
 
 import java.util.List;
+import java.util.Map;
 import org.traccar.model.DataManager;
 import org.traccar.model.Device;
 import org.traccar.model.Position;
@@ -23,7 +24,20 @@ public class TestDataManager implements DataManager {
         return null;
     }
     @Override
-    public void updateLatestPosition(Long deviceId, Long positionId) throws Exception {
+    public List<Long> addPositions(List<Position> positions) {
+        return null;
+    }
+    @Override
+    public void updateLatestPosition(Position position, Long positionId) throws Exception {
+    }
+    @Override
+    public Long getLastIndex(Long deviceId) {
+        return null;
+    }
+
+    @Override
+    public Map<Long, String> getCompanyNames() {
+        return null;
     }
 
     @Override
@@ -0,0 +1,90 @@
+package org.traccar.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Date;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.helper.AdvancedConnection;
+import org.traccar.helper.NamedParameterStatement;
+
+public class LatestPositionUpdaterTest {
+
+    private static final String URL = "jdbc:h2:mem:latest;DB_CLOSE_DELAY=-1";
+
+    private static final String QUERY =
+            "UPDATE devices SET latestPosition_id = :id WHERE id = :device_id " +
+            "AND NOT EXISTS (SELECT 1 FROM positions WHERE id = devices.latestPosition_id AND time > :time);";
+
+    private Connection db;
+    private AdvancedConnection connection;
+    private LatestPositionUpdater updater;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        db = DriverManager.getConnection(URL, "sa", "");
+        db.createStatement().execute("CREATE TABLE devices (id BIGINT PRIMARY KEY, latestPosition_id BIGINT)");
+        db.createStatement().execute("CREATE TABLE positions (id BIGINT PRIMARY KEY, device_id BIGINT, time TIMESTAMP)");
+        db.createStatement().execute("INSERT INTO devices (id) VALUES (1), (2)");
+        for (int i = 1; i <= 6; i++) {
+            db.createStatement().execute("INSERT INTO positions VALUES (" + i + ", " + (i % 2 + 1) + ", " +
+                    "DATEADD('SECOND', " + i + ", TIMESTAMP '2014-01-01 00:00:00'))");
+        }
+        connection = new AdvancedConnection(URL, "sa", "");
+        updater = new LatestPositionUpdater(new NamedParameterStatement(connection, QUERY), 1000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        db.createStatement().execute("DROP TABLE devices");
+        db.createStatement().execute("DROP TABLE positions");
+        db.close();
+    }
+
+    private Date time(long id) throws Exception {
+        ResultSet result = db.createStatement().executeQuery("SELECT time FROM positions WHERE id = " + id);
+        result.next();
+        return result.getTimestamp(1);
+    }
+
+    private long latest(long deviceId) throws Exception {
+        ResultSet result = db.createStatement().executeQuery(
+                "SELECT latestPosition_id FROM devices WHERE id = " + deviceId);
+        result.next();
+        return result.getLong(1);
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        // Device 1 has odd, device 2 even position ids
+        updater.update(2L, 2L, time(2));
+        updater.update(1L, 3L, time(3));
+        updater.update(2L, 6L, time(6));
+        updater.update(2L, 4L, time(4));
+        updater.update(1L, null, time(5));
+        assertEquals(2, updater.getPendingCount());
+
+        updater.run();
+        assertEquals(0, updater.getPendingCount());
+        assertEquals(3, latest(1));
+        assertEquals(6, latest(2));
+    }
+
+    @Test
+    public void testStoredNewer() throws Exception {
+        db.createStatement().execute("UPDATE devices SET latestPosition_id = 5 WHERE id = 1");
+
+        // Not known in memory, older than stored pointer
+        updater.update(1L, 3L, time(3));
+        updater.update(2L, 4L, time(4));
+        updater.run();
+        assertEquals(5, latest(1));
+        assertEquals(4, latest(2));
+    }
+
+}
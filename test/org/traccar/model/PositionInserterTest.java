@@ -0,0 +1,91 @@
+package org.traccar.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.helper.AdvancedConnection;
+
+public class PositionInserterTest {
+
+    private static final String URL = "jdbc:h2:mem:inserter;DB_CLOSE_DELAY=-1";
+
+    private static final String QUERY =
+            "INSERT INTO positions (device_id, time, latitude, longitude) " +
+            "VALUES (:device_id, :time, :latitude, :longitude);";
+
+    private Connection db;
+    private AdvancedConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        db = DriverManager.getConnection(URL, "sa", "");
+        db.createStatement().execute("CREATE TABLE positions (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "device_id BIGINT NOT NULL, time TIMESTAMP, latitude DOUBLE, longitude DOUBLE)");
+        connection = new AdvancedConnection(URL, "sa", "");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        db.createStatement().execute("DROP TABLE positions");
+        db.close();
+    }
+
+    private static List<Position> createPositions(int count) {
+        List<Position> positions = new ArrayList<Position>();
+        for (int i = 0; i < count; i++) {
+            Position position = new Position();
+            position.setDeviceId((long) i);
+            position.setTime(new Date(i * 1000L));
+            position.setLatitude(60.0);
+            position.setLongitude(30.0 + i);
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    private int count() throws SQLException {
+        ResultSet result = db.createStatement().executeQuery("SELECT COUNT(*) FROM positions");
+        result.next();
+        return result.getInt(1);
+    }
+
+    @Test
+    public void testMultiRow() throws Exception {
+        PositionInserter inserter = new PositionInserter(connection, QUERY, 4, false);
+        inserter.insert(createPositions(7));
+        assertEquals(7, count());
+
+        ResultSet result = db.createStatement().executeQuery("SELECT device_id, longitude FROM positions ORDER BY id");
+        for (int i = 0; i < 7; i++) {
+            assertTrue(result.next());
+            assertEquals(i, result.getLong(1));
+            assertEquals(30.0 + i, result.getDouble(2), 0.0);
+        }
+    }
+
+    @Test
+    public void testFailedChunkRollback() throws Exception {
+        for (int rows : new int[] {4, 1}) {
+            PositionInserter inserter = new PositionInserter(connection, QUERY, rows, false);
+            List<Position> positions = createPositions(7);
+            positions.get(6).setDeviceId(null);
+            try {
+                inserter.insert(positions);
+                fail();
+            } catch (SQLException error) {
+                assertEquals(0, count());
+            }
+        }
+    }
+
+}
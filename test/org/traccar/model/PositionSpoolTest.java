@@ -0,0 +1,85 @@
+package org.traccar.model;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PositionSpoolTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("spool", ".dat");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<Position> createPositions(int count) {
+        List<Position> positions = new ArrayList<Position>();
+        for (int i = 0; i < count; i++) {
+            Position position = new Position();
+            position.setId((long) i);
+            position.setDeviceId(1L);
+            position.setTime(new Date(i * 1000L));
+            position.setValid(true);
+            position.setLatitude(60.0);
+            position.setLongitude(30.0 + i);
+            position.setExtendedInfo("<info><index>" + i + "</index></info>");
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    @Test
+    public void testReopenUnclean() throws Exception {
+        PositionSpool spool = new PositionSpool(file, 4096);
+        spool.append(createPositions(5));
+        int end = 16 + spool.getUsed(); // after 16 byte header
+
+        List<Position> positions = new ArrayList<Position>();
+        spool.read(positions, 2);
+        spool.commit(positions.size());
+
+        // Read but not committed batch has to be returned again
+        positions.clear();
+        spool.read(positions, 1);
+
+        // Crash while writing next record, length is not written yet
+        int used = spool.getUsed();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(end + 4);
+        raw.write(new byte[] {1, 2, 3, 4});
+        raw.close();
+
+        // Reopen without closing
+        spool = new PositionSpool(file, 4096);
+        assertEquals(3, spool.getCount());
+        assertEquals(used, spool.getUsed());
+
+        positions.clear();
+        spool.read(positions, 10);
+        assertEquals(3, positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            Position position = positions.get(i);
+            assertEquals(Long.valueOf(i + 2), position.getId());
+            assertEquals(new Date((i + 2) * 1000L), position.getTime());
+            assertEquals(30.0 + i + 2, position.getLongitude(), 0.0);
+            assertEquals("<info><index>" + (i + 2) + "</index></info>", position.getExtendedInfo());
+        }
+        spool.commit(positions.size());
+        assertTrue(spool.isEmpty());
+        spool.close();
+    }
+
+}
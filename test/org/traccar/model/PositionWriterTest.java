@@ -0,0 +1,128 @@
+package org.traccar.model;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.helper.AdvancedConnection;
+
+public class PositionWriterTest {
+
+    private static final String URL = "jdbc:h2:mem:writer;DB_CLOSE_DELAY=-1";
+
+    private static final String QUERY =
+            "INSERT INTO positions (id, device_id, time, latitude, longitude) " +
+            "VALUES (:position_id, :device_id, :time, :latitude, :longitude);";
+
+    private Connection db;
+    private AdvancedConnection connection;
+    private File spoolFile;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        db = DriverManager.getConnection(URL, "sa", "");
+        db.createStatement().execute("CREATE TABLE positions (id BIGINT PRIMARY KEY, " +
+                "device_id BIGINT NOT NULL, time TIMESTAMP, latitude DOUBLE CHECK (latitude <= 90), longitude DOUBLE)");
+        connection = new AdvancedConnection(URL, "sa", "");
+        spoolFile = File.createTempFile("spool", ".dat");
+        spoolFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+        db.createStatement().execute("DROP TABLE positions");
+        db.close();
+        spoolFile.delete();
+    }
+
+    private static Position createPosition(long id, double latitude) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId(id);
+        position.setTime(new Date(id * 1000L));
+        position.setLatitude(latitude);
+        position.setLongitude(30.0);
+        return position;
+    }
+
+    private int count() throws SQLException {
+        ResultSet result = db.createStatement().executeQuery("SELECT COUNT(*) FROM positions");
+        result.next();
+        return result.getInt(1);
+    }
+
+    private static void waitForSpool(PositionSpool spool) throws InterruptedException {
+        for (int i = 0; i < 100 && !spool.isEmpty(); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testReplayStoredIds() throws Exception {
+        // Position 2 was stored before crash, but not removed from spool
+        db.createStatement().execute("INSERT INTO positions (id, device_id) VALUES (2, 2)");
+
+        PositionSpool spool = new PositionSpool(spoolFile, 64 * 1024);
+        List<Position> positions = new ArrayList<Position>();
+        positions.add(createPosition(1, 60.0));
+        positions.add(createPosition(2, 60.0));
+        positions.add(createPosition(3, 100.0));
+        positions.add(createPosition(4, 60.0));
+        spool.append(positions);
+
+        PositionWriter writer = new PositionWriter(
+                new PositionInserter(connection, QUERY, 1, true), null, null, 100, 10, 10, 0, spool, 10);
+        writer.start();
+        waitForSpool(spool);
+        writer.stop();
+
+        assertTrue(spool.isEmpty());
+        assertEquals(3, count());
+        assertEquals(1, writer.getDroppedCount());
+        assertEquals(4, writer.getReplayedCount());
+    }
+
+    @Test
+    public void testOutage() throws Exception {
+        PositionSpool spool = new PositionSpool(spoolFile, 64 * 1024);
+        PositionWriter writer = new PositionWriter(
+                new PositionInserter(connection, QUERY, 4, true), null, null, 100, 10, 10, 0, spool, 10);
+        writer.start();
+
+        writer.write(createPosition(1, 60.0));
+        for (int i = 0; i < 100 && count() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, count());
+
+        // Database rejects writes until table is back
+        db.createStatement().execute("ALTER TABLE positions RENAME TO positions_offline");
+        for (int i = 2; i <= 5; i++) {
+            writer.write(createPosition(i, 60.0));
+        }
+        for (int i = 0; i < 100 && spool.getCount() < 4; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(4, spool.getCount());
+        db.createStatement().execute("ALTER TABLE positions_offline RENAME TO positions");
+
+        waitForSpool(spool);
+        writer.write(createPosition(6, 60.0));
+        writer.stop();
+
+        assertEquals(6, count());
+        assertEquals(4, writer.getReplayedCount());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+}
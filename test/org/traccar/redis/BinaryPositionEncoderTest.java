@@ -0,0 +1,51 @@
+package org.traccar.redis;
+
+import java.util.Date;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+public class BinaryPositionEncoderTest {
+
+    @Test
+    public void testRoundTrip() {
+        Position position = new Position();
+        position.setDeviceId(123456789012L);
+        position.setTime(new Date(1400000000123L));
+        position.setLatitude(-33.8688197);
+        position.setLongitude(179.9999999);
+        position.setSpeed(12.345);
+        position.setCourse(-90.0);
+        position.setValid(false);
+        position.setAddress("Stra\u00dfe 1");
+
+        byte[] data = BinaryPositionEncoder.create("speed,course,valid,address").encode(position, "acme");
+        BinaryPositionMessage message = BinaryPositionMessage.decode(data);
+        assertEquals(123456789012L, message.getDeviceId());
+        assertEquals(Long.valueOf(1400000000123L), message.getTime());
+        assertEquals(-33.8688197, message.getLatitude(), 0.00000001);
+        assertEquals(179.9999999, message.getLongitude(), 0.00000001);
+        assertEquals(12.35, message.getSpeed(), 0.001);
+        assertEquals(270.0, message.getCourse(), 0.001);
+        assertEquals(Boolean.FALSE, message.getValid());
+        assertEquals("Stra\u00dfe 1", message.getAddress());
+    }
+
+    @Test
+    public void testMinimal() {
+        Position position = new Position();
+        position.setDeviceId(1L);
+        position.setLatitude(10.0);
+        position.setSpeed(5.0);
+
+        byte[] data = new BinaryPositionEncoder(false, false, false, false).encode(position, null);
+        assertEquals(10, data.length);
+        BinaryPositionMessage message = BinaryPositionMessage.decode(data);
+        assertEquals(1L, message.getDeviceId());
+        assertNull(message.getTime());
+        assertNull(message.getLatitude());
+        assertNull(message.getSpeed());
+        assertNull(message.getValid());
+    }
+
+}
@@ -0,0 +1,229 @@
+package org.traccar.redis;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process Redis stand-in supporting commands used by publisher
+ */
+public class FakeRedisServer implements Runnable {
+
+    private final ServerSocket serverSocket;
+
+    private final Map<String, Map<String, Double>> sortedSets = new HashMap<String, Map<String, Double>>();
+    private final Map<String, Map<String, String>> hashes = new HashMap<String, Map<String, String>>();
+    private final Map<String, LinkedList<String>> lists = new HashMap<String, LinkedList<String>>();
+    private final List<String> published = new ArrayList<String>();
+
+    public FakeRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread(this, "fake-redis");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    public synchronized Map<String, Double> getSortedSet(String key) {
+        Map<String, Double> set = sortedSets.get(key);
+        return (set != null) ? new HashMap<String, Double>(set) : new HashMap<String, Double>();
+    }
+
+    public synchronized Map<String, String> getHash(String key) {
+        Map<String, String> hash = hashes.get(key);
+        return (hash != null) ? new HashMap<String, String>(hash) : new HashMap<String, String>();
+    }
+
+    public synchronized List<String> getList(String key) {
+        List<String> list = lists.get(key);
+        return (list != null) ? new ArrayList<String>(list) : new ArrayList<String>();
+    }
+
+    public synchronized List<String> getPublished() {
+        return new ArrayList<String>(published);
+    }
+
+    public synchronized void setScore(String key, String member, double score) {
+        Map<String, Double> set = sortedSets.get(key);
+        if (set == null) {
+            set = new HashMap<String, Double>();
+            sortedSets.put(key, set);
+        }
+        set.put(member, score);
+    }
+
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException error) {
+                return;
+            }
+        }
+    }
+
+    private static String readLine(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != '\r') {
+            if (c < 0) {
+                throw new IOException("Connection closed");
+            }
+            line.append((char) c);
+        }
+        input.read();
+        return line.toString();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            OutputStream output = socket.getOutputStream();
+            while (true) {
+                int count = Integer.parseInt(readLine(input).substring(1));
+                List<String> command = new ArrayList<String>(count);
+                for (int i = 0; i < count; i++) {
+                    byte[] data = new byte[Integer.parseInt(readLine(input).substring(1))];
+                    int offset = 0;
+                    while (offset < data.length) {
+                        offset += input.read(data, offset, data.length - offset);
+                    }
+                    readLine(input);
+                    command.add(new String(data, "UTF-8"));
+                }
+                output.write(execute(command).getBytes("UTF-8"));
+                output.flush();
+                if (command.get(0).equalsIgnoreCase("QUIT")) {
+                    socket.close();
+                    return;
+                }
+            }
+        } catch (IOException error) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    private static String bulk(String value) throws IOException {
+        return "$" + value.getBytes("UTF-8").length + "\r\n" + value + "\r\n";
+    }
+
+    private static double parseScore(String value) {
+        if (value.startsWith("(")) {
+            value = value.substring(1);
+        }
+        return value.endsWith("inf") ? (value.startsWith("-") ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)
+                : Double.parseDouble(value);
+    }
+
+    private synchronized String execute(List<String> command) throws IOException {
+        String name = command.get(0).toUpperCase();
+        if (name.equals("PING")) {
+            return "+PONG\r\n";
+        } else if (name.equals("PUBLISH")) {
+            published.add(command.get(2));
+            return ":0\r\n";
+        } else if (name.equals("HSET")) {
+            Map<String, String> hash = hashes.get(command.get(1));
+            if (hash == null) {
+                hash = new HashMap<String, String>();
+                hashes.put(command.get(1), hash);
+            }
+            return ":" + (hash.put(command.get(2), command.get(3)) == null ? 1 : 0) + "\r\n";
+        } else if (name.equals("LPUSH")) {
+            LinkedList<String> list = lists.get(command.get(1));
+            if (list == null) {
+                list = new LinkedList<String>();
+                lists.put(command.get(1), list);
+            }
+            list.addFirst(command.get(2));
+            return ":" + list.size() + "\r\n";
+        } else if (name.equals("LTRIM")) {
+            LinkedList<String> list = lists.get(command.get(1));
+            int stop = Integer.parseInt(command.get(3));
+            while (list != null && list.size() > stop + 1) {
+                list.removeLast();
+            }
+            return "+OK\r\n";
+        } else if (name.equals("ZADD")) {
+            setScore(command.get(1), command.get(3), Double.parseDouble(command.get(2)));
+            return ":1\r\n";
+        } else if (name.equals("ZREM")) {
+            Map<String, Double> set = sortedSets.get(command.get(1));
+            int removed = 0;
+            for (int i = 2; i < command.size(); i++) {
+                if (set != null && set.remove(command.get(i)) != null) {
+                    removed += 1;
+                }
+            }
+            return ":" + removed + "\r\n";
+        } else if (name.equals("ZRANGEBYSCORE")) {
+            double min = parseScore(command.get(2));
+            double max = parseScore(command.get(3));
+            boolean minExclusive = command.get(2).startsWith("(");
+            boolean maxExclusive = command.get(3).startsWith("(");
+            boolean withScores = false;
+            int offset = 0;
+            int limit = Integer.MAX_VALUE;
+            for (int i = 4; i < command.size(); i++) {
+                if (command.get(i).equalsIgnoreCase("WITHSCORES")) {
+                    withScores = true;
+                } else if (command.get(i).equalsIgnoreCase("LIMIT")) {
+                    offset = Integer.parseInt(command.get(i + 1));
+                    limit = Integer.parseInt(command.get(i + 2));
+                    i += 2;
+                }
+            }
+            StringBuilder reply = new StringBuilder();
+            int count = 0;
+            int matched = 0;
+            Map<String, Double> set = sortedSets.get(command.get(1));
+            if (set != null) {
+                for (Map.Entry<String, Double> entry : set.entrySet()) {
+                    double score = entry.getValue();
+                    if ((minExclusive ? score > min : score >= min) && (maxExclusive ? score < max : score <= max)
+                            && matched++ >= offset && matched <= offset + limit) {
+                        reply.append(bulk(entry.getKey()));
+                        count += 1;
+                        if (withScores) {
+                            reply.append(bulk(String.valueOf(entry.getValue().longValue())));
+                            count += 1;
+                        }
+                    }
+                }
+            }
+            return "*" + count + "\r\n" + reply;
+        } else if (name.equals("QUIT") || name.equals("SELECT") || name.equals("AUTH")) {
+            return "+OK\r\n";
+        }
+        return "-ERR unknown command '" + name + "'\r\n";
+    }
+
+}
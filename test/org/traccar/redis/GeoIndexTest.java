@@ -0,0 +1,118 @@
+package org.traccar.redis;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.helper.TestDataManager;
+import org.traccar.model.Position;
+import redis.clients.jedis.Jedis;
+
+public class GeoIndexTest {
+
+    private FakeRedisServer server;
+    private RedisPublisher redisPublisher;
+    private CompanyChannelCache companyChannelCache;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeRedisServer();
+        redisPublisher = new RedisPublisher("127.0.0.1", server.getPort(), 2, 2000, null, 1000, true, 2);
+        redisPublisher.enableGeoIndex(60000, 0);
+        companyChannelCache = new CompanyChannelCache(new TestDataManager() {
+            @Override
+            public String getCompanyNameByDevice(Long deviceId) {
+                return "Acme Corp";
+            }
+        }, 60000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        redisPublisher.close();
+        server.close();
+    }
+
+    private void publish(long deviceId, double latitude, double longitude) throws Exception {
+        publish(deviceId, latitude, longitude, null, (byte) ('0' + deviceId));
+    }
+
+    private void publish(long deviceId, double latitude, double longitude, Date time, byte message) throws Exception {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setTime(time);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        assertTrue(redisPublisher.publish(companyChannelCache.get(deviceId), position, new byte[] {message}));
+    }
+
+    private static Set<Long> devices(List<GeoQuery.Result> results) {
+        Set<Long> devices = new HashSet<Long>();
+        for (GeoQuery.Result result : results) {
+            devices.add(result.getDeviceId());
+        }
+        return devices;
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        publish(1, 51.5007, -0.1246);
+        publish(2, 51.5033, -0.1219);
+        publish(3, 51.5194, -0.1270);
+        publish(4, 0.0, 179.999);
+        publish(1, 51.5008, -0.1246);
+
+        assertEquals(4, server.getSortedSet("geo_acme-corp").size());
+        assertEquals("1", server.getHash("latest_acme-corp").get("1"));
+        assertEquals(Arrays.asList("1", "1"), server.getList("history_1"));
+
+        Jedis jedis = new Jedis("127.0.0.1", server.getPort());
+        try {
+            assertEquals(new HashSet<Long>(Arrays.asList(1L)), devices(GeoQuery.radius(jedis, "Acme Corp", 51.5007, -0.1246, 100)));
+            assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L)), devices(GeoQuery.radius(jedis, "Acme Corp", 51.5007, -0.1246, 1000)));
+            assertEquals(new HashSet<Long>(Arrays.asList(1L, 2L, 3L)), devices(GeoQuery.radius(jedis, "Acme Corp", 51.5007, -0.1246, 3000)));
+            assertEquals(new HashSet<Long>(Arrays.asList(4L)), devices(GeoQuery.radius(jedis, "Acme Corp", 0.0, -179.999, 1000)));
+            assertEquals(new HashSet<Long>(Arrays.asList(2L, 3L)), devices(GeoQuery.box(jedis, "Acme Corp", 51.502, -0.13, 51.52, -0.12)));
+        } finally {
+            jedis.disconnect();
+        }
+    }
+
+    @Test
+    public void testCleanup() throws Exception {
+        publish(1, 10.0, 10.0);
+        publish(2, 10.0, 10.0);
+        server.setScore("geotime_acme-corp", "1", System.currentTimeMillis() - 120000);
+        publish(3, 10.0, 10.0);
+
+        // Publishing does not remove idle devices itself
+        assertEquals(3, server.getSortedSet("geo_acme-corp").size());
+
+        redisPublisher.cleanup();
+        Map<String, Double> index = server.getSortedSet("geo_acme-corp");
+        assertEquals(new HashSet<String>(Arrays.asList("2", "3")), index.keySet());
+        assertEquals(2, server.getSortedSet("geotime_acme-corp").size());
+    }
+
+    @Test
+    public void testReplayedOlder() throws Exception {
+        publish(1, 10.0, 10.0, new Date(2000), (byte) 'b');
+        double score = server.getSortedSet("geo_acme-corp").get("1");
+
+        // Spilled position published after newer one
+        publish(1, 20.0, 20.0, new Date(1000), (byte) 'a');
+        assertEquals("b", server.getHash("latest_acme-corp").get("1"));
+        assertEquals(score, server.getSortedSet("geo_acme-corp").get("1"), 0.0);
+        assertEquals(Arrays.asList("a", "b"), server.getList("history_1"));
+
+        publish(1, 20.0, 20.0, new Date(3000), (byte) 'c');
+        assertEquals("c", server.getHash("latest_acme-corp").get("1"));
+    }
+
+}
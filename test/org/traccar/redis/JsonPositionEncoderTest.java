@@ -0,0 +1,46 @@
+package org.traccar.redis;
+
+import java.util.Date;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+public class JsonPositionEncoderTest {
+
+    private static String write(double value, int decimals) throws Exception {
+        JsonPositionEncoder.Writer writer = new JsonPositionEncoder.Writer();
+        writer.writeDouble(value, decimals);
+        return new String(writer.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void testWriteDouble() throws Exception {
+        assertEquals("0", write(0.0, 7));
+        assertEquals("-0.5", write(-0.5, 7));
+        assertEquals("48.8583701", write(48.85837009, 7));
+        assertEquals("-122.0000123", write(-122.0000123, 7));
+        assertEquals("10", write(9.999, 2));
+        assertEquals("null", write(Double.NaN, 2));
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        Position position = new Position();
+        position.setDeviceId(-12L);
+        position.setTime(new Date(1400000000123L));
+        position.setLatitude(-33.8688);
+        position.setSpeed(12.5);
+        position.setValid(true);
+        position.setAddress("Str. \"A\"\\1\n\u00e9\ud83d\ude00");
+
+        assertEquals(
+                "{\"device\":-12,\"time\":1400000000123,\"lat\":-33.8688,\"lon\":null,\"company\":\"acme\"}",
+                new String(new JsonPositionEncoder().encode(position, "acme"), "UTF-8"));
+
+        assertEquals(
+                "{\"device\":-12,\"time\":1400000000123,\"lat\":-33.8688,\"lon\":null,\"speed\":12.5,\"valid\":true," +
+                "\"address\":\"Str. \\\"A\\\"\\\\1\\u000a\u00e9\ud83d\ude00\",\"company\":null}",
+                new String(JsonPositionEncoder.create("speed, valid,address").encode(position, null), "UTF-8"));
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.traccar.redis;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.helper.TestDataManager;
+import org.traccar.model.Position;
+import org.traccar.model.PositionSpool;
+
+public class PositionPublisherTest {
+
+    private FakeRedisServer server;
+    private RedisShards redisShards;
+    private File spoolFile;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeRedisServer();
+        redisShards = new RedisShards(Collections.singletonMap("node",
+                new RedisPublisher("127.0.0.1", server.getPort(), 2, 2000, null, 1000, true, 0)), 16);
+        spoolFile = File.createTempFile("publish", ".spool");
+        spoolFile.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        redisShards.close();
+        server.close();
+        spoolFile.delete();
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        CompanyChannelCache companyChannelCache = new CompanyChannelCache(new TestDataManager() {
+            @Override
+            public String getCompanyNameByDevice(Long deviceId) {
+                return "Acme Corp";
+            }
+        }, 60000);
+        PositionSpool spool = new PositionSpool(spoolFile, 64 * 1024);
+        PositionPublisher publisher = new PositionPublisher(
+                redisShards, companyChannelCache, new JsonPositionEncoder(),
+                2, PositionPublisher.Overflow.SPILL, spool, 10, 10, 0);
+
+        for (int i = 0; i < 5; i++) {
+            Position position = new Position();
+            position.setDeviceId(1L);
+            position.setTime(new Date(i * 1000L));
+            position.setLatitude(10.0);
+            position.setLongitude(10.0);
+            publisher.publish(position);
+        }
+
+        // Overflow is not written by calling thread
+        assertEquals(2, publisher.getQueueSize());
+        assertTrue(spool.isEmpty());
+
+        publisher.start();
+        for (int i = 0; i < 100 && publisher.getPublishedCount() < 4; i++) {
+            Thread.sleep(50);
+        }
+        publisher.stop();
+
+        // Spill buffer is limited to queue size
+        assertEquals(4, publisher.getPublishedCount());
+        assertEquals(2, publisher.getSpilledCount());
+        assertEquals(1, publisher.getDroppedCount());
+        assertEquals(4, server.getPublished().size());
+    }
+
+}
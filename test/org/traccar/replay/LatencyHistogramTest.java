@@ -0,0 +1,33 @@
+package org.traccar.replay;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.value(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.value(index - 1) < value);
+        }
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) < (64 - 4 + 1) * 16);
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.getPercentile(0.5), 500 * 0.07);
+        assertEquals(990, histogram.getPercentile(0.99), 990 * 0.07);
+        assertEquals(1000, histogram.getPercentile(1));
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.traccar.replay;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Properties;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ReplayEngineTest {
+
+    @Test
+    public void testLocal() throws Exception {
+        File vectors = File.createTempFile("replay", ".txt");
+        vectors.deleteOnExit();
+        FileWriter writer = new FileWriter(vectors);
+        try {
+            writer.write("# gps103 position\n");
+            writer.write("gps103 696d65693a3132333435363738393031323334352c68656c70206d652c313230313031313230312c2c462c"
+                    + "3132303130302e3030302c412c363030302e303030302c4e2c31333030302e303030302c452c302e30302c3b\n");
+        } finally {
+            writer.close();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("gps103.enable", "true");
+        properties.setProperty("gps103.port", "0");
+        properties.setProperty("replay.connections", "10");
+        properties.setProperty("replay.repeat", "5");
+        properties.setProperty("replay.speed", "0");
+        properties.setProperty("replay.rampUp", "0");
+
+        ReplayEngine engine = new ReplayEngine(properties, ReplaySource.load(vectors, 1000));
+        try {
+            engine.run();
+        } finally {
+            engine.stop();
+        }
+
+        ReplayProbe probe = engine.getProbes().get("gps103");
+        assertEquals(50, probe.getPositionCount());
+        assertEquals(50, probe.getHistogram().getCount());
+        assertTrue(engine.report().startsWith("protocol"));
+    }
+
+}